@@ -19,20 +19,30 @@ package org.wso2.carbon.databridge.agent;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
 import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
 import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
 import org.wso2.carbon.databridge.agent.endpoint.DataEndpointGroup;
+import org.wso2.carbon.databridge.agent.endpoint.DeadLetterCallback;
+import org.wso2.carbon.databridge.agent.endpoint.EventBuffer;
+import org.wso2.carbon.databridge.agent.endpoint.TrackedEvent;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAgentConfigurationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAuthenticationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointConfigurationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
 import org.wso2.carbon.databridge.agent.exception.EventQueueFullException;
+import org.wso2.carbon.databridge.agent.metrics.DataPublisherMetrics;
+import org.wso2.carbon.databridge.agent.metrics.DataPublisherMetricsMBean;
+import org.wso2.carbon.databridge.agent.metrics.MetricsRegistry;
 import org.wso2.carbon.databridge.agent.util.DataPublisherUtil;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.exception.TransportException;
 
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.ObjectName;
 
 /**
  * API Used to communicate with Data Receivers WSO2 BAM/CEP. It can be used to send events to
@@ -42,6 +52,8 @@ public class DataPublisher {
 
     private static final Logger log = LogManager.getLogger(DataPublisher.class);
 
+    private static final AtomicInteger PUBLISHER_COUNT = new AtomicInteger();
+
     /**
      * List of group of endpoints where events needs to dispatched when
      * events are published using this API.
@@ -62,10 +74,26 @@ public class DataPublisher {
     private long lastFailedEventTime;
 
     /**
-     * The current failed event count. A normal long is used here, rather
-     * than an AtomicLong, since this is not a critical stat.
+     * Metrics of the publisher, and the name they are registered with in the MBean server.
      */
-    private long failedEventCount;
+    private final DataPublisherMetrics metrics = new DataPublisherMetrics();
+
+    private ObjectName metricsName;
+
+    /**
+     * Rate limits and sampling of the streams, or null if none are configured.
+     */
+    private StreamEventLimiter streamEventLimiter;
+
+    /**
+     * Event writers of the threads publishing with this publisher.
+     */
+    private final ThreadLocal<EventWriter> eventWriters = new ThreadLocal<EventWriter>() {
+        @Override
+        protected EventWriter initialValue() {
+            return new EventWriter(DataPublisher.this);
+        }
+    };
 
     /**
      * Creates the DataPublisher instance for a specific user, and the it creates
@@ -170,10 +198,11 @@ public class DataPublisher {
 
             DataEndpointGroup endpointGroup;
             if (failOver) {
-                endpointGroup = new DataEndpointGroup(DataEndpointGroup.HAType.FAILOVER, dataEndpointAgent);
+                endpointGroup = new DataEndpointGroup(DataEndpointGroup.HAType.FAILOVER, dataEndpointAgent,
+                        receiverGroup.length - 1);
             } else {
                 endpointGroup = new DataEndpointGroup(DataEndpointGroup.HAType.LOADBALANCE,
-                        dataEndpointAgent);
+                        dataEndpointAgent, receiverGroup.length - 1);
             }
             /*
              * Since the first element holds the failover/LB settings
@@ -183,17 +212,67 @@ public class DataPublisher {
                 DataEndpointConfiguration endpointConfiguration =
                         new DataEndpointConfiguration((String) receiverGroup[j],
                                 (String) authGroup[j], username, password, dataEndpointAgent.getTransportPool(),
-                                dataEndpointAgent.getSecuredTransportPool(), dataEndpointAgent.
-                                getAgentConfiguration().getBatchSize(),
-                                dataEndpointAgent.getAgentConfiguration().getCorePoolSize(),
-                                dataEndpointAgent.getAgentConfiguration().getMaxPoolSize(),
-                                dataEndpointAgent.getAgentConfiguration().getKeepAliveTimeInPool());
+                                dataEndpointAgent.getSecuredTransportPool(),
+                                dataEndpointAgent.getAgentConfiguration());
                 DataEndpoint dataEndpoint = dataEndpointAgent.getNewDataEndpoint();
                 dataEndpoint.initialize(endpointConfiguration);
                 endpointGroup.addDataEndpoint(dataEndpoint);
             }
             endpointGroups.add(endpointGroup);
         }
+        AgentConfiguration agentConfiguration = dataEndpointAgent.getAgentConfiguration();
+        StreamEventLimiter limiter = new StreamEventLimiter(agentConfiguration.getStreamRateLimits(),
+                agentConfiguration.getStreamSamplingRates(), agentConfiguration.getSamplingStrategy(),
+                agentConfiguration.getFailedEventLogInterval(), metrics);
+        if (limiter.isEnabled()) {
+            this.streamEventLimiter = limiter;
+        }
+        if (agentConfiguration.isJmxMetricsEnabled()) {
+            registerMetrics();
+        }
+    }
+
+    private void registerMetrics() {
+        String publisherName = String.valueOf(PUBLISHER_COUNT.incrementAndGet());
+        metricsName = MetricsRegistry.register("type=DataPublisher,name=" + publisherName, metrics,
+                DataPublisherMetricsMBean.class);
+        for (int i = 0; i < endpointGroups.size(); i++) {
+            endpointGroups.get(i).registerMetrics("publisher=" + publisherName + ",group=" + i);
+        }
+    }
+
+    /**
+     * @return metrics of the publisher, which are also registered in the MBean server unless the JMX metrics
+     * are disabled in the agent configuration.
+     */
+    public DataPublisherMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param streamId stream id.
+     * @return number of events of the stream which were shed as the stream was over its rate limit.
+     */
+    public long getRateLimitedEvents(String streamId) {
+        return streamEventLimiter != null ? streamEventLimiter.getRateLimitedEvents(streamId) : 0;
+    }
+
+    /**
+     * @param streamId stream id.
+     * @return number of events of the stream which were shed by the sampling of the stream.
+     */
+    public long getSampledOutEvents(String streamId) {
+        return streamEventLimiter != null ? streamEventLimiter.getSampledOutEvents(streamId) : 0;
+    }
+
+    /**
+     * Check the rate limit and sampling of the stream of an event which is being published.
+     *
+     * @param streamId stream id of the event.
+     * @return true if the event is to be dropped.
+     */
+    private boolean isShed(String streamId) {
+        return streamEventLimiter != null && !streamEventLimiter.admit(streamId);
     }
 
     /**
@@ -208,8 +287,11 @@ public class DataPublisher {
      * @param event The Event that needs to sent for the receiver groups
      */
     public void publish(Event event) {
+        if (isShed(event.getStreamId())) {
+            return;
+        }
         for (DataEndpointGroup endpointGroup : endpointGroups) {
-            endpointGroup.publish(event);
+            onPublished(endpointGroup.publish(event));
         }
     }
 
@@ -299,12 +381,69 @@ public class DataPublisher {
                 payloadDataArray, arbitraryDataMap));
     }
 
-    private void onEventQueueFull(DataEndpointGroup endpointGroup, Event event) {
-        this.failedEventCount++;
+    /**
+     * Publish an event for all receiver groups which has been specified in the DataPublisher, and track
+     * its acknowledgement. This blocks like {@link #publish(Event)} until the event is inserted in to the
+     * internal queues, and the returned future is completed once the batch holding the event has been
+     * acknowledged by a receiver of every group. It is completed exceptionally if any group drops the
+     * event, such as when no receiver is reachable or the publisher is shutting down. The future is
+     * completed on a publisher thread of the agent, hence dependent actions which block should be run
+     * with one of its async methods.
+     *
+     * @param event The Event that needs to sent for the receiver groups
+     * @return the acknowledgement of the event.
+     */
+    public CompletableFuture<Void> publishAsync(Event event) {
+        if (isShed(event.getStreamId())) {
+            CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+            acknowledgement.completeExceptionally(new DataEndpointException("Event of stream " +
+                    event.getStreamId() + " was shed by the rate limit or sampling of the stream"));
+            return acknowledgement;
+        }
+        TrackedEvent trackedEvent = new TrackedEvent(event, endpointGroups.size());
+        for (DataEndpointGroup endpointGroup : endpointGroups) {
+            onPublished(endpointGroup.publish(trackedEvent));
+        }
+        return trackedEvent.getAcknowledgement();
+    }
+
+    /**
+     * Publish an event based on the event properties that are passed for all receiver groups which has been
+     * specified in the DataPublisher, and track its acknowledgement as {@link #publishAsync(Event)} does.
+     *
+     * @param streamId             StreamId for which the event belongs to.
+     * @param metaDataArray        Meta data element of the event.
+     * @param correlationDataArray Correlation data element of the event.
+     * @param payloadDataArray     Payload data element of the event.
+     * @return the acknowledgement of the event.
+     */
+    public CompletableFuture<Void> publishAsync(String streamId, Object[] metaDataArray,
+                                                Object[] correlationDataArray, Object[] payloadDataArray) {
+        return publishAsync(new Event(streamId, System.currentTimeMillis(), metaDataArray,
+                correlationDataArray, payloadDataArray));
+    }
+
+    /**
+     * Count the event as published if a receiver group has taken it, and as dropped otherwise.
+     *
+     * @param published whether the receiver group has queued or sent the event.
+     * @return the given result.
+     */
+    private boolean onPublished(boolean published) {
+        if (published) {
+            metrics.onEventPublished();
+        } else {
+            metrics.onEventDropped();
+        }
+        return published;
+    }
+
+    private void onEventQueueFull(DataEndpointGroup endpointGroup, Object event) {
+        metrics.onEventDropped();
         long currentTime = System.currentTimeMillis();
         if (currentTime - this.lastFailedEventTime > failedEventLogInterval) {
             log.warn("Event queue is full, unable to process the event for endpoint group "
-                    + endpointGroup.toString() + ", " + this.failedEventCount + " events dropped so far.");
+                    + endpointGroup.toString() + ", " + metrics.getDroppedEvents() + " events dropped so far.");
             this.lastFailedEventTime = currentTime;
         }
         if (log.isDebugEnabled()) {
@@ -323,11 +462,13 @@ public class DataPublisher {
      * @return the success/failure of the event that has been published/dropped.
      */
     public boolean tryPublish(Event event) {
+        if (isShed(event.getStreamId())) {
+            return false;
+        }
         boolean sent = true;
         for (DataEndpointGroup endpointGroup : endpointGroups) {
             try {
-                endpointGroup.tryPublish(event);
-                sent = true;
+                sent = onPublished(endpointGroup.tryPublish(event)) && sent;
             } catch (EventQueueFullException e) {
                 this.onEventQueueFull(endpointGroup, event);
                 sent = false;
@@ -349,10 +490,13 @@ public class DataPublisher {
      * @return the success/failure of the event that has been published/dropped.
      */
     public boolean tryPublish(Event event, long timeoutMS) {
+        if (isShed(event.getStreamId())) {
+            return false;
+        }
         boolean sent = true;
         for (DataEndpointGroup endpointGroup : endpointGroups) {
             try {
-                endpointGroup.tryPublish(event, timeoutMS);
+                sent = onPublished(endpointGroup.tryPublish(event, timeoutMS)) && sent;
             } catch (EventQueueFullException e) {
                 this.onEventQueueFull(endpointGroup, event);
                 sent = false;
@@ -530,6 +674,79 @@ public class DataPublisher {
                 payloadDataArray, arbitraryDataMap));
     }
 
+    /**
+     * Get the event writer of the calling thread for the given stream, which publishes events without
+     * boxing their attributes or creating the events on the calling thread. The writer is reused for
+     * every call made by the same thread, hence it must not be shared with other threads.
+     *
+     * @param streamId StreamId for which the events belong to.
+     * @return the event writer of the calling thread.
+     */
+    public EventWriter stream(String streamId) {
+        EventWriter eventWriter = eventWriters.get();
+        eventWriter.setStreamId(streamId);
+        return eventWriter;
+    }
+
+    /**
+     * Set the callback which is notified of the events of the batches which failed on more endpoints than
+     * the max resend attempts allow, for all the receiver groups.
+     *
+     * @param deadLetterCallback the callback, or null to only log the events which are given up on.
+     */
+    public void setDeadLetterCallback(DeadLetterCallback deadLetterCallback) {
+        for (DataEndpointGroup endpointGroup : endpointGroups) {
+            endpointGroup.setDeadLetterCallback(deadLetterCallback);
+        }
+    }
+
+    /**
+     * Create a subscriber which publishes the events of a reactive upstream, requesting them as the event
+     * queues of the receiver groups free capacity.
+     *
+     * @param maxDemand max number of events requested from the upstream and not yet received.
+     * @return a new subscriber, which is to be subscribed to a single upstream.
+     */
+    public EventSubscriber createSubscriber(int maxDemand) {
+        return new EventSubscriber(this, maxDemand);
+    }
+
+    /**
+     * @return number of events which can be published to all the receiver groups without waiting.
+     */
+    long getAvailableCapacity() {
+        long capacity = Long.MAX_VALUE;
+        for (DataEndpointGroup endpointGroup : endpointGroups) {
+            capacity = Math.min(capacity, endpointGroup.getAvailableCapacity());
+        }
+        return capacity;
+    }
+
+    void publish(EventBuffer eventBuffer) {
+        if (isShed(eventBuffer.getStreamId())) {
+            return;
+        }
+        for (DataEndpointGroup endpointGroup : endpointGroups) {
+            onPublished(endpointGroup.publish(eventBuffer));
+        }
+    }
+
+    boolean tryPublish(EventBuffer eventBuffer) {
+        if (isShed(eventBuffer.getStreamId())) {
+            return false;
+        }
+        boolean sent = true;
+        for (DataEndpointGroup endpointGroup : endpointGroups) {
+            try {
+                sent = onPublished(endpointGroup.tryPublish(eventBuffer)) && sent;
+            } catch (EventQueueFullException e) {
+                this.onEventQueueFull(endpointGroup, eventBuffer);
+                sent = false;
+            }
+        }
+        return sent;
+    }
+
     /**
      * Graceful shutdown of all the operations of the data publisher.
      * It will flush all the events to the relevant endpoint, and closes all the
@@ -542,6 +759,7 @@ public class DataPublisher {
         for (DataEndpointGroup dataEndpointGroup : endpointGroups) {
             dataEndpointGroup.shutdown();
         }
+        MetricsRegistry.unregister(metricsName);
         dataEndpointAgent.shutDown(this);
     }
 
@@ -0,0 +1,181 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the events of a reactive upstream with demand driven backpressure. Events are only requested
+ * while an endpoint of every receiver group is active, and no more than the free capacity of their event
+ * queues, hence the upstream is slowed down to the rate the receivers absorb instead of the publisher
+ * blocking or dropping events. Demand is requested again as the events are received, and polled for while
+ * the queues are full or no endpoint is active.
+ * <p>
+ * The subscriber follows the Reactive Streams subscriber contract. The agent runs on Java 8, which has no
+ * {@code java.util.concurrent.Flow}, hence a {@code Flow.Subscriber<Event>} or a Reactive Streams subscriber
+ * is adapted by delegating its four methods, and its subscription's request and cancel methods, to this one.
+ * A subscriber is obtained with {@link DataPublisher#createSubscriber(int)} and subscribes to a single
+ * upstream.
+ */
+public class EventSubscriber {
+
+    private static final Logger log = LogManager.getLogger(EventSubscriber.class);
+
+    private static final long DEMAND_POLL_INTERVAL_MS = 10;
+
+    /**
+     * Subscription of the upstream, as in Reactive Streams.
+     */
+    public interface Subscription {
+
+        void request(long n);
+
+        void cancel();
+    }
+
+    private final DataPublisher dataPublisher;
+
+    private final int maxDemand;
+
+    private final AtomicLong outstandingDemand = new AtomicLong();
+
+    private final ScheduledExecutorService demandService;
+
+    private volatile Subscription subscription;
+
+    private volatile boolean isDone = false;
+
+    private final AtomicInteger pendingDemandChecks = new AtomicInteger();
+
+    EventSubscriber(DataPublisher dataPublisher, int maxDemand) {
+        this.dataPublisher = dataPublisher;
+        this.maxDemand = Math.max(1, maxDemand);
+        this.demandService = Executors.newSingleThreadScheduledExecutor(
+                new DataBridgeThreadFactory("EventSubscriber"));
+    }
+
+    /**
+     * Start requesting events from the upstream. A second subscription is cancelled.
+     *
+     * @param subscription subscription of the upstream.
+     */
+    public void onSubscribe(Subscription subscription) {
+        if (this.subscription != null || isDone) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        demandService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                requestDemand();
+            }
+        }, DEMAND_POLL_INTERVAL_MS, DEMAND_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        requestDemand();
+    }
+
+    /**
+     * Publish an event which was requested. The event fits into the event queues unless other threads
+     * publish to the same publisher, in which case this waits for capacity as {@link DataPublisher#publish}
+     * does.
+     *
+     * @param event the event to be published.
+     */
+    public void onNext(Event event) {
+        outstandingDemand.decrementAndGet();
+        dataPublisher.publish(event);
+        requestDemand();
+    }
+
+    public void onError(Throwable throwable) {
+        log.error("Upstream of the event subscriber failed, no more events will be published from it.",
+                throwable);
+        close();
+    }
+
+    public void onComplete() {
+        close();
+    }
+
+    /**
+     * Cancel the subscription, after which no more events are requested.
+     */
+    public void cancel() {
+        Subscription currentSubscription = subscription;
+        close();
+        if (currentSubscription != null) {
+            currentSubscription.cancel();
+        }
+    }
+
+    /**
+     * @return number of events which were requested and not yet received.
+     */
+    public long getOutstandingDemand() {
+        return outstandingDemand.get();
+    }
+
+    /**
+     * Request events up to the available capacity, once half of the previous demand has been received. The
+     * requests must be made serially, yet without a lock, as the upstream may hold its own lock while
+     * delivering events. Hence the thread which finds no check in progress makes the requests, and checks
+     * again for every call made meanwhile, including the calls made by the upstream answering a request
+     * synchronously on the same thread.
+     */
+    private void requestDemand() {
+        if (subscription == null || pendingDemandChecks.getAndIncrement() != 0) {
+            return;
+        }
+        int checks = 1;
+        do {
+            try {
+                long demand;
+                while (!isDone && (demand = getDemand()) > 0) {
+                    outstandingDemand.addAndGet(demand);
+                    subscription.request(demand);
+                }
+            } catch (Throwable t) {
+                log.error("Error while requesting events from the upstream of the event subscriber.", t);
+                cancel();
+            }
+            checks = pendingDemandChecks.addAndGet(-checks);
+        } while (checks != 0);
+    }
+
+    private long getDemand() {
+        long outstanding = outstandingDemand.get();
+        if (outstanding > maxDemand / 2) {
+            return 0;
+        }
+        return Math.min(dataPublisher.getAvailableCapacity(), maxDemand) - outstanding;
+    }
+
+    private void close() {
+        isDone = true;
+        demandService.shutdownNow();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent;
+
+import org.wso2.carbon.databridge.agent.endpoint.EventBuffer;
+
+/**
+ * Writes events attribute by attribute without boxing the primitive values or creating an Event on the
+ * calling thread. The attributes are written into a buffer owned by the calling thread, which is copied
+ * into the event queue of each receiver group on commit. A writer is obtained per thread with
+ * {@link DataPublisher#stream(String)}, and must not be shared with other threads.
+ * <pre>
+ * dataPublisher.stream(streamId).beginEvent()
+ *         .metaData().putString(host)
+ *         .payloadData().putLong(count).putDouble(average)
+ *         .commit();
+ * </pre>
+ * Attributes are written to the payload data unless another section is selected, and the sections have
+ * to be written in the order meta, correlation and payload data.
+ */
+public class EventWriter {
+
+    private final DataPublisher dataPublisher;
+
+    private final EventBuffer eventBuffer = new EventBuffer();
+
+    private String streamId;
+
+    EventWriter(DataPublisher dataPublisher) {
+        this.dataPublisher = dataPublisher;
+    }
+
+    void setStreamId(String streamId) {
+        this.streamId = streamId;
+    }
+
+    /**
+     * Start a new event of the stream with the current time as its time stamp, discarding any
+     * event which was not committed.
+     *
+     * @return this writer.
+     */
+    public EventWriter beginEvent() {
+        return beginEvent(System.currentTimeMillis());
+    }
+
+    /**
+     * Start a new event of the stream, discarding any event which was not committed.
+     *
+     * @param timeStamp time stamp of the event.
+     * @return this writer.
+     */
+    public EventWriter beginEvent(long timeStamp) {
+        eventBuffer.reset(streamId, timeStamp);
+        return this;
+    }
+
+    public EventWriter metaData() {
+        eventBuffer.startSection(EventBuffer.Section.META_DATA);
+        return this;
+    }
+
+    public EventWriter correlationData() {
+        eventBuffer.startSection(EventBuffer.Section.CORRELATION_DATA);
+        return this;
+    }
+
+    public EventWriter payloadData() {
+        eventBuffer.startSection(EventBuffer.Section.PAYLOAD_DATA);
+        return this;
+    }
+
+    public EventWriter putInt(int value) {
+        eventBuffer.putInt(value);
+        return this;
+    }
+
+    public EventWriter putLong(long value) {
+        eventBuffer.putLong(value);
+        return this;
+    }
+
+    public EventWriter putFloat(float value) {
+        eventBuffer.putFloat(value);
+        return this;
+    }
+
+    public EventWriter putDouble(double value) {
+        eventBuffer.putDouble(value);
+        return this;
+    }
+
+    public EventWriter putBoolean(boolean value) {
+        eventBuffer.putBoolean(value);
+        return this;
+    }
+
+    public EventWriter putString(String value) {
+        eventBuffer.putString(value);
+        return this;
+    }
+
+    public EventWriter putNull() {
+        eventBuffer.putNull();
+        return this;
+    }
+
+    public EventWriter putArbitraryData(String key, String value) {
+        eventBuffer.putArbitraryData(key, value);
+        return this;
+    }
+
+    /**
+     * Publish the event, blocking while the event queue is full as {@link DataPublisher#publish(
+     *org.wso2.carbon.databridge.commons.Event)} does.
+     */
+    public void commit() {
+        dataPublisher.publish(eventBuffer);
+    }
+
+    /**
+     * Publish the event if the event queue has capacity, as {@link DataPublisher#tryPublish(
+     *org.wso2.carbon.databridge.commons.Event)} does.
+     *
+     * @return the success/failure of the event that has been published/dropped.
+     */
+    public boolean tryCommit() {
+        return dataPublisher.tryPublish(eventBuffer);
+    }
+}
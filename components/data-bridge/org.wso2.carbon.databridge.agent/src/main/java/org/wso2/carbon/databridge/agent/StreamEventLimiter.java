@@ -0,0 +1,311 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.agent.metrics.DataPublisherMetrics;
+import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sheds the events of the streams which are over their rate limit or are sampled, before the events are put
+ * in the event queues, so that a single flooding stream does not take the queue capacity of the other
+ * streams. Each stream has its own policy, which is configured for the stream id, or for any stream with
+ * {@value DataEndpointConstants#ANY_STREAM}. Admitting an event reads the policy of its stream from a
+ * concurrent map and runs at most two compare and sets, hence the publishing threads never block on it.
+ */
+public final class StreamEventLimiter {
+
+    private static final Logger log = LogManager.getLogger(StreamEventLimiter.class);
+
+    private static final int MAX_STREAM_POLICIES = 1024;
+
+    private static final StreamPolicy UNLIMITED = new StreamPolicy(0, 0, 1, false, 0, 0);
+
+    private final ConcurrentHashMap<String, StreamPolicy> policies = new ConcurrentHashMap<>();
+
+    private final Map<String, double[]> rateLimits;
+
+    private final Map<String, Double> samplingRates;
+
+    private final boolean isDeterministicSampling;
+
+    private final long logIntervalNanos;
+
+    private final DataPublisherMetrics metrics;
+
+    private volatile StreamPolicy overflowPolicy;
+
+    /**
+     * @param rateLimits       comma separated streamId=eventsPerSecond limits, each optionally followed by
+     *                         /burst, which is the events a stream may publish at once and defaults to one second
+     *                         of events.
+     * @param samplingRates    comma separated streamId=fraction of the events of the stream which are kept.
+     * @param samplingStrategy {@value DataEndpointConstants#PROBABILISTIC_SAMPLING_STRATEGY} to keep each event
+     *                         with the probability of its fraction, or
+     *                         {@value DataEndpointConstants#DETERMINISTIC_SAMPLING_STRATEGY} to keep evenly
+     *                         spaced events.
+     * @param logIntervalMs    min time between the warnings logged for a stream which is over its rate limit.
+     * @param metrics          metrics the shed events are counted in.
+     */
+    public StreamEventLimiter(String rateLimits, String samplingRates, String samplingStrategy, int logIntervalMs,
+                              DataPublisherMetrics metrics) {
+        this.rateLimits = parseRateLimits(rateLimits);
+        this.samplingRates = parseSamplingRates(samplingRates);
+        if (samplingStrategy != null && !samplingStrategy.isEmpty() &&
+                !samplingStrategy.equalsIgnoreCase(DataEndpointConstants.PROBABILISTIC_SAMPLING_STRATEGY) &&
+                !samplingStrategy.equalsIgnoreCase(DataEndpointConstants.DETERMINISTIC_SAMPLING_STRATEGY)) {
+            log.warn("Unknown sampling strategy '" + samplingStrategy + "', using the " +
+                    DataEndpointConstants.PROBABILISTIC_SAMPLING_STRATEGY + " sampling strategy.");
+        }
+        this.isDeterministicSampling =
+                DataEndpointConstants.DETERMINISTIC_SAMPLING_STRATEGY.equalsIgnoreCase(samplingStrategy);
+        this.logIntervalNanos = TimeUnit.MILLISECONDS.toNanos(logIntervalMs);
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return true if a rate limit or sampling rate is configured for any stream.
+     */
+    public boolean isEnabled() {
+        return !rateLimits.isEmpty() || !samplingRates.isEmpty();
+    }
+
+    /**
+     * Check whether an event of the stream is to be published, counting it as shed if it is not.
+     *
+     * @param streamId stream id of the event.
+     * @return true if the event is to be published.
+     */
+    public boolean admit(String streamId) {
+        StreamPolicy policy = getPolicy(streamId);
+        if (policy == UNLIMITED) {
+            return true;
+        }
+        if (!policy.isSampled()) {
+            policy.sampledOutEvents.increment();
+            metrics.onEventSampledOut();
+            return false;
+        }
+        long now = System.nanoTime();
+        if (!policy.tryAcquire(now)) {
+            policy.rateLimitedEvents.increment();
+            metrics.onEventRateLimited();
+            if (policy.isLogDue(now)) {
+                log.warn("Stream " + streamId + " is over its rate limit, " + policy.rateLimitedEvents.sum() +
+                        " events of the stream shed so far.");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param streamId stream id.
+     * @return number of events of the stream shed as it was over its rate limit.
+     */
+    public long getRateLimitedEvents(String streamId) {
+        StreamPolicy policy = policies.get(streamId);
+        return policy != null ? policy.rateLimitedEvents.sum() : 0;
+    }
+
+    /**
+     * @param streamId stream id.
+     * @return number of events of the stream shed by its sampling.
+     */
+    public long getSampledOutEvents(String streamId) {
+        StreamPolicy policy = policies.get(streamId);
+        return policy != null ? policy.sampledOutEvents.sum() : 0;
+    }
+
+    private StreamPolicy getPolicy(String streamId) {
+        StreamPolicy policy = policies.get(streamId);
+        if (policy != null) {
+            return policy;
+        }
+        if (policies.size() >= MAX_STREAM_POLICIES) {
+            // The streams beyond the max share the policy of any stream, and hence its limit.
+            if (overflowPolicy == null) {
+                overflowPolicy = createPolicy(DataEndpointConstants.ANY_STREAM);
+            }
+            return overflowPolicy;
+        }
+        policy = createPolicy(streamId);
+        StreamPolicy existingPolicy = policies.putIfAbsent(streamId, policy);
+        return existingPolicy != null ? existingPolicy : policy;
+    }
+
+    private StreamPolicy createPolicy(String streamId) {
+        double[] rateLimit = rateLimits.get(streamId);
+        if (rateLimit == null) {
+            rateLimit = rateLimits.get(DataEndpointConstants.ANY_STREAM);
+        }
+        Double samplingRate = samplingRates.get(streamId);
+        if (samplingRate == null) {
+            samplingRate = samplingRates.get(DataEndpointConstants.ANY_STREAM);
+        }
+        if (rateLimit == null && samplingRate == null) {
+            return UNLIMITED;
+        }
+        long emissionIntervalNanos = 0;
+        long burstToleranceNanos = 0;
+        if (rateLimit != null) {
+            emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit[0]));
+            burstToleranceNanos = (long) (rateLimit[1] - 1) * emissionIntervalNanos;
+        }
+        return new StreamPolicy(emissionIntervalNanos, burstToleranceNanos, samplingRate != null ? samplingRate : 1,
+                isDeterministicSampling, logIntervalNanos, System.nanoTime());
+    }
+
+    private static Map<String, double[]> parseRateLimits(String rateLimits) {
+        Map<String, double[]> limits = new HashMap<>();
+        for (Map.Entry<String, String> entry : parseEntries(rateLimits).entrySet()) {
+            String[] values = entry.getValue().split("/");
+            try {
+                double rate = Double.parseDouble(values[0].trim());
+                double burst = values.length > 1 ? Double.parseDouble(values[1].trim()) : Math.ceil(rate);
+                if (rate <= 0 || values.length > 2) {
+                    throw new NumberFormatException(entry.getValue());
+                }
+                limits.put(entry.getKey(), new double[]{rate, Math.max(1, Math.floor(burst))});
+            } catch (NumberFormatException e) {
+                log.warn("Invalid rate limit '" + entry.getValue() + "' for stream " + entry.getKey() +
+                        ", the stream is not rate limited.");
+            }
+        }
+        return limits;
+    }
+
+    private static Map<String, Double> parseSamplingRates(String samplingRates) {
+        Map<String, Double> rates = new HashMap<>();
+        for (Map.Entry<String, String> entry : parseEntries(samplingRates).entrySet()) {
+            try {
+                double rate = Double.parseDouble(entry.getValue().trim());
+                if (rate < 0 || rate > 1) {
+                    throw new NumberFormatException(entry.getValue());
+                }
+                rates.put(entry.getKey(), rate);
+            } catch (NumberFormatException e) {
+                log.warn("Invalid sampling rate '" + entry.getValue() + "' for stream " + entry.getKey() +
+                        ", the sampling rate should be between 0 and 1. The stream is not sampled.");
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Split comma separated streamId=value entries. The stream id is split at the last '=', as it does not
+     * hold one, while the name and version of the stream are separated by a ':'.
+     */
+    private static Map<String, String> parseEntries(String entries) {
+        Map<String, String> values = new HashMap<>();
+        if (entries == null || entries.trim().isEmpty()) {
+            return values;
+        }
+        for (String entry : entries.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                log.warn("Invalid stream setting '" + entry + "', it should take the format streamId=value.");
+                continue;
+            }
+            values.put(entry.substring(0, separator).trim(), entry.substring(separator + 1));
+        }
+        return values;
+    }
+
+    /**
+     * Rate limit and sampling of a stream. The rate limit is a token bucket, kept as the theoretical arrival
+     * time of the next event: each admitted event moves it on by the emission interval of the rate, and an
+     * event is admitted as long as it does not move it further ahead of the current time than the burst
+     * allows.
+     */
+    private static final class StreamPolicy {
+
+        private final long emissionIntervalNanos;
+
+        private final long burstToleranceNanos;
+
+        private final double samplingRate;
+
+        private final boolean isDeterministicSampling;
+
+        private final AtomicLong theoreticalArrivalNanos;
+
+        private final AtomicLong sampledEvents = new AtomicLong();
+
+        private final long logIntervalNanos;
+
+        private final AtomicLong lastLogNanos;
+
+        private final LongAdder rateLimitedEvents = new LongAdder();
+
+        private final LongAdder sampledOutEvents = new LongAdder();
+
+        private StreamPolicy(long emissionIntervalNanos, long burstToleranceNanos, double samplingRate,
+                             boolean isDeterministicSampling, long logIntervalNanos, long nowNanos) {
+            this.emissionIntervalNanos = emissionIntervalNanos;
+            this.burstToleranceNanos = burstToleranceNanos;
+            this.samplingRate = samplingRate;
+            this.isDeterministicSampling = isDeterministicSampling;
+            this.theoreticalArrivalNanos = new AtomicLong(nowNanos);
+            this.logIntervalNanos = logIntervalNanos;
+            this.lastLogNanos = new AtomicLong(nowNanos - logIntervalNanos);
+        }
+
+        private boolean isSampled() {
+            if (samplingRate >= 1) {
+                return true;
+            } else if (isDeterministicSampling) {
+                // Keeps an event whenever the count of kept events, at the sampling rate, steps up.
+                long sequence = sampledEvents.getAndIncrement();
+                return (long) ((sequence + 1) * samplingRate) > (long) (sequence * samplingRate);
+            }
+            return ThreadLocalRandom.current().nextDouble() < samplingRate;
+        }
+
+        private boolean tryAcquire(long nowNanos) {
+            if (emissionIntervalNanos == 0) {
+                return true;
+            }
+            long arrival;
+            long nextArrival;
+            do {
+                arrival = theoreticalArrivalNanos.get();
+                long start = arrival - nowNanos > 0 ? arrival : nowNanos;
+                if (start - nowNanos > burstToleranceNanos) {
+                    return false;
+                }
+                nextArrival = start + emissionIntervalNanos;
+            } while (!theoreticalArrivalNanos.compareAndSet(arrival, nextArrival));
+            return true;
+        }
+
+        private boolean isLogDue(long nowNanos) {
+            long lastLog = lastLogNanos.get();
+            return nowNanos - lastLog >= logIntervalNanos && lastLogNanos.compareAndSet(lastLog, nowNanos);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.client;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pool of the clients of a single endpoint, kept in a lock-free stack so that borrowing and returning a
+ * client is a single compare and set, without the locking and key lookup of a keyed pool shared by all the
+ * endpoints. The most recently returned client is borrowed first, hence the clients which are not needed
+ * sink to the bottom of the stack and are evicted once they have been idle for the min idle time. Clients
+ * are not validated on borrow, only after a send on them has failed.
+ */
+public class EndpointClientPool {
+
+    private static final Logger log = LogManager.getLogger(EndpointClientPool.class);
+
+    private final AbstractClientPoolFactory factory;
+
+    private final String publisherKey;
+
+    private final int minIdle;
+
+    private final int maxIdle;
+
+    private final long minIdleTimeNanos;
+
+    private final AtomicReference<Node> head = new AtomicReference<>();
+
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    private volatile boolean isClosed;
+
+    /**
+     * @param factory         factory which creates, validates and terminates the clients.
+     * @param publisherKey    key the factory creates the clients of the endpoint for.
+     * @param minIdle         idle clients which are kept regardless of how long they have been idle.
+     * @param maxIdle         idle clients above which a returned client is terminated.
+     * @param minIdleTimeInMs time a client has to be idle before it can be evicted.
+     */
+    public EndpointClientPool(AbstractClientPoolFactory factory, String publisherKey, int minIdle, int maxIdle,
+                              long minIdleTimeInMs) {
+        this.factory = factory;
+        this.publisherKey = publisherKey;
+        this.minIdle = Math.max(0, minIdle);
+        this.maxIdle = Math.max(this.minIdle, maxIdle);
+        this.minIdleTimeNanos = TimeUnit.MILLISECONDS.toNanos(minIdleTimeInMs);
+    }
+
+    /**
+     * Borrow an idle client, or create one if there is none.
+     *
+     * @return client connected to the endpoint.
+     * @throws DataEndpointException if a new client cannot be created.
+     */
+    public Object borrowClient() throws DataEndpointException {
+        Node node = pop();
+        if (node != null) {
+            return node.client;
+        }
+        try {
+            return factory.makeObject(publisherKey);
+        } catch (DataEndpointException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DataEndpointException("Cannot create client for " + publisherKey, e);
+        }
+    }
+
+    /**
+     * Return a client which was used successfully, terminating it if the pool already has the max idle
+     * clients or has been closed.
+     *
+     * @param client client which was borrowed from the pool.
+     */
+    public void returnClient(Object client) {
+        if (isClosed || idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            terminateClient(client);
+            return;
+        }
+        push(new Node(client, System.nanoTime()));
+        if (isClosed) {
+            // Closed while returning, the client may have been pushed after the pool was drained.
+            clear();
+        }
+    }
+
+    /**
+     * Return a client which a send has failed on. The client is validated, and terminated if it is no longer
+     * connected to the endpoint.
+     *
+     * @param client client which was borrowed from the pool.
+     */
+    public void returnFailedClient(Object client) {
+        if (factory.validateClient(client)) {
+            returnClient(client);
+        } else {
+            terminateClient(client);
+        }
+    }
+
+    /**
+     * Terminate a client which must not be used again.
+     *
+     * @param client client which was borrowed from the pool.
+     */
+    public void invalidateClient(Object client) {
+        terminateClient(client);
+    }
+
+    /**
+     * Create clients until the pool has the min idle clients. A client which cannot be created is logged at
+     * debug level, as the endpoint may not be reachable yet.
+     */
+    public void prewarm() {
+        while (!isClosed && idleCount.get() < minIdle) {
+            Object client;
+            try {
+                client = factory.makeObject(publisherKey);
+            } catch (Exception e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Cannot pre-create client for " + publisherKey, e);
+                }
+                return;
+            }
+            returnClient(client);
+        }
+    }
+
+    /**
+     * Terminate the clients which have been idle for longer than the min idle time, keeping the min idle
+     * clients. The idle clients are taken off the stack while they are checked, hence a client borrowed
+     * meanwhile is created afresh.
+     *
+     * @param nowNanos current {@link System#nanoTime()}.
+     */
+    public void evictIdleClients(long nowNanos) {
+        Node node = head.getAndSet(null);
+        Node kept = null;
+        int keptCount = 0;
+        while (node != null) {
+            Node next = node.next;
+            if (keptCount < minIdle || nowNanos - node.idleSinceNanos < minIdleTimeNanos) {
+                node.next = kept;
+                kept = node;
+                keptCount++;
+            } else {
+                idleCount.decrementAndGet();
+                terminateClient(node.client);
+            }
+            node = next;
+        }
+        // The kept clients were reversed, hence pushing them back restores their order. They are pushed in new
+        // nodes, as a node which reappeared on the stack could be popped by a compare and set which read it before.
+        while (kept != null) {
+            push(new Node(kept.client, kept.idleSinceNanos));
+            kept = kept.next;
+        }
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Terminate the idle clients, and the clients which are returned from now on.
+     */
+    public void close() {
+        isClosed = true;
+        clear();
+    }
+
+    private void clear() {
+        Node node;
+        while ((node = pop()) != null) {
+            terminateClient(node.client);
+        }
+    }
+
+    private void push(Node node) {
+        Node top;
+        do {
+            top = head.get();
+            node.next = top;
+        } while (!head.compareAndSet(top, node));
+    }
+
+    private Node pop() {
+        Node top;
+        do {
+            top = head.get();
+            if (top == null) {
+                return null;
+            }
+        } while (!head.compareAndSet(top, top.next));
+        idleCount.decrementAndGet();
+        return top;
+    }
+
+    private void terminateClient(Object client) {
+        if (client != null) {
+            try {
+                factory.destroyObject(publisherKey, client);
+            } catch (Exception e) {
+                log.error("Error while terminating the client of " + publisherKey, e);
+            }
+        }
+    }
+
+    private static final class Node {
+
+        private final Object client;
+
+        private final long idleSinceNanos;
+
+        private Node next;
+
+        private Node(Object client, long idleSinceNanos) {
+            this.client = client;
+            this.idleSinceNanos = idleSinceNanos;
+        }
+    }
+}
@@ -61,7 +61,7 @@ public class AgentConfiguration {
     @Element(description = "Keep alive time in pool", required = false)
     private int keepAliveTimeInPool = 20;
 
-    @Element(description = "Reconnection interval", required = false)
+    @Element(description = "Max backoff between reconnection attempts, in seconds", required = false)
     private int reconnectionInterval = 30;
 
     @Element(description = "Max transport pool size", required = false)
@@ -101,6 +101,99 @@ public class AgentConfiguration {
     @Element(description = "Failed event log interval", required = false)
     private int failedEventLogInterval = 10000;
 
+    @Element(description = "Binary message buffer size in bytes", required = false)
+    private int binaryBufferSize = 65536;
+
+    @Element(description = "Max pooled binary message buffers", required = false)
+    private int binaryBufferPoolSize = 16;
+
+    @Element(description = "Use direct buffers for binary messages", required = false)
+    private boolean useDirectBuffers = false;
+
+    @Element(description = "Max unacknowledged batches per binary connection, 1 disables pipelining", required = false)
+    private int pipelineWindowSize = 1;
+
+    @Element(description = "Directory of the event queue overflow journal, empty disables it", required = false)
+    private String overflowJournalDirectory = "";
+
+    @Element(description = "Overflow journal segment size in bytes", required = false)
+    private int overflowJournalSegmentSize = 16777216;
+
+    @Element(description = "Max overflow journal segments", required = false)
+    private int overflowJournalMaxSegments = 8;
+
+    @Element(description = "Event queue wait strategy: blocking, sleeping, yielding or busySpin", required = false)
+    private String queueWaitStrategy = "blocking";
+
+    @Element(description = "Event queue consumers of a load balanced group, capped at its endpoint count, each balancing its own share of the endpoints by the load balancing strategy", required = false)
+    private int queueConsumerCount = 1;
+
+    @Element(description = "Load balancing strategy: roundRobin, weightedRoundRobin, leastOutstanding, latencyEwma or consistentHash", required = false)
+    private String loadBalancingStrategy = "roundRobin";
+
+    @Element(description = "Comma separated endpoint weights of load balanced groups, in receiver URL order", required = false)
+    private String endpointWeights = "";
+
+    @Element(description = "Max time in ms a batch waits for more events, 0 sends it at the end of each queue batch", required = false)
+    private int lingerMs = 0;
+
+    @Element(description = "Max estimated batch size in bytes, 0 disables the limit", required = false)
+    private int maxBatchBytes = 0;
+
+    @Element(description = "Comma separated binary compression codecs offered at login in order of preference: deflate, empty disables it", required = false)
+    private String binaryCompression = "";
+
+    @Element(description = "Min binary message size in bytes to be compressed", required = false)
+    private int binaryCompressionThreshold = 1024;
+
+    @Element(description = "Connections per receiver of the NIO binary endpoint", required = false)
+    private int nioConnectionCount = 1;
+
+    @Element(description = "Adapt the batch size to the acknowledgement latency", required = false)
+    private boolean adaptiveBatchSize = false;
+
+    @Element(description = "Acknowledgement latency the adaptive batch size is kept under", required = false)
+    private int targetAckLatencyMs = 100;
+
+    @Element(description = "Minimum batch size of the adaptive batch size", required = false)
+    private int minBatchSize = 10;
+
+    @Element(description = "Maximum batch size of the adaptive batch size", required = false)
+    private int maxBatchSize = 10000;
+
+    @Element(description = "Register the publisher, endpoint group and endpoint metrics as MBeans", required = false)
+    private boolean jmxMetricsEnabled = false;
+
+    @Element(description = "Protocol of the Thrift transport, binary or compact", required = false)
+    private String thriftProtocol = "binary";
+
+    @Element(description = "Send Thrift messages in length prefixed frames", required = false)
+    private boolean thriftFramedTransport = false;
+
+    @Element(description = "Attribute the consistentHash strategy routes by: correlationData, streamId or an attribute such as payloadData[0]", required = false)
+    private String routingKey = "correlationData";
+
+    @Element(description = "Run the blocking sends, logins and reconnections on virtual threads on Java 21 and later, with maxPoolSize as the limit of concurrent sends", required = false)
+    private boolean virtualThreads = false;
+
+    @Element(description = "Heartbeat interval of idle endpoints and initial reconnection backoff in ms", required = false)
+    private int heartbeatIntervalMs = 1000;
+
+    @Element(description = "Coalesce the events of concurrent callers into shared batches with the sync publishing strategy", required = false)
+    private boolean syncBatching = false;
+
+    @Element(description = "Resends of a failed batch before it is dead lettered, 0 for no limit", required = false)
+    private int maxResendAttempts = 0;
+
+    @Element(description = "Comma separated streamId=eventsPerSecond[/burst] limits, * for any other stream", required = false)
+    private String streamRateLimits = "";
+
+    @Element(description = "Comma separated streamId=fraction of events kept, * for any other stream", required = false)
+    private String streamSamplingRates = "";
+
+    @Element(description = "Sampling of the streams, probabilistic or deterministic", required = false)
+    private String samplingStrategy = "probabilistic";
+
     public String getName() {
         return name;
     }
@@ -285,31 +378,310 @@ public class AgentConfiguration {
         this.failedEventLogInterval = failedEventLogInterval;
     }
 
+    public int getBinaryBufferSize() {
+        return binaryBufferSize;
+    }
+
+    public void setBinaryBufferSize(int binaryBufferSize) {
+        this.binaryBufferSize = binaryBufferSize;
+    }
+
+    public int getBinaryBufferPoolSize() {
+        return binaryBufferPoolSize;
+    }
+
+    public void setBinaryBufferPoolSize(int binaryBufferPoolSize) {
+        this.binaryBufferPoolSize = binaryBufferPoolSize;
+    }
+
+    public boolean isUseDirectBuffers() {
+        return useDirectBuffers;
+    }
+
+    public void setUseDirectBuffers(boolean useDirectBuffers) {
+        this.useDirectBuffers = useDirectBuffers;
+    }
+
+    public int getPipelineWindowSize() {
+        return pipelineWindowSize;
+    }
+
+    public void setPipelineWindowSize(int pipelineWindowSize) {
+        this.pipelineWindowSize = pipelineWindowSize;
+    }
+
+    public String getOverflowJournalDirectory() {
+        return overflowJournalDirectory;
+    }
+
+    public void setOverflowJournalDirectory(String overflowJournalDirectory) {
+        this.overflowJournalDirectory = overflowJournalDirectory;
+    }
+
+    public int getOverflowJournalSegmentSize() {
+        return overflowJournalSegmentSize;
+    }
+
+    public void setOverflowJournalSegmentSize(int overflowJournalSegmentSize) {
+        this.overflowJournalSegmentSize = overflowJournalSegmentSize;
+    }
+
+    public int getOverflowJournalMaxSegments() {
+        return overflowJournalMaxSegments;
+    }
+
+    public void setOverflowJournalMaxSegments(int overflowJournalMaxSegments) {
+        this.overflowJournalMaxSegments = overflowJournalMaxSegments;
+    }
+
+    public String getQueueWaitStrategy() {
+        return queueWaitStrategy;
+    }
+
+    public void setQueueWaitStrategy(String queueWaitStrategy) {
+        this.queueWaitStrategy = queueWaitStrategy;
+    }
+
+    public int getQueueConsumerCount() {
+        return queueConsumerCount;
+    }
+
+    public void setQueueConsumerCount(int queueConsumerCount) {
+        this.queueConsumerCount = queueConsumerCount;
+    }
+
+    public String getLoadBalancingStrategy() {
+        return loadBalancingStrategy;
+    }
+
+    public void setLoadBalancingStrategy(String loadBalancingStrategy) {
+        this.loadBalancingStrategy = loadBalancingStrategy;
+    }
+
+    public String getEndpointWeights() {
+        return endpointWeights;
+    }
+
+    public void setEndpointWeights(String endpointWeights) {
+        this.endpointWeights = endpointWeights;
+    }
+
+    public int getLingerMs() {
+        return lingerMs;
+    }
+
+    public void setLingerMs(int lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public String getBinaryCompression() {
+        return binaryCompression;
+    }
+
+    public void setBinaryCompression(String binaryCompression) {
+        this.binaryCompression = binaryCompression;
+    }
+
+    public int getBinaryCompressionThreshold() {
+        return binaryCompressionThreshold;
+    }
+
+    public void setBinaryCompressionThreshold(int binaryCompressionThreshold) {
+        this.binaryCompressionThreshold = binaryCompressionThreshold;
+    }
+
+    public int getNioConnectionCount() {
+        return nioConnectionCount;
+    }
+
+    public void setNioConnectionCount(int nioConnectionCount) {
+        this.nioConnectionCount = nioConnectionCount;
+    }
+
+    public boolean isAdaptiveBatchSize() {
+        return adaptiveBatchSize;
+    }
+
+    public void setAdaptiveBatchSize(boolean adaptiveBatchSize) {
+        this.adaptiveBatchSize = adaptiveBatchSize;
+    }
+
+    public int getTargetAckLatencyMs() {
+        return targetAckLatencyMs;
+    }
+
+    public void setTargetAckLatencyMs(int targetAckLatencyMs) {
+        this.targetAckLatencyMs = targetAckLatencyMs;
+    }
+
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    public void setMinBatchSize(int minBatchSize) {
+        this.minBatchSize = minBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public boolean isJmxMetricsEnabled() {
+        return jmxMetricsEnabled;
+    }
+
+    public void setJmxMetricsEnabled(boolean jmxMetricsEnabled) {
+        this.jmxMetricsEnabled = jmxMetricsEnabled;
+    }
+
+    public String getThriftProtocol() {
+        return thriftProtocol;
+    }
+
+    public void setThriftProtocol(String thriftProtocol) {
+        this.thriftProtocol = thriftProtocol;
+    }
+
+    public boolean isThriftFramedTransport() {
+        return thriftFramedTransport;
+    }
+
+    public void setThriftFramedTransport(boolean thriftFramedTransport) {
+        this.thriftFramedTransport = thriftFramedTransport;
+    }
+
+    public String getRoutingKey() {
+        return routingKey;
+    }
+
+    public void setRoutingKey(String routingKey) {
+        this.routingKey = routingKey;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public int getHeartbeatIntervalMs() {
+        return heartbeatIntervalMs;
+    }
+
+    public void setHeartbeatIntervalMs(int heartbeatIntervalMs) {
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+    }
+
+    public boolean isSyncBatching() {
+        return syncBatching;
+    }
+
+    public void setSyncBatching(boolean syncBatching) {
+        this.syncBatching = syncBatching;
+    }
+
+    public int getMaxResendAttempts() {
+        return maxResendAttempts;
+    }
+
+    public void setMaxResendAttempts(int maxResendAttempts) {
+        this.maxResendAttempts = maxResendAttempts;
+    }
+
+    public String getStreamRateLimits() {
+        return streamRateLimits;
+    }
+
+    public void setStreamRateLimits(String streamRateLimits) {
+        this.streamRateLimits = streamRateLimits;
+    }
+
+    public String getStreamSamplingRates() {
+        return streamSamplingRates;
+    }
+
+    public void setStreamSamplingRates(String streamSamplingRates) {
+        this.streamSamplingRates = streamSamplingRates;
+    }
+
+    public String getSamplingStrategy() {
+        return samplingStrategy;
+    }
+
+    public void setSamplingStrategy(String samplingStrategy) {
+        this.samplingStrategy = samplingStrategy;
+    }
+
     @Override
     public String toString() {
         return ", Name : " + name +
-                "DataEndpointClass : " + dataEndpointClass +
-                "PublishingStrategy : " + publishingStrategy +
-                "TrustSorePath" + trustStorePath +
-                "TrustSorePassword" + trustStorePassword +
-                "QueueSize" + queueSize +
-                "BatchSize" + batchSize +
-                "CorePoolSize" + corePoolSize +
-                "SocketTimeoutMS" + socketTimeoutMS +
-                "MaxPoolSize" + maxPoolSize +
-                "KeepAliveTimeInPool" + keepAliveTimeInPool +
-                "ReconnectionInterval" + reconnectionInterval +
-                "MaxTransportPoolSize" + maxTransportPoolSize +
-                "MaxIdleConnections" + maxIdleConnections +
-                "EvictionTimePeriod" + evictionTimePeriod +
-                "MinIdleTimeInPool" + minIdleTimeInPool +
-                "SecureMaxTransportPoolSize" + secureMaxTransportPoolSize +
-                "SecureMaxIdleConnections" + secureMaxIdleConnections +
-                "SecureEvictionTimePeriod" + secureEvictionTimePeriod +
-                "SecureMinIdleTimeInPool" + secureMinIdleTimeInPool +
-                "SSLEnabledProtocols" + sslEnabledProtocols +
-                "Ciphers" + ciphers +
-                "FailedEventLogInterval" + failedEventLogInterval;
+                ", DataEndpointClass : " + dataEndpointClass +
+                ", PublishingStrategy : " + publishingStrategy +
+                ", TrustSorePath : " + trustStorePath +
+                ", TrustSorePassword : " + trustStorePassword +
+                ", QueueSize : " + queueSize +
+                ", BatchSize : " + batchSize +
+                ", CorePoolSize : " + corePoolSize +
+                ", SocketTimeoutMS : " + socketTimeoutMS +
+                ", MaxPoolSize : " + maxPoolSize +
+                ", KeepAliveTimeInPool : " + keepAliveTimeInPool +
+                ", ReconnectionInterval : " + reconnectionInterval +
+                ", MaxTransportPoolSize : " + maxTransportPoolSize +
+                ", MaxIdleConnections : " + maxIdleConnections +
+                ", EvictionTimePeriod : " + evictionTimePeriod +
+                ", MinIdleTimeInPool : " + minIdleTimeInPool +
+                ", SecureMaxTransportPoolSize : " + secureMaxTransportPoolSize +
+                ", SecureMaxIdleConnections : " + secureMaxIdleConnections +
+                ", SecureEvictionTimePeriod : " + secureEvictionTimePeriod +
+                ", SecureMinIdleTimeInPool : " + secureMinIdleTimeInPool +
+                ", SSLEnabledProtocols : " + sslEnabledProtocols +
+                ", Ciphers : " + ciphers +
+                ", FailedEventLogInterval : " + failedEventLogInterval +
+                ", BinaryBufferSize : " + binaryBufferSize +
+                ", BinaryBufferPoolSize : " + binaryBufferPoolSize +
+                ", UseDirectBuffers : " + useDirectBuffers +
+                ", PipelineWindowSize : " + pipelineWindowSize +
+                ", OverflowJournalDirectory : " + overflowJournalDirectory +
+                ", OverflowJournalSegmentSize : " + overflowJournalSegmentSize +
+                ", OverflowJournalMaxSegments : " + overflowJournalMaxSegments +
+                ", QueueWaitStrategy : " + queueWaitStrategy +
+                ", QueueConsumerCount : " + queueConsumerCount +
+                ", LoadBalancingStrategy : " + loadBalancingStrategy +
+                ", EndpointWeights : " + endpointWeights +
+                ", LingerMs : " + lingerMs +
+                ", MaxBatchBytes : " + maxBatchBytes +
+                ", BinaryCompression : " + binaryCompression +
+                ", BinaryCompressionThreshold : " + binaryCompressionThreshold +
+                ", NioConnectionCount : " + nioConnectionCount +
+                ", AdaptiveBatchSize : " + adaptiveBatchSize +
+                ", TargetAckLatencyMs : " + targetAckLatencyMs +
+                ", MinBatchSize : " + minBatchSize +
+                ", MaxBatchSize : " + maxBatchSize +
+                ", JmxMetricsEnabled : " + jmxMetricsEnabled +
+                ", ThriftProtocol : " + thriftProtocol +
+                ", ThriftFramedTransport : " + thriftFramedTransport +
+                ", RoutingKey : " + routingKey +
+                ", VirtualThreads : " + virtualThreads +
+                ", HeartbeatIntervalMs : " + heartbeatIntervalMs +
+                ", SyncBatching : " + syncBatching +
+                ", MaxResendAttempts : " + maxResendAttempts +
+                ", StreamRateLimits : " + streamRateLimits +
+                ", StreamSamplingRates : " + streamSamplingRates +
+                ", SamplingStrategy : " + samplingStrategy;
     }
 
     public AgentConfiguration(String name, String dataEndpointClass) {
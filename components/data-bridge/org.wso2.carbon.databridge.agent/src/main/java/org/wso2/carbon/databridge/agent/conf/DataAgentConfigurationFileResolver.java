@@ -175,6 +175,161 @@ public class DataAgentConfigurationFileResolver {
                     agentConfiguration.setFailedEventLogInterval(Integer.parseInt(agentConfigurationHashMap.get(
                             DataAgentConstants.FAILED_EVENT_LOG_INTERVAL).toString().trim()));
                 }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.BINARY_BUFFER_SIZE) != null) {
+                    agentConfiguration.setBinaryBufferSize(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.BINARY_BUFFER_SIZE).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.BINARY_BUFFER_POOL_SIZE) != null) {
+                    agentConfiguration.setBinaryBufferPoolSize(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.BINARY_BUFFER_POOL_SIZE).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.USE_DIRECT_BUFFERS) != null) {
+                    agentConfiguration.setUseDirectBuffers(Boolean.parseBoolean(agentConfigurationHashMap.get(
+                            DataAgentConstants.USE_DIRECT_BUFFERS).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.PIPELINE_WINDOW_SIZE) != null) {
+                    agentConfiguration.setPipelineWindowSize(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.PIPELINE_WINDOW_SIZE).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.OVERFLOW_JOURNAL_DIRECTORY) != null) {
+                    agentConfiguration.setOverflowJournalDirectory(agentConfigurationHashMap.get(
+                            DataAgentConstants.OVERFLOW_JOURNAL_DIRECTORY).toString().trim());
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.OVERFLOW_JOURNAL_SEGMENT_SIZE) != null) {
+                    agentConfiguration.setOverflowJournalSegmentSize(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.OVERFLOW_JOURNAL_SEGMENT_SIZE).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.OVERFLOW_JOURNAL_MAX_SEGMENTS) != null) {
+                    agentConfiguration.setOverflowJournalMaxSegments(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.OVERFLOW_JOURNAL_MAX_SEGMENTS).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.QUEUE_WAIT_STRATEGY) != null) {
+                    agentConfiguration.setQueueWaitStrategy(agentConfigurationHashMap.get(
+                            DataAgentConstants.QUEUE_WAIT_STRATEGY).toString().trim());
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.QUEUE_CONSUMER_COUNT) != null) {
+                    agentConfiguration.setQueueConsumerCount(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.QUEUE_CONSUMER_COUNT).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.LOAD_BALANCING_STRATEGY) != null) {
+                    agentConfiguration.setLoadBalancingStrategy(agentConfigurationHashMap.get(
+                            DataAgentConstants.LOAD_BALANCING_STRATEGY).toString().trim());
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.ENDPOINT_WEIGHTS) != null) {
+                    agentConfiguration.setEndpointWeights(agentConfigurationHashMap.get(
+                            DataAgentConstants.ENDPOINT_WEIGHTS).toString().trim());
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.LINGER_MS) != null) {
+                    agentConfiguration.setLingerMs(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.LINGER_MS).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.MAX_BATCH_BYTES) != null) {
+                    agentConfiguration.setMaxBatchBytes(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.MAX_BATCH_BYTES).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.BINARY_COMPRESSION) != null) {
+                    agentConfiguration.setBinaryCompression(agentConfigurationHashMap.get(
+                            DataAgentConstants.BINARY_COMPRESSION).toString().trim());
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.BINARY_COMPRESSION_THRESHOLD) != null) {
+                    agentConfiguration.setBinaryCompressionThreshold(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.BINARY_COMPRESSION_THRESHOLD).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.NIO_CONNECTION_COUNT) != null) {
+                    agentConfiguration.setNioConnectionCount(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.NIO_CONNECTION_COUNT).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.ADAPTIVE_BATCH_SIZE) != null) {
+                    agentConfiguration.setAdaptiveBatchSize(Boolean.parseBoolean(agentConfigurationHashMap.get(
+                            DataAgentConstants.ADAPTIVE_BATCH_SIZE).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.TARGET_ACK_LATENCY_MS) != null) {
+                    agentConfiguration.setTargetAckLatencyMs(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.TARGET_ACK_LATENCY_MS).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.MIN_BATCH_SIZE) != null) {
+                    agentConfiguration.setMinBatchSize(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.MIN_BATCH_SIZE).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.MAX_BATCH_SIZE) != null) {
+                    agentConfiguration.setMaxBatchSize(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.MAX_BATCH_SIZE).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.JMX_METRICS_ENABLED) != null) {
+                    agentConfiguration.setJmxMetricsEnabled(Boolean.parseBoolean(agentConfigurationHashMap.get(
+                            DataAgentConstants.JMX_METRICS_ENABLED).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.THRIFT_PROTOCOL) != null) {
+                    agentConfiguration.setThriftProtocol(agentConfigurationHashMap.get(
+                            DataAgentConstants.THRIFT_PROTOCOL).toString().trim());
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.THRIFT_FRAMED_TRANSPORT) != null) {
+                    agentConfiguration.setThriftFramedTransport(Boolean.parseBoolean(agentConfigurationHashMap.get(
+                            DataAgentConstants.THRIFT_FRAMED_TRANSPORT).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.ROUTING_KEY) != null) {
+                    agentConfiguration.setRoutingKey(agentConfigurationHashMap.get(
+                            DataAgentConstants.ROUTING_KEY).toString().trim());
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.VIRTUAL_THREADS) != null) {
+                    agentConfiguration.setVirtualThreads(Boolean.parseBoolean(agentConfigurationHashMap.get(
+                            DataAgentConstants.VIRTUAL_THREADS).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.HEARTBEAT_INTERVAL_MS) != null) {
+                    agentConfiguration.setHeartbeatIntervalMs(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.HEARTBEAT_INTERVAL_MS).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.SYNC_BATCHING) != null) {
+                    agentConfiguration.setSyncBatching(Boolean.parseBoolean(agentConfigurationHashMap.get(
+                            DataAgentConstants.SYNC_BATCHING).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.MAX_RESEND_ATTEMPTS) != null) {
+                    agentConfiguration.setMaxResendAttempts(Integer.parseInt(agentConfigurationHashMap.get(
+                            DataAgentConstants.MAX_RESEND_ATTEMPTS).toString().trim()));
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.STREAM_RATE_LIMITS) != null) {
+                    agentConfiguration.setStreamRateLimits(agentConfigurationHashMap.get(
+                            DataAgentConstants.STREAM_RATE_LIMITS).toString().trim());
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.STREAM_SAMPLING_RATES) != null) {
+                    agentConfiguration.setStreamSamplingRates(agentConfigurationHashMap.get(
+                            DataAgentConstants.STREAM_SAMPLING_RATES).toString().trim());
+                }
+
+                if (agentConfigurationHashMap.get(DataAgentConstants.SAMPLING_STRATEGY) != null) {
+                    agentConfiguration.setSamplingStrategy(agentConfigurationHashMap.get(
+                            DataAgentConstants.SAMPLING_STRATEGY).toString().trim());
+                }
                 agents.add(agent);
             }
         } else {
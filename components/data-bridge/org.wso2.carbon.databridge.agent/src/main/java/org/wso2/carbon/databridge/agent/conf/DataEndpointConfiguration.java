@@ -51,6 +51,8 @@ public class DataEndpointConfiguration {
 
     private int keepAliveTimeInPool;
 
+    private AgentConfiguration agentConfiguration;
+
     /**
      * Protocol Type.
      */
@@ -79,6 +81,17 @@ public class DataEndpointConfiguration {
         this.corePoolSize = corePoolSize;
         this.maxPoolSize = maxPoolSize;
         this.keepAliveTimeInPool = keepAliveTimeInPool;
+        this.agentConfiguration = new AgentConfiguration();
+    }
+
+    public DataEndpointConfiguration(String receiverURL, String authURL, String username, String password,
+                                     GenericKeyedObjectPool transportPool,
+                                     GenericKeyedObjectPool securedTransportPool,
+                                     AgentConfiguration agentConfiguration) {
+        this(receiverURL, authURL, username, password, transportPool, securedTransportPool,
+                agentConfiguration.getBatchSize(), agentConfiguration.getCorePoolSize(),
+                agentConfiguration.getMaxPoolSize(), agentConfiguration.getKeepAliveTimeInPool());
+        this.agentConfiguration = agentConfiguration;
     }
 
     public String getReceiverURL() {
@@ -142,5 +155,15 @@ public class DataEndpointConfiguration {
     public int getBatchSize() {
         return batchSize;
     }
+
+    /**
+     * The configuration of the agent the endpoint belongs to. If the endpoint configuration was not created from
+     * an agent, the default agent configuration is returned.
+     *
+     * @return agent configuration.
+     */
+    public AgentConfiguration getAgentConfiguration() {
+        return agentConfiguration;
+    }
 }
 
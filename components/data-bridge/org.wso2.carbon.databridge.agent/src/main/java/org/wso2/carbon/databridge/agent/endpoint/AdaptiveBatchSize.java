@@ -0,0 +1,100 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batch size of an endpoint, adapted with additive increase and multiplicative decrease. The size grows by a
+ * tenth of the initial batch size for every full batch which is acknowledged within the target latency, and
+ * is halved when a batch takes longer than the target or the event queue fills up. The size is not halved
+ * again until the target latency has passed since the last decrease, hence the batches which were already in
+ * flight when the receiver slowed down shrink it only once.
+ */
+public class AdaptiveBatchSize {
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    private final int increment;
+
+    private final long targetLatencyNanos;
+
+    private final AtomicInteger batchSize;
+
+    private final AtomicLong lastDecreaseNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param initialBatchSize batch size to start with.
+     * @param minBatchSize     lower bound of the batch size.
+     * @param maxBatchSize     upper bound of the batch size.
+     * @param targetLatencyMs  acknowledgement latency the batches are kept under.
+     */
+    public AdaptiveBatchSize(int initialBatchSize, int minBatchSize, int maxBatchSize, int targetLatencyMs) {
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.increment = Math.max(1, initialBatchSize / 10);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.batchSize = new AtomicInteger(Math.min(this.maxBatchSize, Math.max(this.minBatchSize,
+                initialBatchSize)));
+        this.lastDecreaseNanos.addAndGet(-targetLatencyNanos);
+    }
+
+    public int get() {
+        return batchSize.get();
+    }
+
+    /**
+     * Adapt the batch size to the latency of an acknowledged batch. A batch which was flushed before it was
+     * full does not grow the size, as it does not show that larger batches are needed.
+     *
+     * @param batchEvents  number of events in the batch.
+     * @param latencyNanos time taken to publish the batch.
+     */
+    public void onAcknowledged(int batchEvents, long latencyNanos) {
+        if (latencyNanos > targetLatencyNanos) {
+            decrease();
+            return;
+        }
+        int current;
+        do {
+            current = batchSize.get();
+            if (batchEvents < current || current >= maxBatchSize) {
+                return;
+            }
+        } while (!batchSize.compareAndSet(current, Math.min(maxBatchSize, current + increment)));
+    }
+
+    /**
+     * Halve the batch size, unless it was already halved within the target latency.
+     */
+    public void decrease() {
+        long now = System.nanoTime();
+        long lastDecrease = lastDecreaseNanos.get();
+        if (now - lastDecrease < targetLatencyNanos || !lastDecreaseNanos.compareAndSet(lastDecrease, now)) {
+            return;
+        }
+        int current;
+        do {
+            current = batchSize.get();
+        } while (!batchSize.compareAndSet(current, Math.max(minBatchSize, current / 2)));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets the publishing threads wait until an endpoint becomes active or the event queue frees some capacity,
+ * instead of polling. A waiter reads the version before checking its condition, and only waits if the
+ * version has not changed since, hence no signal raised in between is missed.
+ * <p>
+ * Signals are raised after every batch taken from the event queue, hence a signal only bumps the version
+ * unless a thread is waiting. A waiter is counted before it reads the version under the lock, so a signal
+ * which does not see the waiter has already changed the version the waiter reads.
+ */
+class AvailabilitySignal {
+
+    private final Object lock = new Object();
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    long getVersion() {
+        return version.get();
+    }
+
+    void signal() {
+        version.incrementAndGet();
+        if (waiters.get() > 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until a signal is raised after the given version was read, or until the timeout elapses.
+     *
+     * @param observedVersion version read before checking the awaited condition.
+     * @param timeoutMS       max time to wait in milliseconds.
+     */
+    void await(long observedVersion, long timeoutMS) {
+        if (timeoutMS <= 0) {
+            return;
+        }
+        waiters.incrementAndGet();
+        try {
+            synchronized (lock) {
+                if (version.get() == observedVersion) {
+                    try {
+                        lock.wait(timeoutMS);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+}
@@ -18,25 +18,43 @@
 
 package org.wso2.carbon.databridge.agent.endpoint;
 
-import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.agent.client.AbstractClientPoolFactory;
+import org.wso2.carbon.databridge.agent.client.EndpointClientPool;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
 import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAuthenticationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+import org.wso2.carbon.databridge.agent.metrics.DataEndpointMetrics;
+import org.wso2.carbon.databridge.agent.metrics.DataEndpointMetricsMBean;
+import org.wso2.carbon.databridge.agent.metrics.MetricsRegistry;
 import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
+import org.wso2.carbon.databridge.agent.util.VirtualThreads;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.exception.SessionTimeoutException;
 import org.wso2.carbon.databridge.commons.exception.TransportException;
 import org.wso2.carbon.databridge.commons.exception.UndefinedEventTypeException;
-import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import javax.management.ObjectName;
 
 /**
  * Abstract class for DataEndpoint, and this is a main class that needs to be implemented
@@ -50,10 +68,16 @@ public abstract class DataEndpoint {
 
     private DataEndpointConnectionWorker connectionWorker;
 
-    private GenericKeyedObjectPool transportPool;
+    private EndpointClientPool clientPool;
+
+    private long evictionPeriodNanos;
+
+    private long lastEvictionNanos = System.nanoTime();
 
     private int batchSize;
 
+    private AdaptiveBatchSize adaptiveBatchSize;
+
     private EventPublisherThreadPoolExecutor threadPoolExecutor;
 
     private DataEndpointFailureCallback dataEndpointFailureCallback;
@@ -62,12 +86,88 @@ public abstract class DataEndpoint {
 
     private int maxPoolSize;
 
+    private int lingerMs;
+
+    private int maxBatchBytes;
+
     private List<Event> events;
 
-    private State state;
+    private long batchBytes;
+
+    private int batchResendFailures;
+
+    private long batchGeneration;
+
+    private final Object batchLock = new Object();
+
+    private ScheduledExecutorService lingerService;
+
+    private ReconnectionBackoff reconnectionBackoff;
+
+    private long heartbeatIntervalNanos;
+
+    private volatile long lastAcknowledgedNanos = System.nanoTime();
+
+    private final AtomicBoolean isHeartbeatPending = new AtomicBoolean();
+
+    private final Runnable prewarmTask = new Runnable() {
+        @Override
+        public void run() {
+            clientPool.prewarm();
+        }
+    };
+
+    private final Runnable heartbeatTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                if (state == State.ACTIVE && !heartbeat()) {
+                    deactivate();
+                }
+            } finally {
+                isHeartbeatPending.set(false);
+            }
+        }
+    };
+
+    private final AtomicLong latencyEwmaNanos = new AtomicLong();
+
+    private volatile State state;
+
+    private DataEndpointStateCallback dataEndpointStateCallback;
+
+    private final DataEndpointMetrics metrics = new DataEndpointMetrics() {
+        @Override
+        public String getState() {
+            return state.name();
+        }
+
+        @Override
+        public int getBatchSize() {
+            return DataEndpoint.this.getBatchSize();
+        }
+
+        @Override
+        public int getOutstandingBatches() {
+            return threadPoolExecutor != null ? DataEndpoint.this.getOutstandingBatches() : 0;
+        }
+
+        @Override
+        public double getSendLatencyEwma() {
+            return latencyEwmaNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    };
+
+    private ObjectName metricsName;
 
     private Semaphore immediateDispatchSemaphore;
 
+    private boolean isSyncBatching;
+
+    private final Object syncBatchLock = new Object();
+
+    private SyncBatch openSyncBatch;
+
     /**
      * Endpoint state.
      */
@@ -81,22 +181,195 @@ public abstract class DataEndpoint {
         events = new ArrayList<>();
     }
 
+    /**
+     * Add the event to the current batch, and submit the batch once it has the batch size count of events
+     * or the max batch bytes. A batch that would go over the max batch bytes with the event is submitted
+     * before adding it. When a linger time is configured, the batch is also submitted once it has been open
+     * for that long. The batch is swapped under a lock as more than one event queue consumer may collect
+     * into the same endpoint, but the submission, which blocks while all the publisher threads are busy,
+     * is done outside of it.
+     */
     void collectAndSend(Event event) {
-        events.add(event);
-        if (events.size() >= batchSize) {
-            threadPoolExecutor.submitJobAndSetState(new EventPublisher(events), this);
-            events = new ArrayList<>();
+        collectAndSend(event, 0);
+    }
+
+    /**
+     * Add an event to the current batch as {@link #collectAndSend(Event)} does, keeping the count of the
+     * endpoints it has already failed on for the batch. Only events with the same count are batched together,
+     * so that a fresh event does not take on the failures of a requeued one. The current batch is submitted
+     * before adding an event with a different count.
+     *
+     * @param event          the event.
+     * @param resendFailures number of endpoints the batch of the event has failed on, 0 if it has not failed.
+     */
+    void collectAndSend(Event event, int resendFailures) {
+        List<Event> previousBatch = null;
+        List<Event> batch = null;
+        synchronized (batchLock) {
+            int eventSize = maxBatchBytes > 0 ? getEventSize(event) : 0;
+            if (!events.isEmpty() && (resendFailures != batchResendFailures
+                    || (maxBatchBytes > 0 && batchBytes + eventSize > maxBatchBytes))) {
+                previousBatch = takeBatch();
+            }
+            events.add(event);
+            batchBytes += eventSize;
+            batchResendFailures = resendFailures;
+            if (events.size() >= getBatchSize() || (maxBatchBytes > 0 && batchBytes >= maxBatchBytes)) {
+                batch = takeBatch();
+            } else if (lingerMs > 0 && events.size() == 1) {
+                scheduleLingerFlush(batchGeneration);
+            }
         }
+        if (previousBatch != null) {
+            submitBatch(previousBatch);
+        }
+        if (batch != null) {
+            submitBatch(batch);
+        }
+    }
+
+    /**
+     * Publish a batch which failed on another endpoint as it is, without splitting it into the open batch.
+     *
+     * @param batch the failed batch.
+     */
+    void resendBatch(List<Event> batch) {
+        submitBatch(batch);
     }
 
     void flushEvents() {
-        if (events.size() != 0) {
-            threadPoolExecutor.submitJobAndSetState(new EventPublisher(events), this);
-            events = new ArrayList<>();
+        List<Event> batch;
+        synchronized (batchLock) {
+            if (events.size() == 0) {
+                return;
+            }
+            batch = takeBatch();
+        }
+        submitBatch(batch);
+    }
+
+    /**
+     * Submit the batch of the given generation if it is still open, once it has lingered.
+     */
+    private void flushEvents(long generation) {
+        List<Event> batch;
+        synchronized (batchLock) {
+            if (batchGeneration != generation || events.size() == 0) {
+                return;
+            }
+            batch = takeBatch();
+        }
+        submitBatch(batch);
+    }
+
+    private void submitBatch(List<Event> batch) {
+        if (isAsynchronous()) {
+            publishAsynchronously(batch);
+        } else {
+            threadPoolExecutor.submitJobAndSetState(new EventPublisher(batch), this);
+        }
+    }
+
+    /**
+     * Publish the batch without a publisher thread. The batch holds a publisher permit until it is
+     * acknowledged, hence the outstanding batches are bounded by the max pool size as they are when a thread
+     * publishes each batch. A batch which fails is handed to a publisher thread, which publishes it once more
+     * with the usual session renewal and failover handling.
+     */
+    private void publishAsynchronously(final List<Event> batch) {
+        threadPoolExecutor.acquirePermitAndSetState(this);
+        final long startTime = System.nanoTime();
+        CompletableFuture<Void> acknowledgement;
+        try {
+            acknowledgement = sendAsync(batch);
+        } catch (DataEndpointException e) {
+            acknowledgement = new CompletableFuture<>();
+            acknowledgement.completeExceptionally(e);
+        }
+        acknowledgement.whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable throwable) {
+                if (throwable == null) {
+                    onBatchAcknowledged(batch, System.nanoTime() - startTime);
+                    threadPoolExecutor.releasePermit();
+                    if (state.equals(State.BUSY)) {
+                        activate();
+                    }
+                } else {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Batch of " + batch.size() + " events failed asynchronously, retrying it " +
+                                "from a publisher thread.", throwable);
+                    }
+                    threadPoolExecutor.executeWithPermit(new EventPublisher(batch));
+                }
+            }
+        });
+    }
+
+    private List<Event> takeBatch() {
+        List<Event> batch = batchResendFailures > 0 ? ResendBatch.withFailures(events, batchResendFailures) :
+                events;
+        events = new ArrayList<>();
+        batchBytes = 0;
+        batchResendFailures = 0;
+        batchGeneration++;
+        return batch;
+    }
+
+    private void scheduleLingerFlush(final long generation) {
+        try {
+            lingerService.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flushEvents(generation);
+                }
+            }, lingerMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The endpoint is shutting down, and its shutdown flushes the batch.
+        }
+    }
+
+    /**
+     * Estimate the size of the event on the wire, which bounds the size of a batch when max batch bytes
+     * is configured. Strings are counted with a byte per character.
+     *
+     * @param event the event to be sent.
+     * @return estimated size of the event in bytes.
+     */
+    protected int getEventSize(Event event) {
+        int size = 16 + event.getStreamId().length();
+        size += getDataSize(event.getMetaData());
+        size += getDataSize(event.getCorrelationData());
+        size += getDataSize(event.getPayloadData());
+        if (event.getArbitraryDataMap() != null) {
+            for (Map.Entry<String, String> aArbitraryData : event.getArbitraryDataMap().entrySet()) {
+                size += 8 + aArbitraryData.getKey().length() + aArbitraryData.getValue().length();
+            }
+        }
+        return size;
+    }
+
+    private static int getDataSize(Object[] data) {
+        int size = 0;
+        if (data != null) {
+            for (Object aData : data) {
+                if (aData instanceof String) {
+                    size += 4 + ((String) aData).length();
+                } else if (aData instanceof Long || aData instanceof Double) {
+                    size += 8;
+                } else {
+                    size += 4;
+                }
+            }
         }
+        return size;
     }
 
     void syncSend(Event event) {
+        if (isSyncBatching) {
+            syncBatchSend(event);
+            return;
+        }
         List<Event> events = new ArrayList<>(1);
         events.add(event);
         EventPublisher eventPublisher = new EventPublisher(events);
@@ -109,6 +382,73 @@ public abstract class DataEndpoint {
         }
     }
 
+    /**
+     * Publish the event together with the events of the other synchronous callers, group commit style. The
+     * first caller opens a batch and waits for a dispatch permit, while the callers arriving meanwhile add
+     * their events to its batch, until it has the batch size count of events. Once it has a permit, the first
+     * caller closes the batch and publishes it, and every caller returns once the batch is published. Hence
+     * a caller which finds a permit free publishes at once, and batches only form while all the permits are
+     * in use.
+     */
+    private void syncBatchSend(Event event) {
+        SyncBatch batch;
+        boolean isLeader = false;
+        synchronized (syncBatchLock) {
+            batch = openSyncBatch;
+            if (batch == null) {
+                batch = new SyncBatch();
+                openSyncBatch = batch;
+                isLeader = true;
+            }
+            batch.events.add(event);
+            if (batch.events.size() >= getBatchSize()) {
+                openSyncBatch = null;
+            }
+        }
+        if (!isLeader) {
+            batch.awaitPublished();
+            return;
+        }
+        setStateBusy();
+        acquireImmediateDispatchSemaphore();
+        try {
+            synchronized (syncBatchLock) {
+                if (openSyncBatch == batch) {
+                    openSyncBatch = null;
+                }
+            }
+            new EventPublisher(batch.events).run();
+        } finally {
+            releaseImmediateDispatchSemaphore();
+            batch.published.countDown();
+        }
+    }
+
+    /**
+     * Events of the synchronous callers which are published as a single batch.
+     */
+    private static class SyncBatch {
+
+        private final List<Event> events = new ArrayList<>();
+
+        private final CountDownLatch published = new CountDownLatch(1);
+
+        private void awaitPublished() {
+            boolean isInterrupted = false;
+            while (true) {
+                try {
+                    published.await();
+                    break;
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     private void acquireImmediateDispatchSemaphore() {
         boolean acquired = false;
         do {
@@ -135,6 +475,9 @@ public abstract class DataEndpoint {
     void setState(State state) {
         if (!this.state.equals(state)) {
             this.state = state;
+            if (dataEndpointStateCallback != null) {
+                dataEndpointStateCallback.onStateChange(this, state);
+            }
         }
     }
 
@@ -161,19 +504,57 @@ public abstract class DataEndpoint {
     public void initialize(DataEndpointConfiguration dataEndpointConfiguration)
             throws DataEndpointException, DataEndpointAuthenticationException,
             TransportException {
-        this.transportPool = dataEndpointConfiguration.getTransportPool();
         this.batchSize = dataEndpointConfiguration.getBatchSize();
+        AgentConfiguration agentConfiguration = dataEndpointConfiguration.getAgentConfiguration();
+        if (agentConfiguration.isAdaptiveBatchSize()) {
+            this.adaptiveBatchSize = new AdaptiveBatchSize(batchSize, agentConfiguration.getMinBatchSize(),
+                    agentConfiguration.getMaxBatchSize(), agentConfiguration.getTargetAckLatencyMs());
+        }
+        this.lingerMs = agentConfiguration.getLingerMs();
+        this.maxBatchBytes = agentConfiguration.getMaxBatchBytes();
+        this.heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(agentConfiguration.getHeartbeatIntervalMs());
+        this.reconnectionBackoff = new ReconnectionBackoff(agentConfiguration.getHeartbeatIntervalMs(),
+                TimeUnit.SECONDS.toMillis(agentConfiguration.getReconnectionInterval()));
         this.connectionWorker = new DataEndpointConnectionWorker();
         this.connectionWorker.initialize(this, dataEndpointConfiguration);
-        this.threadPoolExecutor = new EventPublisherThreadPoolExecutor(dataEndpointConfiguration.getCorePoolSize(),
-                dataEndpointConfiguration.getMaxPoolSize(), dataEndpointConfiguration.getKeepAliveTimeInPool(),
-                dataEndpointConfiguration.getReceiverURL());
-        this.connectionService = Executors.newSingleThreadExecutor(new DataBridgeThreadFactory(
-                "ConnectionService-" +
-                dataEndpointConfiguration.getReceiverURL()));
+        // Asynchronous endpoints publish without pooled clients, hence none are kept idle for them.
+        this.clientPool = new EndpointClientPool(createClientPoolFactory(), dataEndpointConfiguration.getPublisherKey(),
+                isAsynchronous() ? 0 : dataEndpointConfiguration.getCorePoolSize(),
+                agentConfiguration.getMaxIdleConnections(), agentConfiguration.getMinIdleTimeInPool());
+        this.evictionPeriodNanos = TimeUnit.MILLISECONDS.toNanos(agentConfiguration.getEvictionTimePeriod());
+        if (agentConfiguration.isVirtualThreads() && VirtualThreads.isSupported()) {
+            // The publisher threads are not pooled, the max pool size only limits the concurrent batches.
+            this.threadPoolExecutor = new EventPublisherThreadPoolExecutor(dataEndpointConfiguration.getMaxPoolSize(),
+                    VirtualThreads.newThreadFactory(dataEndpointConfiguration.getReceiverURL(), true));
+        } else {
+            this.threadPoolExecutor = new EventPublisherThreadPoolExecutor(
+                    dataEndpointConfiguration.getCorePoolSize(), dataEndpointConfiguration.getMaxPoolSize(),
+                    dataEndpointConfiguration.getKeepAliveTimeInPool(), dataEndpointConfiguration.getReceiverURL());
+        }
+        this.connectionService = Executors.newSingleThreadExecutor(VirtualThreads.newThreadFactory(
+                "ConnectionService-" + dataEndpointConfiguration.getReceiverURL(),
+                agentConfiguration.isVirtualThreads()));
         this.maxPoolSize = dataEndpointConfiguration.getMaxPoolSize();
         this.immediateDispatchSemaphore = new Semaphore(maxPoolSize);
+        this.isSyncBatching = agentConfiguration.isSyncBatching();
+        if (lingerMs > 0) {
+            this.lingerService = Executors.newSingleThreadScheduledExecutor(VirtualThreads.newThreadFactory(
+                    "LingerService-" + dataEndpointConfiguration.getReceiverURL(),
+                    agentConfiguration.isVirtualThreads()));
+        }
         connect();
+        // Runs after the connection attempt, so that the clients are connected while the endpoint is logged in.
+        connectionService.submit(prewarmTask);
+    }
+
+    private AbstractClientPoolFactory createClientPoolFactory() throws DataEndpointException {
+        try {
+            return (AbstractClientPoolFactory) (DataEndpoint.class.getClassLoader().
+                    loadClass(getClientPoolFactoryClass()).newInstance());
+        } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+            throw new DataEndpointException("Error while creating the client pool factory " +
+                    getClientPoolFactoryClass() + " for " + this.getClass().getName() + ". " + e.getMessage(), e);
+        }
     }
 
     /**
@@ -203,7 +584,77 @@ public abstract class DataEndpoint {
         return state;
     }
 
+    /**
+     * @return the number of batches of this endpoint which are being published or waiting for a publisher thread.
+     */
+    public int getOutstandingBatches() {
+        return threadPoolExecutor.getOutstandingJobs();
+    }
+
+    /**
+     * @return exponentially weighted moving average of the time taken to publish a batch, or 0 if no batch
+     * has been published yet.
+     */
+    public long getLatencyEwmaNanos() {
+        return latencyEwmaNanos.get();
+    }
+
+    /**
+     * @return the number of events a batch is submitted with, which changes with the acknowledgement latency
+     * when the adaptive batch size is enabled.
+     */
+    public int getBatchSize() {
+        return adaptiveBatchSize != null ? adaptiveBatchSize.get() : batchSize;
+    }
+
+    /**
+     * Shrink the batches when the event queue feeding this endpoint is full.
+     */
+    void onEventQueueFull() {
+        if (adaptiveBatchSize != null) {
+            adaptiveBatchSize.decrease();
+        }
+    }
+
+    private void onBatchAcknowledged(List<Event> batch, long latencyNanos) {
+        lastAcknowledgedNanos = System.nanoTime();
+        recordLatency(latencyNanos);
+        metrics.onBatchSent(batch.size(), latencyNanos);
+        if (adaptiveBatchSize != null) {
+            adaptiveBatchSize.onAcknowledged(batch.size(), latencyNanos);
+        }
+        TrackedEvent.acknowledge(batch);
+    }
+
+    private void recordLatency(long latencyNanos) {
+        long current;
+        long updated;
+        do {
+            current = latencyEwmaNanos.get();
+            updated = current == 0 ? latencyNanos :
+                    current + (long) (DataEndpointConstants.LATENCY_EWMA_ALPHA * (latencyNanos - current));
+        } while (!latencyEwmaNanos.compareAndSet(current, updated));
+    }
+
+    public DataEndpointMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Register the metrics of the endpoint in the MBean server, named after its receiver URL.
+     *
+     * @param properties key properties identifying the publisher and the group of the endpoint.
+     */
+    void registerMetrics(String properties) {
+        metricsName = MetricsRegistry.register("type=DataEndpoint," + properties + ",name=" +
+                MetricsRegistry.quote(getDataEndpointConfiguration().getReceiverURL()), metrics,
+                DataEndpointMetricsMBean.class);
+    }
+
     void activate() {
+        if (reconnectionBackoff != null) {
+            reconnectionBackoff.reset();
+        }
         this.setState(State.ACTIVE);
     }
 
@@ -223,42 +674,86 @@ public abstract class DataEndpoint {
     protected abstract void send(Object client, List<Event> events) throws
             DataEndpointException, SessionTimeoutException, UndefinedEventTypeException;
 
+    /**
+     * Write the list of events to the actual endpoint without waiting for the endpoint to acknowledge them,
+     * so that the client can be used for other batches while the events are in flight. Transports that do
+     * not support pipelining send the events synchronously.
+     *
+     * @param client The client that can be used to send the events.
+     * @param events List of events that needs to be sent.
+     * @return The acknowledgement of the events, or null if the events have already been acknowledged.
+     * @throws DataEndpointException
+     * @throws SessionTimeoutException
+     * @throws UndefinedEventTypeException
+     */
+    protected Future<?> sendPipelined(Object client, List<Event> events) throws
+            DataEndpointException, SessionTimeoutException, UndefinedEventTypeException {
+        send(client, events);
+        return null;
+    }
+
+    /**
+     * @return true if the endpoint publishes batches with {@link #sendAsync(List)}, without a publisher
+     * thread or a pooled client per batch.
+     */
+    protected boolean isAsynchronous() {
+        return false;
+    }
+
+    /**
+     * Write the list of events to the actual endpoint without blocking until the endpoint acknowledges them.
+     * This is called on endpoints which are {@link #isAsynchronous()}, and the acknowledgement must not be
+     * completed while holding a lock which the caller may need. Endpoints which are not asynchronous send
+     * the events on a pooled client, and the acknowledgement is complete when this returns.
+     *
+     * @param events List of events that needs to be sent.
+     * @return The acknowledgement of the events.
+     * @throws DataEndpointException if the events cannot be written.
+     */
+    protected CompletableFuture<Void> sendAsync(List<Event> events) throws DataEndpointException {
+        CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+        Object client = getClient();
+        boolean isSent = false;
+        try {
+            send(client, events);
+            isSent = true;
+            acknowledgement.complete(null);
+        } catch (SessionTimeoutException | UndefinedEventTypeException e) {
+            acknowledgement.completeExceptionally(e);
+        } finally {
+            if (isSent) {
+                returnClient(client);
+            } else {
+                clientPool.returnFailedClient(client);
+            }
+        }
+        return acknowledgement;
+    }
+
     protected DataEndpointConfiguration getDataEndpointConfiguration() {
         return this.connectionWorker.getDataEndpointConfiguration();
     }
 
     private Object getClient() throws DataEndpointException {
-        try {
-            return transportPool.borrowObject(getDataEndpointConfiguration().getPublisherKey());
-        } catch (Exception e) {
-            throw new DataEndpointException("Cannot borrow client for " +
-                    getDataEndpointConfiguration().getPublisherKey(), e);
-        }
+        return clientPool.borrowClient();
     }
 
     private void returnClient(Object client) {
-        try {
-            transportPool.returnObject(getDataEndpointConfiguration().getPublisherKey(), client);
-        } catch (Exception e) {
-            log.warn("Error occurred while returning object to connection pool", e);
-            discardClient(client);
-        }
+        clientPool.returnClient(client);
     }
 
     private void discardClient(Object client) {
-        if (client != null) {
-            try {
-                transportPool.invalidateObject(getDataEndpointConfiguration().getPublisherKey(), client);
-            } catch (Exception e) {
-                log.error("Error while invalidating the client ", e);
-            }
-        }
+        clientPool.invalidateClient(client);
     }
 
     void registerDataEndpointFailureCallback(DataEndpointFailureCallback callback) {
         dataEndpointFailureCallback = callback;
     }
 
+    void registerDataEndpointStateCallback(DataEndpointStateCallback callback) {
+        dataEndpointStateCallback = callback;
+    }
+
     /**
      * Event Publisher worker thread to actually sends the events to the endpoint.
      */
@@ -284,28 +779,35 @@ public abstract class DataEndpoint {
                     publish();
                 } catch (UndefinedEventTypeException ex) {
                     log.error("Unable to process this event.", ex);
+                    TrackedEvent.fail(this.events, "Undefined event type: " + ex.getMessage());
                     semaphoreRelease();
                 } catch (Exception ex) {
                     log.error("Unexpected error occurred while sending the event. ", ex);
+                    semaphoreRelease();
                     handleFailedEvents(this.events);
                 }
             } catch (DataEndpointException e) {
                 log.error("Unable to send events to the endpoint. ", e);
+                semaphoreRelease();
                 handleFailedEvents(this.events);
             } catch (UndefinedEventTypeException e) {
                 log.error("Unable to process this event.", e);
+                TrackedEvent.fail(this.events, "Undefined event type: " + e.getMessage());
                 semaphoreRelease();
             } catch (Exception ex) {
                 log.error("Unexpected error occurred while sending the event. ", ex);
+                semaphoreRelease();
                 handleFailedEvents(this.events);
             } catch (Throwable t) {
                 //There can be situations where runtime exceptions/class not found exceptions occur,
                 // This block help to catch those exceptions.
                 //No need to retry send events. Deactivating the state would be enough.
                 log.error("Unexpected error occurred while sending events. ", t);
+                TrackedEvent.fail(this.events, "Unexpected error occurred while sending events: " + t);
                 semaphoreRelease();
                 deactivate();
             } finally {
+                semaphoreRelease();
                 //If any processing error occurred the state will be changed to unavailable,
                 // Hence the state switch should be happening only in busy state where the publishing was success.
                 if (state.equals(State.BUSY)) {
@@ -325,23 +827,78 @@ public abstract class DataEndpoint {
         }
 
         private void publish() throws DataEndpointException, SessionTimeoutException, UndefinedEventTypeException {
-            Object client = getClient();
-            try {
-                send(client, this.events);
-                semaphoreRelease();
-            } finally {
-                returnClient(client);
+            long startTime = System.nanoTime();
+            Future<?> acknowledgement;
+            if (isAsynchronous()) {
+                acknowledgement = sendAsync(this.events);
+            } else {
+                Object client = getClient();
+                boolean isSent = false;
+                try {
+                    acknowledgement = sendPipelined(client, this.events);
+                    isSent = true;
+                } finally {
+                    if (isSent) {
+                        returnClient(client);
+                    } else {
+                        clientPool.returnFailedClient(client);
+                    }
+                }
+            }
+            if (acknowledgement != null) {
+                awaitAcknowledgement(acknowledgement);
             }
+            onBatchAcknowledged(this.events, System.nanoTime() - startTime);
+            semaphoreRelease();
         }
 
+        /**
+         * Release the permit of the batch, which is done once whichever way the batch ends. A failed batch
+         * releases it before it is resent, as the resend may wait for another endpoint.
+         */
         private void semaphoreRelease() {
             if (this.semaphore != null) {
                 this.semaphore.release();
+                this.semaphore = null;
+            }
+        }
+    }
+
+    /**
+     * Wait for the acknowledgement of a batch for up to the socket timeout. An acknowledgement which does not
+     * arrive in time is cancelled, so that the transport drops the connection it was expected on, which
+     * would otherwise keep the window taken by the batch.
+     */
+    private void awaitAcknowledgement(Future<?> acknowledgement) throws DataEndpointException,
+            SessionTimeoutException, UndefinedEventTypeException {
+        int timeout = getDataEndpointConfiguration().getAgentConfiguration().getSocketTimeoutMS();
+        try {
+            acknowledgement.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DataEndpointException) {
+                throw (DataEndpointException) cause;
+            } else if (cause instanceof SessionTimeoutException) {
+                throw new SessionTimeoutException("Session expired while publishing events ", cause);
+            } else if (cause instanceof UndefinedEventTypeException) {
+                throw new UndefinedEventTypeException("Undefined Event Type Exception ", cause);
+            } else {
+                throw new DataEndpointException("Error while publishing events to " +
+                        getDataEndpointConfiguration().getReceiverURL(), cause);
             }
+        } catch (TimeoutException e) {
+            acknowledgement.cancel(true);
+            throw new DataEndpointException("Events were not acknowledged by " +
+                    getDataEndpointConfiguration().getReceiverURL() + " within " + timeout + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataEndpointException("Interrupted while waiting for the acknowledgement from " +
+                    getDataEndpointConfiguration().getReceiverURL(), e);
         }
     }
 
     private void handleFailedEvents(List<Event> events) {
+        metrics.onBatchFailed();
         deactivate();
         dataEndpointFailureCallback.tryResendEvents(events, this);
     }
@@ -350,6 +907,92 @@ public abstract class DataEndpoint {
         return !state.equals(State.UNAVAILABLE);
     }
 
+    /**
+     * Check the connection of the endpoint, which is done periodically by its group. An endpoint which is
+     * not connected is reconnected once its backoff has passed. An active endpoint which has not had a batch
+     * acknowledged within the heartbeat interval is sent a heartbeat, and deactivated if it does not answer.
+     * Both run on the connection thread of the endpoint, so that a receiver which does not answer does not
+     * hold up the checks of the other endpoints. The idle clients of the endpoint are evicted here as well,
+     * once per eviction period.
+     *
+     * @param nowNanos current {@link System#nanoTime()}.
+     */
+    void checkConnection(long nowNanos) throws DataEndpointException, DataEndpointAuthenticationException,
+            TransportException {
+        if (nowNanos - lastEvictionNanos >= evictionPeriodNanos) {
+            lastEvictionNanos = nowNanos;
+            clientPool.evictIdleClients(nowNanos);
+        }
+        if (!isConnected()) {
+            if (reconnectionBackoff.isAttemptDue(nowNanos)) {
+                reconnectionBackoff.onAttempt(nowNanos);
+                connect();
+            }
+        } else if (state == State.ACTIVE && nowNanos - lastAcknowledgedNanos >= heartbeatIntervalNanos &&
+                isHeartbeatPending.compareAndSet(false, true)) {
+            try {
+                connectionService.submit(heartbeatTask);
+            } catch (RejectedExecutionException e) {
+                // The endpoint is shutting down.
+                isHeartbeatPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Publish an empty batch on a pooled connection, which the receiver answers after checking the session
+     * without dispatching anything. A session which has expired is renewed.
+     *
+     * @return true if the receiver answered.
+     */
+    private boolean heartbeat() {
+        String sessionId = getDataEndpointConfiguration().getSessionId();
+        try {
+            try {
+                sendHeartbeat();
+            } catch (SessionTimeoutException e) {
+                syncConnect(sessionId);
+                sendHeartbeat();
+            }
+            lastAcknowledgedNanos = System.nanoTime();
+            return true;
+        } catch (Exception e) {
+            log.warn("No heartbeat from " + getDataEndpointConfiguration().getReceiverURL() +
+                    ", deactivating the endpoint. " + e.getMessage());
+            if (log.isDebugEnabled()) {
+                log.debug("Heartbeat failed for " + getDataEndpointConfiguration().getReceiverURL(), e);
+            }
+            return false;
+        }
+    }
+
+    private void sendHeartbeat() throws DataEndpointException, SessionTimeoutException,
+            UndefinedEventTypeException {
+        List<Event> noEvents = Collections.emptyList();
+        if (isAsynchronous()) {
+            awaitAcknowledgement(sendAsync(noEvents));
+            return;
+        }
+        // Sent the way batches are, as a pipelined connection must not be read by anything but its pipeline.
+        Object client = getClient();
+        Future<?> acknowledgement;
+        boolean isSent = false;
+        try {
+            acknowledgement = sendPipelined(client, noEvents);
+            isSent = true;
+        } finally {
+            if (isSent) {
+                returnClient(client);
+            } else {
+                // The connection may be broken, hence it is not handed to the publishers.
+                discardClient(client);
+            }
+        }
+        if (acknowledgement != null) {
+            awaitAcknowledgement(acknowledgement);
+        }
+    }
+
     public String toString() {
         return "( Receiver URL : " + getDataEndpointConfiguration().getReceiverURL() + ", Authentication URL : " +
                 getDataEndpointConfiguration().getAuthURL() + ")";
@@ -361,7 +1004,14 @@ public abstract class DataEndpoint {
     public void shutdown() {
         log.info("Shutdown triggered for data publisher endpoint URL - " +
                 getDataEndpointConfiguration().getReceiverURL());
-        while (threadPoolExecutor.getActiveCount() != 0) {
+        if (lingerService != null) {
+            lingerService.shutdownNow();
+        }
+        flushEvents();
+        long deadline = System.currentTimeMillis() +
+                getDataEndpointConfiguration().getAgentConfiguration().getSocketTimeoutMS();
+        while (threadPoolExecutor.getActiveCount() != 0 ||
+                (isAsynchronous() && getOutstandingBatches() != 0 && System.currentTimeMillis() < deadline)) {
             try {
                 Thread.sleep(100);
             } catch (InterruptedException ignored) {
@@ -376,6 +1026,8 @@ public abstract class DataEndpoint {
         } catch (InterruptedException e) {
 
         }
+        clientPool.close();
+        MetricsRegistry.unregister(metricsName);
         log.info("Completed shutdown for data publisher endpoint URL - " +
                 getDataEndpointConfiguration().getReceiverURL());
     }
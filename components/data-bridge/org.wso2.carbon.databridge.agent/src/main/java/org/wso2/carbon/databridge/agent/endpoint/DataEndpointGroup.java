@@ -18,40 +18,64 @@
 package org.wso2.carbon.databridge.agent.endpoint;
 
 import com.lmax.disruptor.BlockingWaitStrategy;
-import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.BusySpinWaitStrategy;
 import com.lmax.disruptor.InsufficientCapacityException;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceReportingEventHandler;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.wso2.carbon.databridge.agent.DataEndpointAgent;
-import org.wso2.carbon.databridge.agent.exception.DataEndpointConfigurationException;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
+import org.wso2.carbon.databridge.agent.endpoint.loadbalance.ConsistentHashStrategy;
+import org.wso2.carbon.databridge.agent.endpoint.loadbalance.LatencyEwmaStrategy;
+import org.wso2.carbon.databridge.agent.endpoint.loadbalance.LeastOutstandingStrategy;
+import org.wso2.carbon.databridge.agent.endpoint.loadbalance.LoadBalancingStrategy;
+import org.wso2.carbon.databridge.agent.endpoint.loadbalance.RoundRobinStrategy;
+import org.wso2.carbon.databridge.agent.endpoint.loadbalance.WeightedRoundRobinStrategy;
 import org.wso2.carbon.databridge.agent.exception.EventQueueFullException;
+import org.wso2.carbon.databridge.agent.metrics.DataEndpointGroupMetrics;
+import org.wso2.carbon.databridge.agent.metrics.DataEndpointGroupMetricsMBean;
+import org.wso2.carbon.databridge.agent.metrics.MetricsRegistry;
 import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
-import org.wso2.carbon.databridge.agent.util.DataPublisherUtil;
+import org.wso2.carbon.databridge.agent.util.VirtualThreads;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.Socket;
-import java.net.UnknownHostException;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.ObjectName;
 
 /**
  * This class holds the endpoints associated within a group. Also it has a queue
  * to hold the list of events that needs to be processed by the endpoints with
  * provided the load balancing, or failover configuration.
  */
-public class DataEndpointGroup implements DataEndpointFailureCallback {
+public class DataEndpointGroup implements DataEndpointFailureCallback, DataEndpointStateCallback {
     private static final Logger log = LogManager.getLogger(DataEndpointGroup.class);
 
+    private static final int JOURNAL_REPLAY_BATCH_SIZE = 1024;
+
+    private static final long JOURNAL_REPLAY_INTERVAL_MS = 10;
+
+    private static final long MAX_AVAILABILITY_WAIT_MS = 100;
+
     private List<DataEndpoint> dataEndpoints;
 
     private HAType haType;
@@ -62,15 +86,68 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
 
     private final Integer startIndex = 0;
 
-    private AtomicInteger currentDataPublisherIndex = new AtomicInteger(startIndex);
-
     private AtomicInteger maximumDataPublisherIndex = new AtomicInteger();
 
     private ScheduledExecutorService reconnectionService;
 
     private final String publishingStrategy;
 
-    private boolean isShutdown = false;
+    private volatile boolean isShutdown = false;
+
+    private int consumerCount = 1;
+
+    private LoadBalancingStrategy loadBalancingStrategy;
+
+    /**
+     * The load balancing strategy when it routes events by key, in which case the events of a key are
+     * handled by the event queue consumer of the endpoint owning the key, to keep them in order.
+     */
+    private ConsistentHashStrategy keyAffinityStrategy;
+
+    /**
+     * The load balancing strategy of each event queue consumer over its own partition of the endpoints,
+     * when the group has more than one consumer.
+     */
+    private LoadBalancingStrategy[] partitionStrategies;
+
+    private final AvailabilitySignal availabilitySignal = new AvailabilitySignal();
+
+    private final boolean isLingerEnabled;
+
+    private final int maxResendAttempts;
+
+    private volatile DeadLetterCallback deadLetterCallback;
+
+    private final DataEndpointGroupMetrics metrics = new DataEndpointGroupMetrics() {
+        @Override
+        public long getQueueCapacity() {
+            return eventQueue != null ? eventQueue.ringBuffer.getBufferSize() : 0;
+        }
+
+        @Override
+        public long getQueueOccupancy() {
+            return eventQueue != null ? eventQueue.ringBuffer.getBufferSize() -
+                    eventQueue.ringBuffer.remainingCapacity() : 0;
+        }
+
+        @Override
+        public long getJournaledEvents() {
+            return eventQueue != null && eventQueue.overflowJournal != null ? eventQueue.overflowJournal.size() : 0;
+        }
+
+        @Override
+        public int getActiveEndpoints() {
+            int activeEndpoints = 0;
+            for (int index = startIndex; index < maximumDataPublisherIndex.get(); index++) {
+                if (dataEndpoints.get(index).getState() == DataEndpoint.State.ACTIVE) {
+                    activeEndpoints++;
+                }
+            }
+            return activeEndpoints;
+        }
+    };
+
+    private ObjectName metricsName;
 
     /**
      * HA Type.
@@ -80,56 +157,292 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
     }
 
     public DataEndpointGroup(HAType haType, DataEndpointAgent agent) {
+        this(haType, agent, 1);
+    }
+
+    /**
+     * Create an endpoint group. A load balanced group uses up to one event queue consumer per endpoint,
+     * as configured by the queue consumer count of the agent.
+     *
+     * @param haType        load balancing or failover.
+     * @param agent         the agent of the endpoints.
+     * @param endpointCount the number of endpoints that will be added to the group.
+     */
+    public DataEndpointGroup(HAType haType, DataEndpointAgent agent, int endpointCount) {
         this.dataEndpoints = new ArrayList<>();
         this.haType = haType;
-        this.reconnectionService = Executors.newScheduledThreadPool(1,
-                new DataBridgeThreadFactory("ReconnectionService"));
+        this.reconnectionService = Executors.newScheduledThreadPool(1, VirtualThreads.newThreadFactory(
+                "ReconnectionService", agent.getAgentConfiguration().isVirtualThreads()));
         this.reconnectionInterval = agent.getAgentConfiguration().getReconnectionInterval();
         this.publishingStrategy = agent.getAgentConfiguration().getPublishingStrategy();
+        this.isLingerEnabled = agent.getAgentConfiguration().getLingerMs() > 0;
+        this.maxResendAttempts = agent.getAgentConfiguration().getMaxResendAttempts();
+        if (haType.equals(HAType.LOADBALANCE)) {
+            this.consumerCount = Math.max(1, Math.min(agent.getAgentConfiguration().getQueueConsumerCount(),
+                    endpointCount));
+        }
+        if (haType.equals(HAType.LOADBALANCE)) {
+            int[] endpointWeights = getEndpointWeights(agent.getAgentConfiguration().getEndpointWeights(),
+                    endpointCount);
+            this.loadBalancingStrategy = createLoadBalancingStrategy(agent.getAgentConfiguration(),
+                    endpointWeights);
+            if (loadBalancingStrategy instanceof ConsistentHashStrategy) {
+                this.keyAffinityStrategy = (ConsistentHashStrategy) loadBalancingStrategy;
+            }
+            if (consumerCount > 1) {
+                this.partitionStrategies = new LoadBalancingStrategy[consumerCount];
+                for (int i = 0; i < consumerCount; i++) {
+                    partitionStrategies[i] = createPartitionStrategy(endpointWeights, i);
+                }
+            }
+        }
         if (!publishingStrategy.equalsIgnoreCase(DataEndpointConstants.SYNC_STRATEGY)) {
-            this.eventQueue = new EventQueue(agent.getAgentConfiguration().getQueueSize());
+            this.eventQueue = new EventQueue(agent.getAgentConfiguration().getQueueSize(),
+                    createWaitStrategy(agent.getAgentConfiguration().getQueueWaitStrategy()),
+                    createOverflowJournal(agent.getAgentConfiguration()));
+        }
+        int heartbeatIntervalMs = agent.getAgentConfiguration().getHeartbeatIntervalMs();
+        this.reconnectionService.scheduleWithFixedDelay(new ReconnectionTask(), heartbeatIntervalMs,
+                heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private WaitStrategy createWaitStrategy(String waitStrategy) {
+        if (waitStrategy == null || waitStrategy.equalsIgnoreCase(DataEndpointConstants.BLOCKING_WAIT_STRATEGY)) {
+            return new BlockingWaitStrategy();
+        } else if (waitStrategy.equalsIgnoreCase(DataEndpointConstants.SLEEPING_WAIT_STRATEGY)) {
+            return new SleepingWaitStrategy();
+        } else if (waitStrategy.equalsIgnoreCase(DataEndpointConstants.YIELDING_WAIT_STRATEGY)) {
+            return new YieldingWaitStrategy();
+        } else if (waitStrategy.equalsIgnoreCase(DataEndpointConstants.BUSY_SPIN_WAIT_STRATEGY)) {
+            return new BusySpinWaitStrategy();
+        }
+        log.warn("Unknown event queue wait strategy '" + waitStrategy + "', using the " +
+                DataEndpointConstants.BLOCKING_WAIT_STRATEGY + " wait strategy.");
+        return new BlockingWaitStrategy();
+    }
+
+    private LoadBalancingStrategy createLoadBalancingStrategy(AgentConfiguration agentConfiguration,
+                                                              int[] endpointWeights) {
+        String strategy = agentConfiguration.getLoadBalancingStrategy();
+        if (strategy == null || strategy.equalsIgnoreCase(DataEndpointConstants.ROUND_ROBIN_LB_STRATEGY)) {
+            return new RoundRobinStrategy();
+        } else if (strategy.equalsIgnoreCase(DataEndpointConstants.WEIGHTED_ROUND_ROBIN_LB_STRATEGY)) {
+            return new WeightedRoundRobinStrategy(endpointWeights);
+        } else if (strategy.equalsIgnoreCase(DataEndpointConstants.LEAST_OUTSTANDING_LB_STRATEGY)) {
+            return new LeastOutstandingStrategy();
+        } else if (strategy.equalsIgnoreCase(DataEndpointConstants.LATENCY_EWMA_LB_STRATEGY)) {
+            return new LatencyEwmaStrategy();
+        } else if (strategy.equalsIgnoreCase(DataEndpointConstants.CONSISTENT_HASH_LB_STRATEGY)) {
+            try {
+                return new ConsistentHashStrategy(agentConfiguration.getRoutingKey());
+            } catch (IllegalArgumentException e) {
+                log.warn(e.getMessage() + ", routing by " + ConsistentHashStrategy.CORRELATION_DATA_KEY + ".");
+                return new ConsistentHashStrategy(ConsistentHashStrategy.CORRELATION_DATA_KEY);
+            }
+        }
+        log.warn("Unknown load balancing strategy '" + strategy + "', using the " +
+                DataEndpointConstants.ROUND_ROBIN_LB_STRATEGY + " strategy.");
+        return new RoundRobinStrategy();
+    }
+
+    /**
+     * Create a strategy of the same kind as the one of the group, for an event queue consumer to balance the
+     * events over its own partition of the endpoints. Events routed by key are sent to the endpoint owning
+     * the key instead, hence the consumers balance the events without a key in round robin order.
+     *
+     * @param endpointWeights weights of all the endpoints of the group.
+     * @param partition       the partition of the consumer.
+     * @return the load balancing strategy of the partition.
+     */
+    private LoadBalancingStrategy createPartitionStrategy(int[] endpointWeights, int partition) {
+        if (loadBalancingStrategy instanceof WeightedRoundRobinStrategy) {
+            int[] weights = new int[(endpointWeights.length - partition + consumerCount - 1) / consumerCount];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = endpointWeights[partition + i * consumerCount];
+            }
+            return new WeightedRoundRobinStrategy(weights);
+        } else if (loadBalancingStrategy instanceof LatencyEwmaStrategy) {
+            return new LatencyEwmaStrategy();
+        } else if (loadBalancingStrategy instanceof LeastOutstandingStrategy) {
+            return new LeastOutstandingStrategy();
+        }
+        return new RoundRobinStrategy();
+    }
+
+    private int[] getEndpointWeights(String endpointWeights, int endpointCount) {
+        int[] weights = new int[Math.max(1, endpointCount)];
+        Arrays.fill(weights, 1);
+        if (endpointWeights != null && !endpointWeights.trim().isEmpty()) {
+            String[] configuredWeights = endpointWeights.split(",");
+            for (int i = 0; i < weights.length && i < configuredWeights.length; i++) {
+                try {
+                    weights[i] = Math.max(1, Integer.parseInt(configuredWeights[i].trim()));
+                } catch (NumberFormatException e) {
+                    log.warn("Invalid endpoint weight '" + configuredWeights[i] + "', using weight 1.");
+                }
+            }
+        }
+        return weights;
+    }
+
+    private EventOverflowJournal createOverflowJournal(AgentConfiguration agentConfiguration) {
+        String directory = agentConfiguration.getOverflowJournalDirectory();
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+        try {
+            return new EventOverflowJournal(new File(directory), agentConfiguration.getOverflowJournalSegmentSize(),
+                    agentConfiguration.getOverflowJournalMaxSegments());
+        } catch (IOException e) {
+            log.error("Cannot create the event queue overflow journal in " + directory +
+                    ", events will be dropped when the queue is full.", e);
+            return null;
         }
-        this.reconnectionService.scheduleAtFixedRate(new ReconnectionTask(), reconnectionInterval,
-                reconnectionInterval, TimeUnit.SECONDS);
-        currentDataPublisherIndex.set(startIndex);
     }
 
     public void addDataEndpoint(DataEndpoint dataEndpoint) {
         dataEndpoints.add(dataEndpoint);
         dataEndpoint.registerDataEndpointFailureCallback(this);
+        dataEndpoint.registerDataEndpointStateCallback(this);
         maximumDataPublisherIndex.incrementAndGet();
     }
 
-    public void tryPublish(Event event) throws EventQueueFullException {
-        if (eventQueue != null) {
+    public DataEndpointGroupMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Register the metrics of the group and of its endpoints in the MBean server.
+     *
+     * @param properties key properties identifying the publisher and the index of the group.
+     */
+    public void registerMetrics(String properties) {
+        metricsName = MetricsRegistry.register("type=DataEndpointGroup," + properties, metrics,
+                DataEndpointGroupMetricsMBean.class);
+        for (DataEndpoint dataEndpoint : dataEndpoints) {
+            dataEndpoint.registerMetrics(properties);
+        }
+    }
+
+    /**
+     * Publish the event if the event queue has capacity.
+     *
+     * @param event the event to be published.
+     * @return true if the event was queued or sent, false if it was dropped as no endpoint is available or
+     * the group is shut down.
+     * @throws EventQueueFullException if the event queue is full.
+     */
+    public boolean tryPublish(Event event) throws EventQueueFullException {
+        if (isShutdown) {
+            // The events of a shut down queue are never consumed.
+            TrackedEvent.fail(event, "Data publisher is shutting down");
+            return false;
+        } else if (eventQueue != null) {
             eventQueue.tryPut(event);
-        } else if (!isShutdown) {
-            trySyncPublish(event);
+            return true;
         }
+        return trySyncPublish(event);
     }
 
-    public void tryPublish(Event event, long timeoutMS) throws EventQueueFullException {
-        if (eventQueue != null) {
+    /**
+     * Publish the event, waiting up to the given time for queue capacity or an available endpoint.
+     *
+     * @param event     the event to be published.
+     * @param timeoutMS max time to wait in milliseconds.
+     * @return true if the event was queued or sent, false if it was dropped as no endpoint is available or
+     * the group is shut down.
+     * @throws EventQueueFullException if the event queue is still full once the timeout elapses.
+     */
+    public boolean tryPublish(Event event, long timeoutMS) throws EventQueueFullException {
+        if (isShutdown) {
+            // The events of a shut down queue are never consumed.
+            TrackedEvent.fail(event, "Data publisher is shutting down");
+            return false;
+        } else if (eventQueue != null) {
             eventQueue.tryPut(event, timeoutMS);
-        } else if (!isShutdown) {
-            trySyncPublish(event, timeoutMS);
+            return true;
         }
+        return trySyncPublish(event, timeoutMS);
     }
 
-    public void publish(Event event) {
-        if (eventQueue != null) {
-            eventQueue.put(event);
-        } else if (!isShutdown) {
-            syncPublish(event);
+    /**
+     * Publish the event, waiting for queue capacity while an endpoint is available.
+     *
+     * @param event the event to be published.
+     * @return true if the event was queued or sent, false if it was dropped as no endpoint is available or
+     * the group is shut down.
+     */
+    public boolean publish(Event event) {
+        if (isShutdown) {
+            // The events of a shut down queue are never consumed.
+            TrackedEvent.fail(event, "Data publisher is shutting down");
+            return false;
+        } else if (eventQueue != null) {
+            return eventQueue.put(event);
+        } else {
+            return syncPublish(event);
+        }
+    }
+
+    /**
+     * Publish the event held by the buffer. The buffer is copied into the event queue, hence it can be
+     * reused as soon as this returns.
+     *
+     * @param eventBuffer buffer holding the event.
+     * @return true if the event was queued or sent, false if it was dropped as no endpoint is available or
+     * the group is shut down.
+     * @throws EventQueueFullException if the event queue is full.
+     */
+    public boolean tryPublish(EventBuffer eventBuffer) throws EventQueueFullException {
+        if (isShutdown) {
+            // The events of a shut down queue are never consumed.
+            return false;
+        } else if (eventQueue != null) {
+            eventQueue.tryPut(eventBuffer);
+            return true;
+        }
+        return trySyncPublish(eventBuffer.toEvent());
+    }
+
+    /**
+     * Publish the event held by the buffer, waiting for queue capacity while an endpoint is available.
+     * The buffer is copied into the event queue, hence it can be reused as soon as this returns.
+     *
+     * @param eventBuffer buffer holding the event.
+     * @return true if the event was queued or sent, false if it was dropped as no endpoint is available or
+     * the group is shut down.
+     */
+    public boolean publish(EventBuffer eventBuffer) {
+        if (isShutdown) {
+            // The events of a shut down queue are never consumed.
+            return false;
+        } else if (eventQueue != null) {
+            return eventQueue.put(eventBuffer);
+        }
+        return syncPublish(eventBuffer.toEvent());
+    }
+
+    /**
+     * @return number of events which can be published to the group without waiting for capacity, which is
+     * none while no endpoint is active or the overflow journal is being replayed.
+     */
+    public long getAvailableCapacity() {
+        if (isShutdown || !isActiveStateDataEndpointExists()) {
+            return 0;
+        } else if (eventQueue == null) {
+            return Long.MAX_VALUE;
         }
+        return eventQueue.getAvailableCapacity();
     }
 
-    private void trySyncPublish(Event event) {
+    private boolean trySyncPublish(Event event) {
         try {
-            DataEndpoint endpoint = getDataEndpoint(false);
+            DataEndpoint endpoint = getDataEndpoint(false, null, event);
             if (endpoint != null) {
                 endpoint.syncSend(event);
+                return true;
             } else {
+                TrackedEvent.fail(event, "No endpoint is available to publish the event");
                 if (log.isDebugEnabled()) {
                     log.debug("DataEndpoint not available, dropping event : " + event);
                 }
@@ -137,36 +450,39 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
         } catch (Throwable t) {
             log.error("Unexpected error: " + t.getMessage(), t);
         }
+        return false;
     }
 
-    private void trySyncPublish(Event event, long timeoutMS) {
+    private boolean trySyncPublish(Event event, long timeoutMS) {
         long stopTime = System.currentTimeMillis() + timeoutMS;
         while (true) {
-            DataEndpoint endpoint = getDataEndpoint(false);
+            long version = availabilitySignal.getVersion();
+            DataEndpoint endpoint = getDataEndpoint(false, null, event);
             if (endpoint != null) {
                 endpoint.syncSend(event);
-                break;
+                return true;
             }
-            if (stopTime <= System.currentTimeMillis()) {
+            long remainingTime = stopTime - System.currentTimeMillis();
+            if (remainingTime <= 0) {
+                TrackedEvent.fail(event, "No endpoint is available to publish the event");
                 if (log.isDebugEnabled()) {
                     log.debug("DataEndpoint not available for  last " + timeoutMS + " ms, dropping event : " +
                             event);
                 }
-                break;
-            }
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException ignored) {
+                return false;
             }
+            availabilitySignal.await(version, Math.min(remainingTime, MAX_AVAILABILITY_WAIT_MS));
         }
     }
 
-    private void syncPublish(Event event) {
+    private boolean syncPublish(Event event) {
         try {
-            DataEndpoint endpoint = getDataEndpoint(true);
+            DataEndpoint endpoint = getDataEndpoint(true, null, event);
             if (endpoint != null) {
                 endpoint.syncSend(event);
+                return true;
             } else {
+                TrackedEvent.fail(event, "Data publisher is shutting down");
                 log.error("Dropping event as DataPublisher is shutting down.");
                 if (log.isDebugEnabled()) {
                     log.debug("Data publisher is shutting down, dropping event : " + event);
@@ -175,102 +491,352 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
         } catch (Throwable t) {
             log.error("Unexpected error: " + t.getMessage(), t);
         }
+        return false;
     }
 
     /**
-     * Event Queue Class.
+     * Event Queue Class. When an overflow journal is configured, the events which do not fit into the
+     * ring buffer are appended to the journal, and so are all the events that follow until the journal
+     * has been replayed into the ring buffer, which keeps the events in order.
      */
     class EventQueue {
         private RingBuffer<WrappedEventFactory.WrappedEvent> ringBuffer = null;
         private Disruptor<WrappedEventFactory.WrappedEvent> eventQueueDisruptor = null;
         private ExecutorService eventQueuePool = null;
+        private final EventOverflowJournal overflowJournal;
+        private volatile boolean spilling = false;
+        private volatile boolean isQueueShutdown = false;
+        // Journal positions of the tracked events, whose acknowledgements are not kept by the journal.
+        private final ArrayDeque<Long> trackedEventPositions = new ArrayDeque<>();
+        private final ArrayDeque<TrackedEvent> trackedEvents = new ArrayDeque<>();
+        private long journalAppends = 0;
+        private long journalPolls = 0;
 
-        EventQueue(int queueSize) {
+        EventQueue(int queueSize, WaitStrategy waitStrategy, EventOverflowJournal overflowJournal) {
+            this.overflowJournal = overflowJournal;
             eventQueuePool = Executors.newCachedThreadPool(
                     new DataBridgeThreadFactory("EventQueue"));
             eventQueueDisruptor = new Disruptor<>(new WrappedEventFactory(), queueSize, eventQueuePool,
-                    ProducerType.MULTI, new BlockingWaitStrategy());
-            eventQueueDisruptor.handleEventsWith(new EventQueueWorker());
+                    ProducerType.MULTI, waitStrategy);
+            EventQueueWorker[] workers = new EventQueueWorker[consumerCount];
+            for (int i = 0; i < consumerCount; i++) {
+                workers[i] = new EventQueueWorker(i);
+            }
+            eventQueueDisruptor.handleEventsWith(workers);
             this.ringBuffer = eventQueueDisruptor.start();
+            if (overflowJournal != null) {
+                eventQueuePool.submit(new JournalReplayTask());
+            }
+        }
+
+        /**
+         * Let the endpoints shrink their batches, which adaptive endpoints do at most once per target latency.
+         */
+        private void onQueueFull() {
+            for (DataEndpoint dataEndpoint : dataEndpoints) {
+                dataEndpoint.onEventQueueFull();
+            }
+        }
+
+        private long getAvailableCapacity() {
+            return spilling ? 0 : ringBuffer.remainingCapacity();
         }
 
         private void tryPut(Event event) throws EventQueueFullException {
+            if (!offer(event)) {
+                onQueueFull();
+                throw new EventQueueFullException("Cannot send events because the event queue is full");
+            }
+        }
 
-            long sequence;
-            try {
-                sequence = this.ringBuffer.tryNext(1);
-                WrappedEventFactory.WrappedEvent bufferedEvent = this.ringBuffer.get(sequence);
-                bufferedEvent.setEvent(event);
-                this.ringBuffer.publish(sequence);
-            } catch (InsufficientCapacityException e) {
-                throw new EventQueueFullException("Cannot send events because the event queue is full", e);
+        /**
+         * Requeue an event of a failed batch, keeping the number of endpoints the batch has failed on.
+         */
+        private void tryResend(Event event, int resendFailures) throws EventQueueFullException {
+            if (!spilling && offerToRingBuffer(event, resendFailures)) {
+                return;
             }
+            tryPut(event);
         }
 
         private void tryPut(Event event, long timeoutMS) throws EventQueueFullException {
-            long sequence;
             long stopTime = System.currentTimeMillis() + timeoutMS;
             while (true) {
-                try {
-                    sequence = this.ringBuffer.tryNext(1);
-                    WrappedEventFactory.WrappedEvent bufferedEvent = this.ringBuffer.get(sequence);
-                    bufferedEvent.setEvent(event);
-                    this.ringBuffer.publish(sequence);
-                    break;
-                } catch (InsufficientCapacityException ex) {
-                    if (stopTime <= System.currentTimeMillis()) {
-                        throw new EventQueueFullException("Cannot send events because the event queue is full", ex);
-                    }
-                    try {
-                        Thread.sleep(1);
-                    } catch (InterruptedException ignored) {
-                    }
+                long version = availabilitySignal.getVersion();
+                if (offer(event)) {
+                    return;
                 }
+                onQueueFull();
+                long remainingTime = stopTime - System.currentTimeMillis();
+                if (remainingTime <= 0) {
+                    throw new EventQueueFullException("Cannot send events because the event queue is full");
+                }
+                availabilitySignal.await(version, Math.min(remainingTime, MAX_AVAILABILITY_WAIT_MS));
             }
         }
 
         //Endless wait if at-least once endpoint is available.
-        private void put(Event event) {
+        private boolean put(Event event) {
             do {
+                long version = availabilitySignal.getVersion();
+                if (offer(event)) {
+                    return true;
+                }
+                onQueueFull();
+                availabilitySignal.await(version, MAX_AVAILABILITY_WAIT_MS);
+            } while (isActiveDataEndpointExists());
+            TrackedEvent.fail(event, "No endpoint is available to publish the event");
+            return false;
+        }
+
+        private void tryPut(EventBuffer eventBuffer) throws EventQueueFullException {
+            if (!offer(eventBuffer)) {
+                onQueueFull();
+                throw new EventQueueFullException("Cannot send events because the event queue is full");
+            }
+        }
+
+        private boolean put(EventBuffer eventBuffer) {
+            do {
+                long version = availabilitySignal.getVersion();
+                if (offer(eventBuffer)) {
+                    return true;
+                }
+                onQueueFull();
+                availabilitySignal.await(version, MAX_AVAILABILITY_WAIT_MS);
+            } while (isActiveDataEndpointExists());
+            return false;
+        }
+
+        /**
+         * Copy the buffer into a slot of the ring buffer. The event is only created here when it has to
+         * be written to the overflow journal, or when the consumers route the events by key, as every
+         * consumer then reads the event of every slot.
+         */
+        private boolean offer(EventBuffer eventBuffer) {
+            if (keyAffinityStrategy != null && consumerCount > 1) {
+                return offer(eventBuffer.toEvent());
+            }
+            if (!spilling) {
                 try {
                     long sequence = this.ringBuffer.tryNext(1);
-                    WrappedEventFactory.WrappedEvent bufferedEvent = this.ringBuffer.get(sequence);
-                    bufferedEvent.setEvent(event);
+                    this.ringBuffer.get(sequence).setEventBuffer(eventBuffer);
                     this.ringBuffer.publish(sequence);
-                    return;
-                } catch (InsufficientCapacityException ex) {
+                    return true;
+                } catch (InsufficientCapacityException e) {
+                    if (overflowJournal == null) {
+                        return false;
+                    }
+                }
+            }
+            return overflowJournal != null && offer(eventBuffer.toEvent());
+        }
+
+        private boolean offer(Event event) {
+            if (!spilling && offerToRingBuffer(event)) {
+                return true;
+            }
+            if (overflowJournal == null) {
+                return false;
+            }
+            synchronized (overflowJournal) {
+                if (!spilling && offerToRingBuffer(event)) {
+                    return true;
+                }
+                try {
+                    if (overflowJournal.append(event)) {
+                        if (event instanceof TrackedEvent) {
+                            trackedEventPositions.add(journalAppends);
+                            trackedEvents.add((TrackedEvent) event);
+                        }
+                        journalAppends++;
+                        spilling = true;
+                        return true;
+                    }
+                } catch (IOException e) {
+                    log.error("Cannot append the event to the overflow journal", e);
+                }
+                return false;
+            }
+        }
+
+        private boolean offerToRingBuffer(Event event) {
+            return offerToRingBuffer(event, 0);
+        }
+
+        private boolean offerToRingBuffer(Event event, int resendFailures) {
+            try {
+                long sequence = this.ringBuffer.tryNext(1);
+                WrappedEventFactory.WrappedEvent bufferedEvent = this.ringBuffer.get(sequence);
+                bufferedEvent.setEvent(event, resendFailures);
+                this.ringBuffer.publish(sequence);
+                return true;
+            } catch (InsufficientCapacityException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Move the oldest journaled events into the free slots of the ring buffer.
+         *
+         * @return true if any event was moved.
+         */
+        private boolean replayOverflowJournal() {
+            synchronized (overflowJournal) {
+                int count = (int) Math.min(Math.min(overflowJournal.size(), ringBuffer.remainingCapacity()),
+                        JOURNAL_REPLAY_BATCH_SIZE);
+                if (count > 0) {
+                    long hi;
                     try {
-                        Thread.sleep(2);
-                    } catch (InterruptedException ignored) {
+                        hi = ringBuffer.tryNext(count);
+                    } catch (InsufficientCapacityException e) {
+                        return false;
                     }
+                    long lo = hi - count + 1;
+                    for (long sequence = lo; sequence <= hi; sequence++) {
+                        ringBuffer.get(sequence).setEvent(pollOverflowJournal());
+                    }
+                    ringBuffer.publish(lo, hi);
                 }
-            } while (isActiveDataEndpointExists());
+                if (overflowJournal.isEmpty()) {
+                    spilling = false;
+                }
+                return count > 0;
+            }
+        }
+
+        /**
+         * Poll the oldest journaled event, which is the tracked event itself if one was journaled there.
+         */
+        private Event pollOverflowJournal() {
+            Event event = overflowJournal.poll();
+            Long trackedEventPosition = trackedEventPositions.peek();
+            if (trackedEventPosition != null && trackedEventPosition == journalPolls) {
+                trackedEventPositions.poll();
+                event = trackedEvents.poll();
+            }
+            journalPolls++;
+            return event;
         }
 
         private void shutdown() {
+            isQueueShutdown = true;
             eventQueuePool.shutdown();
             eventQueueDisruptor.shutdown();
+            if (overflowJournal != null) {
+                synchronized (overflowJournal) {
+                    long remaining = overflowJournal.size();
+                    if (remaining > 0) {
+                        log.warn("Dropping " + remaining + " events of the overflow journal as the event queue " +
+                                "of " + DataEndpointGroup.this.toString() + " is shutting down.");
+                    }
+                    for (TrackedEvent trackedEvent : trackedEvents) {
+                        TrackedEvent.fail(trackedEvent, "Data publisher is shutting down");
+                    }
+                    trackedEvents.clear();
+                    trackedEventPositions.clear();
+                    overflowJournal.close();
+                }
+            }
+        }
+
+        /**
+         * Replays the overflow journal whenever an endpoint is active and the ring buffer has free slots.
+         */
+        private class JournalReplayTask implements Runnable {
+            public void run() {
+                while (!isQueueShutdown) {
+                    long version = availabilitySignal.getVersion();
+                    try {
+                        if (!spilling || !isActiveStateDataEndpointExists() || !replayOverflowJournal()) {
+                            availabilitySignal.await(version, JOURNAL_REPLAY_INTERVAL_MS);
+                        }
+                    } catch (Throwable t) {
+                        log.error("Unexpected error while replaying the overflow journal: " + t.getMessage(), t);
+                        busyWait(JOURNAL_REPLAY_INTERVAL_MS);
+                    }
+                }
+            }
         }
     }
 
     /**
-     * Event Queue Worker.
+     * Event Queue Worker. When the group has more than one consumer, each worker handles the events of
+     * its own partition of the sequences, and sends them to its own partition of the endpoints, selected by
+     * the load balancing strategy of the partition, falling back to the other endpoints only when none of
+     * its own endpoints is active. When the events are routed
+     * by key, each worker handles the events whose key is owned by one of its endpoints instead, so that the
+     * events of a key stay in order.
      */
-    class EventQueueWorker implements EventHandler<WrappedEventFactory.WrappedEvent> {
+    class EventQueueWorker implements SequenceReportingEventHandler<WrappedEventFactory.WrappedEvent> {
 
         boolean isLastEventDropped = false;
 
+        private Sequence sequenceCallback;
+
+        private final int partition;
+
+        private final List<DataEndpoint> partitionEndpoints;
+
+        private boolean isFallbackUsed = false;
+
+        EventQueueWorker(int partition) {
+            this.partition = partition;
+            this.partitionEndpoints = new PartitionEndpoints(partition);
+        }
+
+        @Override
+        public void setSequenceCallback(Sequence sequenceCallback) {
+            this.sequenceCallback = sequenceCallback;
+        }
+
         @Override
         public void onEvent(WrappedEventFactory.WrappedEvent wrappedEvent, long sequence, boolean endOfBatch) {
-            DataEndpoint endpoint = getDataEndpoint(true);
-            Event event = wrappedEvent.getEvent();
+            processEvent(wrappedEvent, sequence, endOfBatch);
+            if (endOfBatch) {
+                // Release the slots of the batch before waking up the publishers waiting for capacity.
+                sequenceCallback.set(sequence);
+                availabilitySignal.signal();
+            }
+        }
+
+        private void processEvent(WrappedEventFactory.WrappedEvent wrappedEvent, long sequence,
+                                  boolean endOfBatch) {
+            // The event of a slot is only read by the consumer of its partition, unless the events are routed
+            // by key, in which case the slots hold decoded events which every consumer can read.
+            Event event = null;
+            int ownerIndex = -1;
+            if (keyAffinityStrategy != null) {
+                event = wrappedEvent.getEvent();
+                ownerIndex = keyAffinityStrategy.getOwnerIndex(dataEndpoints, event);
+            }
+            long eventPartition = ownerIndex >= 0 ? ownerIndex : sequence;
+            if (consumerCount > 1 && eventPartition % consumerCount != partition) {
+                if (endOfBatch) {
+                    flushDataEndpoints();
+                }
+                return;
+            }
+            if (event == null) {
+                event = wrappedEvent.getEvent();
+            }
+            DataEndpoint endpoint;
+            if (ownerIndex >= 0) {
+                endpoint = getDataEndpoint(true, null, event);
+                if (endpoint != dataEndpoints.get(ownerIndex)) {
+                    isFallbackUsed = true;
+                }
+            } else {
+                endpoint = consumerCount > 1 ? getPartitionDataEndpoint() : getDataEndpoint(true);
+            }
             if (endpoint != null) {
                 isLastEventDropped = false;
-                endpoint.collectAndSend(event);
+                endpoint.collectAndSend(event, wrappedEvent.getResendFailures());
                 if (endOfBatch) {
-                    flushAllDataEndpoints();
+                    flushDataEndpoints();
                 }
             } else {
+                TrackedEvent.fail(event, "Data publisher is shutting down");
                 if (!isLastEventDropped) {
                     log.error("Dropping all events as DataPublisher is shutting down.");
                 }
@@ -280,6 +846,62 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
                 isLastEventDropped = true;
             }
         }
+
+        private DataEndpoint getPartitionDataEndpoint() {
+            int partitionSize = partitionEndpoints.size();
+            if (partitionSize > 0) {
+                int startIndex = partitionStrategies[partition].nextIndex(partitionEndpoints);
+                for (int i = 0; i < partitionSize; i++) {
+                    DataEndpoint dataEndpoint = partitionEndpoints.get((startIndex + i) % partitionSize);
+                    if (dataEndpoint.getState().equals(DataEndpoint.State.ACTIVE)) {
+                        return dataEndpoint;
+                    }
+                }
+            }
+            isFallbackUsed = true;
+            return getDataEndpoint(true);
+        }
+
+        private void flushDataEndpoints() {
+            if (isLingerEnabled) {
+                // Batches are submitted by the linger timer of each endpoint instead.
+                return;
+            }
+            if (consumerCount == 1 || isFallbackUsed) {
+                isFallbackUsed = false;
+                flushAllDataEndpoints();
+                return;
+            }
+            for (int index = partition; index < maximumDataPublisherIndex.get(); index += consumerCount) {
+                DataEndpoint dataEndpoint = dataEndpoints.get(index);
+                if (dataEndpoint.getState().equals(DataEndpoint.State.ACTIVE)) {
+                    dataEndpoint.flushEvents();
+                }
+            }
+        }
+    }
+
+    /**
+     * Live view of the endpoints of an event queue consumer partition, which are every consumer count
+     * endpoints of the group starting from the partition.
+     */
+    private class PartitionEndpoints extends AbstractList<DataEndpoint> {
+
+        private final int partition;
+
+        PartitionEndpoints(int partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        public DataEndpoint get(int index) {
+            return dataEndpoints.get(partition + index * consumerCount);
+        }
+
+        @Override
+        public int size() {
+            return Math.max(0, (maximumDataPublisherIndex.get() - partition + consumerCount - 1) / consumerCount);
+        }
     }
 
     private void flushAllDataEndpoints() {
@@ -291,7 +913,7 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
     }
 
     private DataEndpoint getDataEndpoint(boolean isBusyWait) {
-        return getDataEndpoint(isBusyWait, null);
+        return getDataEndpoint(isBusyWait, null, null);
     }
 
     /**
@@ -301,16 +923,20 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
      * on busywait parameter.
      *
      * @param isBusyWait waitUntil atleast one endpoint becomes available
+     * @param failedEP   endpoint which must not be selected, or null.
+     * @param event      the event to be sent, or null if the endpoint is not selected for a single event.
      * @return DataEndpoint which can accept and send the events.
      */
-    private DataEndpoint getDataEndpoint(boolean isBusyWait, DataEndpoint failedEP) {
+    private DataEndpoint getDataEndpoint(boolean isBusyWait, DataEndpoint failedEP, Event event) {
         int startIndex;
         if (haType.equals(HAType.LOADBALANCE)) {
-            startIndex = getDataPublisherIndex();
+            startIndex = event != null ? loadBalancingStrategy.nextIndex(dataEndpoints, event) :
+                    loadBalancingStrategy.nextIndex(dataEndpoints);
         } else {
             startIndex = this.startIndex;
         }
         int index = startIndex;
+        long version = availabilitySignal.getVersion();
 
         while (true) {
             DataEndpoint dataEndpoint = dataEndpoints.get(index);
@@ -322,7 +948,7 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
                  * Wait for some time until the failover endpoint finish publishing
                  *
                  */
-                busyWait(1);
+                version = awaitAvailability(version);
             } else {
                 index++;
                 if (index > maximumDataPublisherIndex.get() - 1) {
@@ -334,15 +960,15 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
 
                             /**
                              * Have fully iterated the data publisher list,
-                             * and busy wait until data publisher
+                             * and wait until data publisher
                              * becomes available
                              */
-                            busyWait(1);
+                            version = awaitAvailability(version);
                         } else {
                             if (!isActiveDataEndpointExists()) {
                                 return null;
                             } else {
-                                busyWait(1);
+                                version = awaitAvailability(version);
                             }
                         }
                     } else {
@@ -353,6 +979,26 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
         }
     }
 
+    /**
+     * Wait until an endpoint gets activated or the event queue frees capacity, bounded so that
+     * the states which are not signalled, such as shutdown, are still checked.
+     *
+     * @param version availability version read before the endpoints were checked.
+     * @return the availability version to be used for the next check.
+     */
+    private long awaitAvailability(long version) {
+        availabilitySignal.await(version, MAX_AVAILABILITY_WAIT_MS);
+        return availabilitySignal.getVersion();
+    }
+
+    @Override
+    public void onStateChange(DataEndpoint dataEndpoint, DataEndpoint.State state) {
+        // Waiting publishers look for an active endpoint, or give up on a failed one.
+        if (state != DataEndpoint.State.BUSY) {
+            availabilitySignal.signal();
+        }
+    }
+
     private void busyWait(long timeInMilliSec) {
         try {
             Thread.sleep(timeInMilliSec);
@@ -376,91 +1022,102 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
         return false;
     }
 
-    private synchronized int getDataPublisherIndex() {
-        int index = currentDataPublisherIndex.getAndIncrement();
-        if (index == maximumDataPublisherIndex.get() - 1) {
-            currentDataPublisherIndex.set(startIndex);
+    private boolean isActiveStateDataEndpointExists() {
+        for (int index = startIndex; index < maximumDataPublisherIndex.get(); index++) {
+            if (dataEndpoints.get(index).getState() == DataEndpoint.State.ACTIVE) {
+                return true;
+            }
         }
-        return index;
+        return false;
     }
 
+    /**
+     * Set the callback which is notified of the events of the batches which failed on more endpoints than
+     * the max resend attempts allow.
+     *
+     * @param deadLetterCallback the callback, or null to only log the events which are given up on.
+     */
+    public void setDeadLetterCallback(DeadLetterCallback deadLetterCallback) {
+        this.deadLetterCallback = deadLetterCallback;
+    }
+
+    /**
+     * Resend a failed batch as a whole to the next active endpoint, so that it is neither split across the
+     * endpoints nor run through the endpoint selection once per event. The batch is requeued event by event
+     * only when there is no other active endpoint, in which case it waits in the queue until an endpoint is
+     * reconnected, and its events carry the failures of the batch into the batch they are sent in next. A
+     * batch which has failed on more endpoints than the max resend attempts allow is given up on, so that a
+     * failing batch does not bounce between the endpoints while they fail over. Events which overflow to the
+     * journal while being requeued are counted afresh once they are replayed.
+     */
     public void tryResendEvents(List<Event> events, DataEndpoint dataEndpoint) {
-        List<Event> unsuccessfulEvents = trySendActiveEndpoints(events, dataEndpoint);
-        for (Event event : unsuccessfulEvents) {
+        ResendBatch batch = ResendBatch.onFailure(events);
+        if (maxResendAttempts > 0 && batch.getFailures() > maxResendAttempts) {
+            deadLetter(batch, "Batch failed on " + batch.getFailures() + " endpoints, last on " + dataEndpoint);
+            return;
+        }
+        metrics.onEventsResent(batch.size());
+        DataEndpoint endpoint = getDataEndpoint(false, dataEndpoint, null);
+        if (endpoint != null) {
+            endpoint.resendBatch(batch);
+            return;
+        } else if (eventQueue == null) {
+            // There is no queue for the events to wait in until an endpoint is reconnected.
+            TrackedEvent.fail(batch, "No endpoint is available to publish the events");
+            if (log.isDebugEnabled()) {
+                log.debug("DataEndpoint not available, dropping " + batch.size() + " events");
+            }
+            return;
+        }
+        for (Event event : batch) {
             try {
-                if (eventQueue != null) {
-                    eventQueue.tryPut(event);
-                } else {
-                    trySyncPublish(event);
-                }
+                eventQueue.tryResend(event, batch.getFailures());
             } catch (EventQueueFullException e) {
+                metrics.onEventDropped();
+                TrackedEvent.fail(event, e.getMessage());
                 log.error("Unable to put the event :" + event, e);
             }
         }
     }
 
-    private List<Event> trySendActiveEndpoints(List<Event> events, DataEndpoint failedEP) {
-        ArrayList<Event> unsuccessfulEvents = new ArrayList<>();
-        for (Event event : events) {
-            DataEndpoint endpoint = getDataEndpoint(false, failedEP);
-            if (endpoint != null) {
-                endpoint.collectAndSend(event);
-            } else {
-                unsuccessfulEvents.add(event);
+    private void deadLetter(List<Event> events, String reason) {
+        metrics.onEventsDeadLettered(events.size());
+        log.error("Dropping " + events.size() + " events. " + reason);
+        TrackedEvent.fail(events, reason);
+        DeadLetterCallback callback = deadLetterCallback;
+        if (callback != null) {
+            try {
+                callback.onDeadLetter(Collections.unmodifiableList(events), reason);
+            } catch (Throwable t) {
+                log.error("Error in the dead letter callback: " + t.getMessage(), t);
             }
         }
-        flushAllDataEndpoints();
-        return unsuccessfulEvents;
     }
 
     private class ReconnectionTask implements Runnable {
+
+        private boolean isNoReceiverReported = false;
+
         public void run() {
             boolean isOneReceiverConnected = false;
+            long now = System.nanoTime();
             for (int i = startIndex; i < maximumDataPublisherIndex.get(); i++) {
                 DataEndpoint dataEndpoint = dataEndpoints.get(i);
-                if (!dataEndpoint.isConnected()) {
-                    try {
-                        dataEndpoint.connect();
-                    } catch (Exception ex) {
-                        dataEndpoint.deactivate();
-                    }
-                } else {
-                    try {
-                        String[] urlElements = DataPublisherUtil.getProtocolHostPort(
-                                dataEndpoint.getDataEndpointConfiguration().getReceiverURL());
-                        if (!isServerExists(urlElements[1], Integer.parseInt(urlElements[2]))) {
-                            dataEndpoint.deactivate();
-                        }
-                    } catch (DataEndpointConfigurationException exception) {
-                        log.warn("Data Endpoint with receiver URL:" +
-                                dataEndpoint.getDataEndpointConfiguration().getReceiverURL()
-                                + " could not be deactivated", exception);
-                    }
+                try {
+                    dataEndpoint.checkConnection(now);
+                } catch (Exception ex) {
+                    dataEndpoint.deactivate();
                 }
                 if (dataEndpoint.isConnected()) {
                     isOneReceiverConnected = true;
                 }
             }
-            if (!isOneReceiverConnected) {
-                log.warn("No receiver is reachable at reconnection, will try to reconnect every " +
+            if (!isOneReceiverConnected && !isNoReceiverReported) {
+                log.warn("No receiver is reachable at reconnection, will keep reconnecting with a backoff of up to " +
                         reconnectionInterval + " sec");
             }
+            isNoReceiverReported = !isOneReceiverConnected;
         }
-
-        private boolean isServerExists(String ip, int port) {
-            try {
-                Socket socket = new Socket(ip, port);
-                socket.close();
-                return true;
-            } catch (UnknownHostException e) {
-                return false;
-            } catch (IOException e) {
-                return false;
-            } catch (Exception e) {
-                return false;
-            }
-        }
-
     }
 
     public String toString() {
@@ -492,5 +1149,6 @@ public class DataEndpointGroup implements DataEndpointFailureCallback {
         for (DataEndpoint dataEndpoint : dataEndpoints) {
             dataEndpoint.shutdown();
         }
+        MetricsRegistry.unregister(metricsName);
     }
 }
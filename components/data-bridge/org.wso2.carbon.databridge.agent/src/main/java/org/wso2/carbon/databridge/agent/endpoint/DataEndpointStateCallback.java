@@ -0,0 +1,34 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint;
+
+/**
+ * This interface is used to implement a call back to get notified when the state of a data endpoint changes.
+ */
+public interface DataEndpointStateCallback {
+
+    /**
+     * Notifies the new state of the endpoint. This is called by the thread which changed the state,
+     * hence implementations should return quickly.
+     *
+     * @param dataEndpoint endpoint which changed its state.
+     * @param state        the new state of the endpoint.
+     */
+    void onStateChange(DataEndpoint dataEndpoint, DataEndpoint.State state);
+
+}
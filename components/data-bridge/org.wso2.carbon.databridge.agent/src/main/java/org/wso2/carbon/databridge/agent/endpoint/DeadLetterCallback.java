@@ -0,0 +1,38 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.List;
+
+/**
+ * Callback which is notified of the events of a batch which are given up on, after the batch has failed on
+ * more endpoints than the max resend attempts allow.
+ */
+public interface DeadLetterCallback {
+
+    /**
+     * Notifies the events which will not be published. This is called on a publisher thread of the endpoint
+     * which failed last, hence it should not block.
+     *
+     * @param events the events of the failed batch.
+     * @param reason why the events were given up on.
+     */
+    void onDeadLetter(List<Event> events, String reason);
+}
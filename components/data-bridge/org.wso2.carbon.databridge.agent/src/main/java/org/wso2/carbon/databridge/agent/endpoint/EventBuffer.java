@@ -0,0 +1,254 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reusable, unboxed representation of an event. Primitive attributes are kept as raw bits in a long
+ * array and string attributes in an object array, so that an event can be written and copied into
+ * an event queue slot without allocating, once the buffers have grown to the width of the stream.
+ * The {@link Event} is only created by {@link #toEvent()}, on the thread that sends it.
+ * Instances are not thread safe.
+ */
+public class EventBuffer {
+
+    /**
+     * Attribute sections, in the order they have to be written.
+     */
+    public enum Section {
+        META_DATA, CORRELATION_DATA, PAYLOAD_DATA
+    }
+
+    private static final byte NULL_TYPE = 0;
+    private static final byte STRING_TYPE = 1;
+    private static final byte INT_TYPE = 2;
+    private static final byte LONG_TYPE = 3;
+    private static final byte FLOAT_TYPE = 4;
+    private static final byte DOUBLE_TYPE = 5;
+    private static final byte BOOL_TYPE = 6;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String streamId;
+
+    private long timeStamp;
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+
+    private long[] values = new long[INITIAL_CAPACITY];
+
+    private String[] strings = new String[INITIAL_CAPACITY];
+
+    private int size;
+
+    private final int[] sectionSizes = new int[Section.values().length];
+
+    private Section section = Section.PAYLOAD_DATA;
+
+    private String[] arbitraryData = new String[0];
+
+    private int arbitraryDataSize;
+
+    /**
+     * Discard the current event and start a new one. Attributes are written to the payload data
+     * until another section is selected.
+     *
+     * @param streamId  stream id of the event.
+     * @param timeStamp time stamp of the event.
+     */
+    public void reset(String streamId, long timeStamp) {
+        Arrays.fill(strings, 0, size, null);
+        Arrays.fill(arbitraryData, 0, arbitraryDataSize, null);
+        this.streamId = streamId;
+        this.timeStamp = timeStamp;
+        this.size = 0;
+        this.arbitraryDataSize = 0;
+        Arrays.fill(sectionSizes, 0);
+        this.section = Section.PAYLOAD_DATA;
+    }
+
+    /**
+     * Select the section which the next attributes are written to. Sections have to be written in
+     * the order meta, correlation and payload data.
+     *
+     * @param section section of the next attributes.
+     */
+    public void startSection(Section section) {
+        for (int i = section.ordinal() + 1; i < sectionSizes.length; i++) {
+            if (sectionSizes[i] != 0) {
+                throw new IllegalStateException("Cannot write " + section + " after " + Section.values()[i]);
+            }
+        }
+        this.section = section;
+    }
+
+    public void putInt(int value) {
+        add(INT_TYPE, value, null);
+    }
+
+    public void putLong(long value) {
+        add(LONG_TYPE, value, null);
+    }
+
+    public void putFloat(float value) {
+        add(FLOAT_TYPE, Float.floatToRawIntBits(value), null);
+    }
+
+    public void putDouble(double value) {
+        add(DOUBLE_TYPE, Double.doubleToRawLongBits(value), null);
+    }
+
+    public void putBoolean(boolean value) {
+        add(BOOL_TYPE, value ? 1 : 0, null);
+    }
+
+    public void putString(String value) {
+        add(value == null ? NULL_TYPE : STRING_TYPE, 0, value);
+    }
+
+    public void putNull() {
+        add(NULL_TYPE, 0, null);
+    }
+
+    public void putArbitraryData(String key, String value) {
+        if (arbitraryDataSize + 2 > arbitraryData.length) {
+            arbitraryData = Arrays.copyOf(arbitraryData, Math.max(4, arbitraryData.length * 2));
+        }
+        arbitraryData[arbitraryDataSize++] = key;
+        arbitraryData[arbitraryDataSize++] = value;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * Copy the event of the given buffer into this buffer, reusing the buffers of this one.
+     *
+     * @param source buffer to copy from.
+     */
+    public void copyFrom(EventBuffer source) {
+        if (types.length < source.size) {
+            types = new byte[source.types.length];
+            values = new long[source.types.length];
+            strings = new String[source.types.length];
+        } else {
+            Arrays.fill(strings, source.size, size, null);
+        }
+        if (arbitraryData.length < source.arbitraryDataSize) {
+            arbitraryData = new String[source.arbitraryData.length];
+        } else {
+            Arrays.fill(arbitraryData, source.arbitraryDataSize, arbitraryDataSize, null);
+        }
+        System.arraycopy(source.types, 0, types, 0, source.size);
+        System.arraycopy(source.values, 0, values, 0, source.size);
+        System.arraycopy(source.strings, 0, strings, 0, source.size);
+        System.arraycopy(source.arbitraryData, 0, arbitraryData, 0, source.arbitraryDataSize);
+        System.arraycopy(source.sectionSizes, 0, sectionSizes, 0, sectionSizes.length);
+        this.streamId = source.streamId;
+        this.timeStamp = source.timeStamp;
+        this.size = source.size;
+        this.arbitraryDataSize = source.arbitraryDataSize;
+        this.section = source.section;
+    }
+
+    /**
+     * Create the event of the buffer. Sections without attributes are set to null.
+     *
+     * @return the event.
+     */
+    public Event toEvent() {
+        int[] sectionStarts = new int[sectionSizes.length];
+        for (int i = 1; i < sectionSizes.length; i++) {
+            sectionStarts[i] = sectionStarts[i - 1] + sectionSizes[i - 1];
+        }
+        Map<String, String> arbitraryDataMap = null;
+        if (arbitraryDataSize > 0) {
+            arbitraryDataMap = new HashMap<>();
+            for (int i = 0; i < arbitraryDataSize; i += 2) {
+                arbitraryDataMap.put(arbitraryData[i], arbitraryData[i + 1]);
+            }
+        }
+        return new Event(streamId, timeStamp,
+                getData(sectionStarts[Section.META_DATA.ordinal()], sectionSizes[Section.META_DATA.ordinal()]),
+                getData(sectionStarts[Section.CORRELATION_DATA.ordinal()],
+                        sectionSizes[Section.CORRELATION_DATA.ordinal()]),
+                getData(sectionStarts[Section.PAYLOAD_DATA.ordinal()],
+                        sectionSizes[Section.PAYLOAD_DATA.ordinal()]),
+                arbitraryDataMap);
+    }
+
+    private Object[] getData(int start, int length) {
+        if (length == 0) {
+            return null;
+        }
+        Object[] data = new Object[length];
+        for (int i = 0; i < length; i++) {
+            int index = start + i;
+            switch (types[index]) {
+                case STRING_TYPE:
+                    data[i] = strings[index];
+                    break;
+                case INT_TYPE:
+                    data[i] = (int) values[index];
+                    break;
+                case LONG_TYPE:
+                    data[i] = values[index];
+                    break;
+                case FLOAT_TYPE:
+                    data[i] = Float.intBitsToFloat((int) values[index]);
+                    break;
+                case DOUBLE_TYPE:
+                    data[i] = Double.longBitsToDouble(values[index]);
+                    break;
+                case BOOL_TYPE:
+                    data[i] = values[index] == 1;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return data;
+    }
+
+    private void add(byte type, long value, String string) {
+        // Attributes are kept in section order, hence a section can only be appended to while
+        // the sections after it are still empty, which startSection guarantees.
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            values = Arrays.copyOf(values, capacity);
+            strings = Arrays.copyOf(strings, capacity);
+        }
+        types[size] = type;
+        values[size] = value;
+        strings[size] = string;
+        size++;
+        sectionSizes[section.ordinal()]++;
+    }
+
+    @Override
+    public String toString() {
+        return toEvent().toString();
+    }
+}
@@ -0,0 +1,392 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append only journal of events, stored in a bounded number of fixed size memory-mapped segment
+ * files. It holds the events which do not fit into the event queue of an endpoint group, without
+ * growing the heap, until they can be replayed in the order they were appended. Fully read segments
+ * are recycled for later appends, hence the disk usage never exceeds the segment size times the
+ * max number of segments.
+ * <p>
+ * The journal only spills the memory of the running publisher, its content is not recovered
+ * after a restart and the segment files are deleted when it is closed.
+ */
+public class EventOverflowJournal {
+
+    private static final Logger log = LogManager.getLogger(EventOverflowJournal.class);
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private static final byte NULL_TYPE = 0;
+    private static final byte STRING_TYPE = 1;
+    private static final byte INT_TYPE = 2;
+    private static final byte LONG_TYPE = 3;
+    private static final byte FLOAT_TYPE = 4;
+    private static final byte DOUBLE_TYPE = 5;
+    private static final byte BOOL_TYPE = 6;
+
+    private final File directory;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+    private final ArrayDeque<Segment> freeSegments = new ArrayDeque<>();
+
+    private int createdSegments;
+
+    private long size;
+
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(1024);
+
+    private boolean closed;
+
+    /**
+     * Create a journal in a new directory under the given base directory.
+     *
+     * @param baseDirectory directory under which the segment files are created.
+     * @param segmentSize   size of a segment file in bytes, which also bounds the size of a single event.
+     * @param maxSegments   max number of segment files of the journal.
+     * @throws IOException if the journal directory cannot be created.
+     */
+    public EventOverflowJournal(File baseDirectory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize <= 4 || maxSegments < 1) {
+            throw new IllegalArgumentException("Invalid overflow journal segment size: " + segmentSize +
+                    " or max segments: " + maxSegments);
+        }
+        if (!baseDirectory.isDirectory() && !baseDirectory.mkdirs()) {
+            throw new IOException("Cannot create the overflow journal directory " + baseDirectory);
+        }
+        this.directory = Files.createTempDirectory(baseDirectory.toPath(), "event-journal-").toFile();
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * Append the event to the end of the journal.
+     *
+     * @param event event to be stored.
+     * @return false if the journal has no space left for the event, or the event has an attribute which is
+     * not a string or a boxed primitive, hence cannot be journaled without changing its type.
+     * @throws IOException if a new segment file cannot be created.
+     */
+    public synchronized boolean append(Event event) throws IOException {
+        if (closed) {
+            return false;
+        }
+        ByteBuffer record;
+        try {
+            record = encode(event);
+        } catch (IllegalArgumentException e) {
+            log.warn("Event of stream " + event.getStreamId() + " cannot be appended to the overflow journal. " +
+                    e.getMessage());
+            return false;
+        }
+        int recordSize = 4 + record.remaining();
+        if (recordSize > segmentSize) {
+            log.warn("Event of " + recordSize + " bytes does not fit into an overflow journal segment of " +
+                    segmentSize + " bytes.");
+            return false;
+        }
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.writePosition + recordSize > segmentSize) {
+            segment = nextSegment();
+            if (segment == null) {
+                return false;
+            }
+            segments.addLast(segment);
+        }
+        segment.buffer.position(segment.writePosition);
+        segment.buffer.putInt(record.remaining());
+        segment.buffer.put(record);
+        segment.writePosition += recordSize;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove the oldest event of the journal.
+     *
+     * @return the oldest event, or null if the journal is empty.
+     */
+    public synchronized Event poll() {
+        Segment segment = segments.peekFirst();
+        while (segment != null && segment.readPosition == segment.writePosition) {
+            if (segment == segments.peekLast()) {
+                segment.reset();
+                return null;
+            }
+            segments.pollFirst();
+            segment.reset();
+            freeSegments.addLast(segment);
+            segment = segments.peekFirst();
+        }
+        if (segment == null) {
+            return null;
+        }
+        segment.buffer.position(segment.readPosition);
+        int recordSize = segment.buffer.getInt();
+        Event event = decode(segment.buffer);
+        segment.readPosition += 4 + recordSize;
+        size--;
+        return event;
+    }
+
+    /**
+     * @return the number of events in the journal.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Close the journal and delete its segment files. Events which were not polled are discarded.
+     */
+    public synchronized void close() {
+        closed = true;
+        segments.addAll(freeSegments);
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        freeSegments.clear();
+        size = 0;
+        if (!directory.delete()) {
+            directory.deleteOnExit();
+        }
+    }
+
+    private Segment nextSegment() throws IOException {
+        Segment segment = freeSegments.pollFirst();
+        if (segment == null && createdSegments < maxSegments) {
+            segment = new Segment(new File(directory, "segment-" + createdSegments + ".journal"), segmentSize);
+            createdSegments++;
+        }
+        return segment;
+    }
+
+    private ByteBuffer encode(Event event) {
+        while (true) {
+            recordBuffer.clear();
+            try {
+                recordBuffer.putLong(event.getTimeStamp());
+                putString(event.getStreamId(), recordBuffer);
+                putData(event.getMetaData(), recordBuffer);
+                putData(event.getCorrelationData(), recordBuffer);
+                putData(event.getPayloadData(), recordBuffer);
+                Map<String, String> arbitraryDataMap = event.getArbitraryDataMap();
+                if (arbitraryDataMap == null) {
+                    recordBuffer.putInt(-1);
+                } else {
+                    recordBuffer.putInt(arbitraryDataMap.size());
+                    for (Map.Entry<String, String> aArbitraryData : arbitraryDataMap.entrySet()) {
+                        putString(aArbitraryData.getKey(), recordBuffer);
+                        putString(aArbitraryData.getValue(), recordBuffer);
+                    }
+                }
+                recordBuffer.flip();
+                return recordBuffer;
+            } catch (BufferOverflowException e) {
+                recordBuffer = ByteBuffer.allocate(recordBuffer.capacity() * 2);
+            }
+        }
+    }
+
+    private static Event decode(ByteBuffer buffer) {
+        long timeStamp = buffer.getLong();
+        String streamId = getString(buffer);
+        Object[] metaData = getData(buffer);
+        Object[] correlationData = getData(buffer);
+        Object[] payloadData = getData(buffer);
+        Map<String, String> arbitraryDataMap = null;
+        int arbitraryDataSize = buffer.getInt();
+        if (arbitraryDataSize >= 0) {
+            arbitraryDataMap = new HashMap<>();
+            for (int i = 0; i < arbitraryDataSize; i++) {
+                arbitraryDataMap.put(getString(buffer), getString(buffer));
+            }
+        }
+        return new Event(streamId, timeStamp, metaData, correlationData, payloadData, arbitraryDataMap);
+    }
+
+    private static void putData(Object[] data, ByteBuffer buffer) {
+        if (data == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(data.length);
+        for (Object aData : data) {
+            if (aData == null) {
+                buffer.put(NULL_TYPE);
+            } else if (aData instanceof Integer) {
+                buffer.put(INT_TYPE);
+                buffer.putInt((Integer) aData);
+            } else if (aData instanceof Long) {
+                buffer.put(LONG_TYPE);
+                buffer.putLong((Long) aData);
+            } else if (aData instanceof Float) {
+                buffer.put(FLOAT_TYPE);
+                buffer.putFloat((Float) aData);
+            } else if (aData instanceof Double) {
+                buffer.put(DOUBLE_TYPE);
+                buffer.putDouble((Double) aData);
+            } else if (aData instanceof Boolean) {
+                buffer.put(BOOL_TYPE);
+                buffer.put((byte) (((Boolean) aData) ? 1 : 0));
+            } else if (aData instanceof String) {
+                buffer.put(STRING_TYPE);
+                putString((String) aData, buffer);
+            } else {
+                throw new IllegalArgumentException("Attribute of type " + aData.getClass().getName() +
+                        " is not supported.");
+            }
+        }
+    }
+
+    private static Object[] getData(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        Object[] data = new Object[length];
+        for (int i = 0; i < length; i++) {
+            byte type = buffer.get();
+            switch (type) {
+                case NULL_TYPE:
+                    break;
+                case STRING_TYPE:
+                    data[i] = getString(buffer);
+                    break;
+                case INT_TYPE:
+                    data[i] = buffer.getInt();
+                    break;
+                case LONG_TYPE:
+                    data[i] = buffer.getLong();
+                    break;
+                case FLOAT_TYPE:
+                    data[i] = buffer.getFloat();
+                    break;
+                case DOUBLE_TYPE:
+                    data[i] = buffer.getDouble();
+                    break;
+                case BOOL_TYPE:
+                    data[i] = buffer.get() == 1;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown attribute type " + type + " in the overflow journal");
+            }
+        }
+        return data;
+    }
+
+    private static void putString(String value, ByteBuffer buffer) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(CHARSET);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, CHARSET);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, CHARSET);
+        }
+        return value;
+    }
+
+    /**
+     * Memory-mapped segment file of the journal.
+     */
+    private static class Segment {
+
+        private final File file;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer buffer;
+
+        private int writePosition;
+
+        private int readPosition;
+
+        Segment(File file, int size) throws IOException {
+            this.file = file;
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                this.channel = randomAccessFile.getChannel();
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                randomAccessFile.close();
+                throw e;
+            }
+        }
+
+        void reset() {
+            writePosition = 0;
+            readPosition = 0;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close the overflow journal segment " + file, e);
+            }
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+}
@@ -21,6 +21,8 @@ import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
 
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -31,11 +33,34 @@ public class EventPublisherThreadPoolExecutor extends ThreadPoolExecutor {
 
     private final Semaphore semaphore;
 
+    private final int maxPoolSize;
+
     public EventPublisherThreadPoolExecutor(int corePoolSize, int maxPoolSize, long keepAliveTimeInPool,
                                             String receiverURL) {
         super(corePoolSize, maxPoolSize, keepAliveTimeInPool, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
                 new DataBridgeThreadFactory(receiverURL));
         semaphore = new Semaphore(maxPoolSize);
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * Create an executor which runs each batch on a new thread of the factory, as is done for virtual threads,
+     * which are not pooled. The number of batches published concurrently is only limited by the permits.
+     *
+     * @param maxConcurrency maximum number of batches published at the same time.
+     * @param threadFactory  factory of the publisher threads.
+     */
+    public EventPublisherThreadPoolExecutor(int maxConcurrency, ThreadFactory threadFactory) {
+        super(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory);
+        semaphore = new Semaphore(maxConcurrency);
+        this.maxPoolSize = maxConcurrency;
+    }
+
+    /**
+     * @return the number of batches which were submitted and are not yet published.
+     */
+    public int getOutstandingJobs() {
+        return maxPoolSize - semaphore.availablePermits();
     }
 
     @Override
@@ -52,13 +77,39 @@ public class EventPublisherThreadPoolExecutor extends ThreadPoolExecutor {
         super.execute(task);
     }
 
+    /**
+     * Take a permit for a batch which is published without a publisher thread, blocking while max pool size
+     * batches are outstanding, so that asynchronous endpoints are bounded the same way. The permit is
+     * released with {@link #releasePermit()}, or handed over to a publisher with {@link #executeWithPermit(
+     * DataEndpoint.EventPublisher)}.
+     */
+    void acquirePermitAndSetState(DataEndpoint dataEndpoint) {
+        if (semaphore.availablePermits() <= 1) {
+            dataEndpoint.setState(DataEndpoint.State.BUSY);
+        }
+        semaphore.acquireUninterruptibly();
+    }
+
+    void releasePermit() {
+        semaphore.release();
+    }
+
+    /**
+     * Run the publisher with a permit which was already taken with {@link #acquirePermitAndSetState(
+     * DataEndpoint)}.
+     */
+    void executeWithPermit(DataEndpoint.EventPublisher publisher) {
+        publisher.setPoolSemaphore(semaphore);
+        super.execute(publisher);
+    }
+
     public void submitJobAndSetState(DataEndpoint.EventPublisher publisher, DataEndpoint dataEndpoint) {
         int permits = semaphore.availablePermits();
         if (permits <= 1) {
             dataEndpoint.setState(DataEndpoint.State.BUSY);
         }
         publisher.setPoolSemaphore(semaphore);
-        submit(new Thread(publisher));
+        submit(publisher);
     }
 
 }
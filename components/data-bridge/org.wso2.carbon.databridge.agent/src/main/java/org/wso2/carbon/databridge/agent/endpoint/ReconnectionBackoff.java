@@ -0,0 +1,84 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponential backoff between the reconnection attempts of an endpoint. The delay doubles with every
+ * attempt up to the max delay, and each attempt is scheduled at a random point of the second half of the
+ * delay, so that agents which lost the same receiver do not all reconnect at once when it comes back.
+ */
+public class ReconnectionBackoff {
+
+    private final long initialDelayNanos;
+
+    private final long maxDelayNanos;
+
+    private volatile long delayNanos;
+
+    private volatile long nextAttemptNanos;
+
+    private volatile boolean isAttempted = false;
+
+    /**
+     * @param initialDelayMs delay before the second attempt.
+     * @param maxDelayMs     upper bound of the delay.
+     */
+    public ReconnectionBackoff(long initialDelayMs, long maxDelayMs) {
+        this.initialDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, initialDelayMs));
+        this.maxDelayNanos = Math.max(initialDelayNanos, TimeUnit.MILLISECONDS.toNanos(maxDelayMs));
+        this.delayNanos = initialDelayNanos;
+    }
+
+    /**
+     * @param nowNanos current {@link System#nanoTime()}.
+     * @return true if the next attempt is due, which the first attempt always is.
+     */
+    public boolean isAttemptDue(long nowNanos) {
+        return !isAttempted || nowNanos - nextAttemptNanos >= 0;
+    }
+
+    /**
+     * Schedule the attempt after the one being made, doubling the delay.
+     *
+     * @param nowNanos current {@link System#nanoTime()}.
+     */
+    public void onAttempt(long nowNanos) {
+        long delay = isAttempted ? Math.min(maxDelayNanos, delayNanos * 2) : initialDelayNanos;
+        delayNanos = delay;
+        nextAttemptNanos = nowNanos + delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        isAttempted = true;
+    }
+
+    /**
+     * Start over from the initial delay, once the endpoint is connected.
+     */
+    public void reset() {
+        isAttempted = false;
+        delayNanos = initialDelayNanos;
+    }
+
+    /**
+     * @return the current delay between attempts.
+     */
+    public long getDelayNanos() {
+        return delayNanos;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch which has failed on at least one endpoint and is resent as a whole to another endpoint. It counts
+ * the endpoints the batch has failed on, so that a batch which fails everywhere is not resent endlessly.
+ * When the events of the batch are requeued instead, they carry the count, and are collected into batches
+ * of their own which start from that count.
+ */
+final class ResendBatch extends ArrayList<Event> {
+
+    private static final long serialVersionUID = 1L;
+
+    private int failures;
+
+    private ResendBatch(List<Event> events) {
+        super(events);
+    }
+
+    /**
+     * Create a batch of events which have been requeued after failing.
+     *
+     * @param events   the events of the batch.
+     * @param failures number of endpoints the events have failed on.
+     * @return the batch, with the failures counted.
+     */
+    static ResendBatch withFailures(List<Event> events, int failures) {
+        ResendBatch batch = new ResendBatch(events);
+        batch.failures = failures;
+        return batch;
+    }
+
+    /**
+     * Record the failure of a batch.
+     *
+     * @param events the failed batch, which is a resend batch if it has failed before.
+     * @return the batch to be resent, with its failure counted.
+     */
+    static ResendBatch onFailure(List<Event> events) {
+        ResendBatch batch = events instanceof ResendBatch ? (ResendBatch) events : new ResendBatch(events);
+        batch.failures++;
+        return batch;
+    }
+
+    int getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint;
+
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Attribute types of a stream, compiled once per stream so that the transports can encode the attributes
+ * of its events in declared order with a single switch per attribute, instead of running an instanceof
+ * chain for every value. The publisher does not hold the stream definitions, hence the schema is learnt
+ * from the events of the stream. An event is checked against the cached schema before it is encoded, and
+ * an event which does not match it is merged into a new schema, in which an attribute seen with different
+ * types is dispatched on the type of each value. Hence the schema of a stream only changes a few times,
+ * even if the types of its attributes vary.
+ */
+public final class StreamSchema {
+
+    private static final int MAX_CACHED_SCHEMAS = 1024;
+
+    private static final ConcurrentHashMap<String, StreamSchema> SCHEMAS = new ConcurrentHashMap<>();
+
+    /**
+     * Value class of each attribute type, indexed by the ordinal of the type.
+     */
+    private static final Class<?>[] TYPE_CLASSES = new Class<?>[AttributeType.values().length];
+
+    static {
+        TYPE_CLASSES[AttributeType.INT.ordinal()] = Integer.class;
+        TYPE_CLASSES[AttributeType.LONG.ordinal()] = Long.class;
+        TYPE_CLASSES[AttributeType.FLOAT.ordinal()] = Float.class;
+        TYPE_CLASSES[AttributeType.DOUBLE.ordinal()] = Double.class;
+        TYPE_CLASSES[AttributeType.STRING.ordinal()] = String.class;
+        TYPE_CLASSES[AttributeType.BOOL.ordinal()] = Boolean.class;
+    }
+
+    private final AttributeType[] metaDataTypes;
+
+    private final AttributeType[] correlationDataTypes;
+
+    private final AttributeType[] payloadDataTypes;
+
+    private final boolean[] metaDataMixed;
+
+    private final boolean[] correlationDataMixed;
+
+    private final boolean[] payloadDataMixed;
+
+    private final int fixedBinarySize;
+
+    private StreamSchema(Event event) {
+        this.metaDataTypes = new AttributeType[getLength(event.getMetaData())];
+        this.correlationDataTypes = new AttributeType[getLength(event.getCorrelationData())];
+        this.payloadDataTypes = new AttributeType[getLength(event.getPayloadData())];
+        this.metaDataMixed = new boolean[metaDataTypes.length];
+        this.correlationDataMixed = new boolean[correlationDataTypes.length];
+        this.payloadDataMixed = new boolean[payloadDataTypes.length];
+        merge(metaDataTypes, metaDataMixed, event.getMetaData());
+        merge(correlationDataTypes, correlationDataMixed, event.getCorrelationData());
+        merge(payloadDataTypes, payloadDataMixed, event.getPayloadData());
+        this.fixedBinarySize = getFixedBinarySize(metaDataTypes) + getFixedBinarySize(correlationDataTypes) +
+                getFixedBinarySize(payloadDataTypes);
+    }
+
+    /**
+     * Merge an event of the same attribute counts into the given schema.
+     */
+    private StreamSchema(StreamSchema schema, Event event) {
+        this.metaDataTypes = schema.metaDataTypes.clone();
+        this.correlationDataTypes = schema.correlationDataTypes.clone();
+        this.payloadDataTypes = schema.payloadDataTypes.clone();
+        this.metaDataMixed = schema.metaDataMixed.clone();
+        this.correlationDataMixed = schema.correlationDataMixed.clone();
+        this.payloadDataMixed = schema.payloadDataMixed.clone();
+        merge(metaDataTypes, metaDataMixed, event.getMetaData());
+        merge(correlationDataTypes, correlationDataMixed, event.getCorrelationData());
+        merge(payloadDataTypes, payloadDataMixed, event.getPayloadData());
+        this.fixedBinarySize = getFixedBinarySize(metaDataTypes) + getFixedBinarySize(correlationDataTypes) +
+                getFixedBinarySize(payloadDataTypes);
+    }
+
+    /**
+     * Get the schema of the event's stream. The event always has the types of the returned schema, as the
+     * event is merged into a new schema if it does not match the cached one.
+     *
+     * @param event event to be encoded.
+     * @return schema matching the event.
+     */
+    public static StreamSchema getSchema(Event event) {
+        StreamSchema schema = SCHEMAS.get(event.getStreamId());
+        if (schema != null && schema.matches(event)) {
+            return schema;
+        }
+        if (schema != null && schema.hasSameShape(event)) {
+            StreamSchema merged = new StreamSchema(schema, event);
+            SCHEMAS.replace(event.getStreamId(), schema, merged);
+            return merged;
+        }
+        StreamSchema compiled = new StreamSchema(event);
+        if (schema != null) {
+            SCHEMAS.replace(event.getStreamId(), schema, compiled);
+        } else if (SCHEMAS.size() < MAX_CACHED_SCHEMAS) {
+            SCHEMAS.putIfAbsent(event.getStreamId(), compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * @return types of the meta data attributes, where null stands for an attribute which is dispatched on
+     * the type of each value, as its type is not known yet or varies.
+     */
+    public AttributeType[] getMetaDataTypes() {
+        return metaDataTypes;
+    }
+
+    public AttributeType[] getCorrelationDataTypes() {
+        return correlationDataTypes;
+    }
+
+    public AttributeType[] getPayloadDataTypes() {
+        return payloadDataTypes;
+    }
+
+    /**
+     * @return upper bound of the binary size of all the attributes of known type which are not strings.
+     * Each attribute is counted with at least 4 bytes, which is what a null value is encoded with.
+     */
+    public int getFixedBinarySize() {
+        return fixedBinarySize;
+    }
+
+    /**
+     * @return true if every attribute of the event is null, or has the type of its attribute in the schema.
+     */
+    private boolean matches(Event event) {
+        return matches(metaDataTypes, metaDataMixed, event.getMetaData()) &&
+                matches(correlationDataTypes, correlationDataMixed, event.getCorrelationData()) &&
+                matches(payloadDataTypes, payloadDataMixed, event.getPayloadData());
+    }
+
+    private static boolean matches(AttributeType[] types, boolean[] mixed, Object[] data) {
+        if (data == null) {
+            return types.length == 0;
+        } else if (data.length != types.length) {
+            return false;
+        }
+        for (int i = 0; i < data.length; i++) {
+            Object aData = data[i];
+            if (aData == null || mixed[i]) {
+                continue;
+            }
+            // The boxed types are final, hence comparing the classes is exact.
+            if (types[i] == null || TYPE_CLASSES[types[i].ordinal()] != aData.getClass()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasSameShape(Event event) {
+        return hasSameShape(metaDataTypes, event.getMetaData()) &&
+                hasSameShape(correlationDataTypes, event.getCorrelationData()) &&
+                hasSameShape(payloadDataTypes, event.getPayloadData());
+    }
+
+    private static boolean hasSameShape(AttributeType[] types, Object[] data) {
+        return data == null ? types.length == 0 : types.length == data.length;
+    }
+
+    /**
+     * Learn the types of the attributes which were only null so far, and dispatch the attributes whose
+     * value has another type than the learnt one, or a type which is not supported, on the type of each
+     * value.
+     */
+    private static void merge(AttributeType[] types, boolean[] mixed, Object[] data) {
+        if (data == null) {
+            return;
+        }
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == null || mixed[i]) {
+                continue;
+            }
+            AttributeType type = getType(data[i]);
+            if (type == null || (types[i] != null && types[i] != type)) {
+                types[i] = null;
+                mixed[i] = true;
+            } else {
+                types[i] = type;
+            }
+        }
+    }
+
+    private static int getLength(Object[] data) {
+        return data == null ? 0 : data.length;
+    }
+
+    private static AttributeType getType(Object aData) {
+        if (aData instanceof String) {
+            return AttributeType.STRING;
+        } else if (aData instanceof Integer) {
+            return AttributeType.INT;
+        } else if (aData instanceof Long) {
+            return AttributeType.LONG;
+        } else if (aData instanceof Float) {
+            return AttributeType.FLOAT;
+        } else if (aData instanceof Double) {
+            return AttributeType.DOUBLE;
+        } else if (aData instanceof Boolean) {
+            return AttributeType.BOOL;
+        }
+        return null;
+    }
+
+    private static int getFixedBinarySize(AttributeType[] types) {
+        int size = 0;
+        for (AttributeType type : types) {
+            if (type == null) {
+                continue;
+            } else if (type == AttributeType.LONG || type == AttributeType.DOUBLE) {
+                size += 8;
+            } else if (type != AttributeType.STRING) {
+                size += 4;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint;
+
+import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event whose publisher waits for the receivers to acknowledge it. The same event is handed to every
+ * endpoint group of the publisher, and its acknowledgement is completed once the batch holding it has been
+ * acknowledged in all the groups, or completed exceptionally as soon as any group drops it. As the event
+ * travels with the batch, an event which is resent to another endpoint after a failure keeps its
+ * acknowledgement.
+ */
+public final class TrackedEvent extends Event {
+
+    private final CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+
+    private final AtomicInteger pendingGroups;
+
+    /**
+     * @param event      the event to be published.
+     * @param groupCount number of endpoint groups the event is published to.
+     */
+    public TrackedEvent(Event event, int groupCount) {
+        super(event.getStreamId(), event.getTimeStamp(), event.getMetaData(), event.getCorrelationData(),
+                event.getPayloadData(), event.getArbitraryDataMap());
+        this.pendingGroups = new AtomicInteger(groupCount);
+        if (groupCount <= 0) {
+            acknowledgement.complete(null);
+        }
+    }
+
+    /**
+     * @return the acknowledgement of the event, which is completed by the thread that receives the last
+     * acknowledgement, hence dependent actions should not block.
+     */
+    public CompletableFuture<Void> getAcknowledgement() {
+        return acknowledgement;
+    }
+
+    /**
+     * Acknowledge the tracked events of a batch which one endpoint group has published.
+     *
+     * @param events events of the batch.
+     */
+    static void acknowledge(List<Event> events) {
+        for (Event event : events) {
+            if (event instanceof TrackedEvent) {
+                TrackedEvent trackedEvent = (TrackedEvent) event;
+                if (trackedEvent.pendingGroups.decrementAndGet() == 0) {
+                    trackedEvent.acknowledgement.complete(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fail the acknowledgement of the tracked events of a batch which is dropped.
+     *
+     * @param events events of the batch.
+     * @param reason why the events are dropped.
+     */
+    static void fail(List<Event> events, String reason) {
+        for (Event event : events) {
+            fail(event, reason);
+        }
+    }
+
+    static void fail(Event event, String reason) {
+        if (event instanceof TrackedEvent) {
+            ((TrackedEvent) event).acknowledgement.completeExceptionally(new DataEndpointException(reason));
+        }
+    }
+}
@@ -37,18 +37,67 @@ public class WrappedEventFactory implements EventFactory<WrappedEventFactory.Wra
 
         private Event event;
 
+        private EventBuffer eventBuffer;
+
+        private boolean isBuffered;
+
+        private int resendFailures;
+
+        /**
+         * Get the event of the slot, creating it from the copied event buffer on first access.
+         *
+         * @return the event.
+         */
         public Event getEvent() {
+            if (isBuffered) {
+                event = eventBuffer.toEvent();
+                isBuffered = false;
+            }
             return event;
         }
 
         public void setEvent(Event event) {
+            setEvent(event, 0);
+        }
+
+        /**
+         * Set an event of a failed batch which is requeued.
+         *
+         * @param event          the event.
+         * @param resendFailures number of endpoints the batch of the event has failed on.
+         */
+        public void setEvent(Event event, int resendFailures) {
             this.event = event;
+            this.isBuffered = false;
+            this.resendFailures = resendFailures;
+        }
+
+        /**
+         * @return number of endpoints the batch of the event has failed on, 0 for an event which is not resent.
+         */
+        public int getResendFailures() {
+            return resendFailures;
+        }
+
+        /**
+         * Copy the event buffer into the slot's own buffer, without creating the event.
+         *
+         * @param source buffer holding the event.
+         */
+        public void setEventBuffer(EventBuffer source) {
+            if (eventBuffer == null) {
+                eventBuffer = new EventBuffer();
+            }
+            eventBuffer.copyFrom(source);
+            this.event = null;
+            this.isBuffered = true;
+            this.resendFailures = 0;
         }
 
         @Override
         public String toString() {
             return "WrappedEvent{" +
-                    "event=" + event +
+                    "event=" + (isBuffered ? eventBuffer : event) +
                     "}";
         }
     }
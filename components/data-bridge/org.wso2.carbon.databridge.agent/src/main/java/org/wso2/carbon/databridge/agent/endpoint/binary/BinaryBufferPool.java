@@ -0,0 +1,86 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.binary;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded pool of fixed size byte buffers used to encode binary publish messages. Buffers are
+ * optionally allocated off-heap so that they can be handed to the socket channel without
+ * an additional copy.
+ */
+public class BinaryBufferPool {
+
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+    private final int bufferSize;
+
+    private final boolean direct;
+
+    public BinaryBufferPool(int bufferSize, int maxPooledBuffers, boolean direct) {
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.buffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+    }
+
+    /**
+     * Borrow a cleared buffer from the pool, allocating a new one if the pool is empty.
+     *
+     * @return buffer with the pool's buffer size as its capacity.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return allocate(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Allocate a buffer which is larger than the pooled buffer size. Such buffers are
+     * not retained by the pool when released.
+     *
+     * @param size capacity of the buffer.
+     * @return newly allocated buffer.
+     */
+    public ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Return the buffer to the pool. Buffers of a different size, or buffers released
+     * when the pool is already full are left to the garbage collector.
+     *
+     * @param buffer buffer that was acquired from this pool.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize && buffer.isDirect() == direct) {
+            buffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+}
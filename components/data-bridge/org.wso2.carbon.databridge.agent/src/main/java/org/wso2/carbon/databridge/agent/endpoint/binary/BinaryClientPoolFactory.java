@@ -27,7 +27,9 @@ import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
 import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 /**
  * This class implements AbstractClientPoolFactory to handle the Binary transport related connections.
@@ -42,7 +44,9 @@ public class BinaryClientPoolFactory extends AbstractClientPoolFactory {
             int timeout = AgentHolder.getInstance().getDataEndpointAgent(DataEndpointConstants.BINARY_DATA_AGENT_TYPE)
                     .getAgentConfiguration().getSocketTimeoutMS();
             try {
-                Socket socket = new Socket(hostName, port);
+                // Sockets are opened through a channel so that batches can be written with gathering writes.
+                SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress(hostName, port));
+                Socket socket = socketChannel.socket();
                 socket.setSoTimeout(timeout);
                 return socket;
             } catch (IOException e) {
@@ -57,7 +61,8 @@ public class BinaryClientPoolFactory extends AbstractClientPoolFactory {
 
     @Override
     public boolean validateClient(Object client) {
-        return ((Socket) client).isConnected();
+        Socket socket = (Socket) client;
+        return socket.isConnected() && !socket.isClosed();
     }
 
     @Override
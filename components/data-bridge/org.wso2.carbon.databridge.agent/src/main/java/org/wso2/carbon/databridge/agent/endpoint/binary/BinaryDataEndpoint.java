@@ -17,17 +17,34 @@
 */
 package org.wso2.carbon.databridge.agent.endpoint.binary;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
+import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
 import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAuthenticationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
 import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageCompressionUtil;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
 import org.wso2.carbon.databridge.commons.exception.SessionTimeoutException;
+import org.wso2.carbon.databridge.commons.exception.TransportException;
 import org.wso2.carbon.databridge.commons.exception.UndefinedEventTypeException;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender.processCompressionNegotiationResponse;
 import static org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender.processResponse;
+import static org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender.sendBinaryCompressionNegotiationMessage;
 import static org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender.sendBinaryLoginMessage;
 import static org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender.sendBinaryLogoutMessage;
 import static org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender.sendBinaryPublishMessage;
@@ -38,6 +55,164 @@ import static org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender
  */
 public class BinaryDataEndpoint extends DataEndpoint {
 
+    private static final Logger log = LogManager.getLogger(BinaryDataEndpoint.class);
+
+    private BinaryBufferPool bufferPool;
+
+    private int pipelineWindowSize;
+
+    private int[] compressionCodecs;
+
+    private int compressionThreshold;
+
+    private final Map<Socket, Integer> socketCompressionCodecs =
+            Collections.synchronizedMap(new WeakHashMap<Socket, Integer>());
+
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    private final List<BinaryEventEncoder> eventEncoders =
+            Collections.synchronizedList(new ArrayList<BinaryEventEncoder>());
+
+    private final ThreadLocal<BinaryEventEncoder> eventEncoder = new ThreadLocal<BinaryEventEncoder>() {
+        @Override
+        protected BinaryEventEncoder initialValue() {
+            BinaryEventEncoder encoder = new BinaryEventEncoder(bufferPool);
+            eventEncoders.add(encoder);
+            return encoder;
+        }
+    };
+
+    @Override
+    public void initialize(DataEndpointConfiguration dataEndpointConfiguration)
+            throws DataEndpointException, DataEndpointAuthenticationException, TransportException {
+        AgentConfiguration agentConfiguration = dataEndpointConfiguration.getAgentConfiguration();
+        this.bufferPool = new BinaryBufferPool(agentConfiguration.getBinaryBufferSize(),
+                agentConfiguration.getBinaryBufferPoolSize(), agentConfiguration.isUseDirectBuffers());
+        this.pipelineWindowSize = agentConfiguration.getPipelineWindowSize();
+        this.compressionCodecs = getCompressionCodecs(agentConfiguration.getBinaryCompression());
+        this.compressionThreshold = agentConfiguration.getBinaryCompressionThreshold();
+        super.initialize(dataEndpointConfiguration);
+    }
+
+    private static int[] getCompressionCodecs(String codecNames) {
+        List<Integer> codecs = new ArrayList<>();
+        if (codecNames != null && !codecNames.trim().isEmpty()) {
+            for (String codecName : codecNames.split(",")) {
+                int codec = BinaryMessageCompressionUtil.getCodec(codecName);
+                if (codec == -1) {
+                    log.warn("Binary compression codec '" + codecName.trim() + "' is not supported, hence ignored.");
+                } else {
+                    codecs.add(codec);
+                }
+            }
+        }
+        int[] codecArray = new int[codecs.size()];
+        for (int i = 0; i < codecArray.length; i++) {
+            codecArray[i] = codecs.get(i);
+        }
+        return codecArray;
+    }
+
+    /**
+     * Agree on a compression codec with the receiver over the given data connection. Compression is disabled
+     * if the receiver does not support any of the offered codecs, or does not answer the negotiation.
+     */
+    private int negotiateCompression(Socket socket) {
+        try {
+            sendBinaryCompressionNegotiationMessage(socket, compressionCodecs);
+            return processCompressionNegotiationResponse(socket);
+        } catch (Exception e) {
+            log.warn("Compression negotiation failed with data receiver :" + socket.getRemoteSocketAddress() +
+                    ", hence events are sent uncompressed.", e);
+            return BinaryMessageConstants.COMPRESSION_NONE;
+        }
+    }
+
+    /**
+     * Agree on a compression codec with the receiver at the given address, over a connection which is only
+     * opened for the negotiation.
+     *
+     * @throws IOException if the receiver cannot be connected.
+     */
+    int negotiateCompression(InetSocketAddress address, int timeout) throws IOException {
+        if (compressionCodecs.length == 0) {
+            return BinaryMessageConstants.COMPRESSION_NONE;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(address, timeout);
+            socket.setSoTimeout(timeout);
+            return negotiateCompression(socket);
+        }
+    }
+
+    /**
+     * Get the codec negotiated over the given data connection, negotiating it on the first use of the
+     * connection, as the receivers of the data connections and the authentication connection may differ.
+     */
+    private int getCompressionCodec(Socket socket) {
+        if (compressionCodecs.length == 0) {
+            return BinaryMessageConstants.COMPRESSION_NONE;
+        }
+        Integer codec = socketCompressionCodecs.get(socket);
+        if (codec == null) {
+            // A pooled socket is only used by the thread which borrowed it, hence it is negotiated only once.
+            codec = negotiateCompression(socket);
+            socketCompressionCodecs.put(socket, codec);
+        }
+        return codec;
+    }
+
+    BinaryBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    BinaryEventEncoder getEventEncoder(int compressionCodec) {
+        BinaryEventEncoder encoder = eventEncoder.get();
+        encoder.setCompression(compressionCodec, compressionThreshold);
+        return encoder;
+    }
+
+    private BinaryEventEncoder getEventEncoder(Socket socket) {
+        return getEventEncoder(getCompressionCodec(socket));
+    }
+
+    void recordCompression(BinaryEventEncoder encoder) {
+        if (encoder.getCompressedSize() > 0) {
+            uncompressedBytes.addAndGet(encoder.getMessageSize());
+            compressedBytes.addAndGet(encoder.getCompressedSize());
+            if (log.isDebugEnabled()) {
+                log.debug("Compressed binary message of " + encoder.getMessageSize() + " bytes to " +
+                        encoder.getCompressedSize() + " bytes, overall compression ratio is : " +
+                        getCompressionRatio());
+            }
+        }
+    }
+
+    /**
+     * @return the total size of the compressed messages before compression.
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+    /**
+     * @return the total size of the compressed messages after compression.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * @return compressed size over uncompressed size of all the compressed messages, or 1 if no message
+     * has been compressed.
+     */
+    public double getCompressionRatio() {
+        long uncompressed = uncompressedBytes.get();
+        return uncompressed == 0 ? 1 : (double) compressedBytes.get() / uncompressed;
+    }
+
     @Override
     protected String login(Object client, String userName, String password) throws DataEndpointAuthenticationException {
         Socket socket = (Socket) client;
@@ -76,7 +251,9 @@ public class BinaryDataEndpoint extends DataEndpoint {
         Socket socket = (Socket) client;
         String sessionId = getDataEndpointConfiguration().getSessionId();
         try {
-            sendBinaryPublishMessage(socket, events, sessionId);
+            BinaryEventEncoder encoder = getEventEncoder(socket);
+            sendBinaryPublishMessage(socket, events, sessionId, encoder);
+            recordCompression(encoder);
             processResponse(socket);
         } catch (Exception e) {
             if (e instanceof DataEndpointException) {
@@ -92,6 +269,45 @@ public class BinaryDataEndpoint extends DataEndpoint {
         }
     }
 
+    /**
+     * When pipelining is enabled the events are written as a sequenced publish message, and the socket is
+     * released without waiting for the receiver's response, which is matched asynchronously.
+     */
+    @Override
+    protected Future<?> sendPipelined(Object client, List<Event> events) throws DataEndpointException,
+            SessionTimeoutException, UndefinedEventTypeException {
+        if (pipelineWindowSize <= 1) {
+            return super.sendPipelined(client, events);
+        }
+        Socket socket = (Socket) client;
+        String sessionId = getDataEndpointConfiguration().getSessionId();
+        try {
+            BinaryEventEncoder encoder = getEventEncoder(socket);
+            Future<?> acknowledgement = BinaryPipeline.getPipeline(socket, pipelineWindowSize).send(events,
+                    sessionId, encoder, getDataEndpointConfiguration().getAgentConfiguration().getSocketTimeoutMS());
+            recordCompression(encoder);
+            return acknowledgement;
+        } catch (IOException e) {
+            throw new DataEndpointException("Error while trying to publish events to data receiver :"
+                    + socket.getRemoteSocketAddress().toString(), e);
+        }
+    }
+
+    /**
+     * Close the encoders of the publisher threads once they have terminated, so that their deflaters do not
+     * hold native memory until they are garbage collected.
+     */
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        synchronized (eventEncoders) {
+            for (BinaryEventEncoder encoder : eventEncoders) {
+                encoder.close();
+            }
+            eventEncoders.clear();
+        }
+    }
+
     @Override
     public String getClientPoolFactoryClass() {
         return BinaryClientPoolFactory.class.getCanonicalName();
@@ -0,0 +1,509 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.binary;
+
+import org.wso2.carbon.databridge.agent.endpoint.StreamSchema;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes a batch of events as a single binary publish message directly into pooled buffers, and
+ * writes them to the socket with one gathering write when the socket is backed by a channel.
+ * The wire format is identical to the one produced by the per event encoding, hence receivers
+ * are not affected. Messages are only compressed when a codec was negotiated with the receiver.
+ * Instances are not thread safe, and hold no buffers in between two messages.
+ */
+public class BinaryEventEncoder {
+
+    /**
+     * Message type (1) + message size (4) + session id length (4) + event count (4).
+     */
+    private static final int MESSAGE_HEADER_SIZE = 13;
+
+    private static final int MESSAGE_SIZE_OFFSET = 1;
+
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    /**
+     * Message type (1) + codec (1) + uncompressed size (4) + compressed size (4).
+     */
+    private static final int COMPRESSED_MESSAGE_HEADER_SIZE = 10;
+
+    private static final int COMPRESSED_SIZE_OFFSET = 6;
+
+    private final BinaryBufferPool bufferPool;
+
+    private ByteBuffer[] buffers = new ByteBuffer[4];
+
+    private int bufferCount;
+
+    private ByteBuffer current;
+
+    private byte[] copyBuffer;
+
+    private ByteBuffer[] spareBuffers = new ByteBuffer[4];
+
+    private int compressionCodec = BinaryMessageConstants.COMPRESSION_NONE;
+
+    private int compressionThreshold;
+
+    private Deflater deflater;
+
+    private byte[] deflateBuffer;
+
+    private int messageSize;
+
+    private int compressedSize;
+
+    public BinaryEventEncoder(BinaryBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Compress the messages encoded after this call which are at least the threshold size with the given
+     * codec, as a compressed message carrying the encoded message.
+     *
+     * @param codec     codec negotiated with the receiver, or {@link BinaryMessageConstants#COMPRESSION_NONE}.
+     * @param threshold min size of a message to be compressed.
+     */
+    public void setCompression(int codec, int threshold) {
+        this.compressionCodec = codec;
+        this.compressionThreshold = threshold;
+    }
+
+    /**
+     * @return size of the last encoded message before compression.
+     */
+    public int getMessageSize() {
+        return messageSize;
+    }
+
+    /**
+     * @return size of the last encoded message after compression, or 0 if it was not compressed.
+     */
+    public int getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * Encode the publish message for the given events. Any previously encoded message which was
+     * not released is discarded.
+     *
+     * @param events    events of the batch.
+     * @param sessionId the session id of the current login.
+     */
+    public void encodePublishMessage(List<Event> events, String sessionId) {
+        release();
+        ensureCapacity(MESSAGE_HEADER_SIZE + sessionId.length() * MAX_BYTES_PER_CHAR);
+        current.put((byte) 2);
+        current.putInt(0);
+        encodeEvents(events, sessionId, MESSAGE_SIZE_OFFSET);
+    }
+
+    /**
+     * Encode the publish message for the given events with a sequence number, which the receiver
+     * echoes back in its acknowledgement. The sequence number is placed in front of the message
+     * size, hence the message body is the same as the one of a plain publish message.
+     *
+     * @param events    events of the batch.
+     * @param sessionId the session id of the current login.
+     * @param sequence  sequence number of the message on the connection.
+     */
+    public void encodeSequencedPublishMessage(List<Event> events, String sessionId, long sequence) {
+        release();
+        ensureCapacity(MESSAGE_HEADER_SIZE + 8 + sessionId.length() * MAX_BYTES_PER_CHAR);
+        current.put((byte) BinaryMessageConstants.SEQUENCED_PUBLISH_MESSAGE);
+        current.putLong(sequence);
+        current.putInt(0);
+        encodeEvents(events, sessionId, MESSAGE_SIZE_OFFSET + 8);
+    }
+
+    private void encodeEvents(List<Event> events, String sessionId, int messageSizeOffset) {
+        putString(sessionId, current);
+        current.putInt(events.size());
+
+        for (Event event : events) {
+            StreamSchema schema = StreamSchema.getSchema(event);
+            ensureCapacity(getMaxEventSize(event, schema));
+            encodeEvent(event, schema);
+        }
+
+        int messageLength = 0;
+        for (int i = 0; i < bufferCount; i++) {
+            messageLength += buffers[i].position();
+        }
+        // The fields up to and including the message size are not counted in the message size.
+        buffers[0].putInt(messageSizeOffset, messageLength - messageSizeOffset - 4);
+        messageSize = messageLength;
+        compressedSize = 0;
+        if (compressionCodec == BinaryMessageConstants.COMPRESSION_DEFLATE && messageLength >= compressionThreshold) {
+            deflate();
+        }
+    }
+
+    /**
+     * Replace the encoded message with a compressed message carrying it. The encoded message is deflated
+     * buffer by buffer into newly acquired buffers, after which its buffers are returned to the pool.
+     */
+    private void deflate() {
+        ByteBuffer[] source = buffers;
+        int sourceCount = bufferCount;
+        buffers = spareBuffers;
+        bufferCount = 0;
+        current = null;
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            deflateBuffer = new byte[bufferPool.getBufferSize()];
+        }
+        deflater.reset();
+        ensureCapacity(COMPRESSED_MESSAGE_HEADER_SIZE);
+        current.put((byte) BinaryMessageConstants.COMPRESSED_MESSAGE);
+        current.put((byte) compressionCodec);
+        current.putInt(messageSize);
+        current.putInt(0);
+        for (int i = 0; i < sourceCount; i++) {
+            ByteBuffer buffer = source[i];
+            buffer.flip();
+            if (buffer.hasArray()) {
+                putDeflated(buffer.array(), buffer.arrayOffset(), buffer.limit());
+            } else {
+                if (copyBuffer == null) {
+                    copyBuffer = new byte[Math.min(buffer.capacity(), bufferPool.getBufferSize())];
+                }
+                while (buffer.hasRemaining()) {
+                    int length = Math.min(copyBuffer.length, buffer.remaining());
+                    buffer.get(copyBuffer, 0, length);
+                    putDeflated(copyBuffer, 0, length);
+                }
+            }
+            bufferPool.release(buffer);
+            source[i] = null;
+        }
+        finishDeflate();
+        compressedSize = (int) deflater.getBytesWritten();
+        buffers[0].putInt(COMPRESSED_SIZE_OFFSET, compressedSize);
+        spareBuffers = source;
+    }
+
+    /**
+     * Deflate the given input, appending the output to the message.
+     */
+    private void putDeflated(byte[] input, int offset, int length) {
+        deflater.setInput(input, offset, length);
+        while (!deflater.needsInput()) {
+            putBytes(deflateBuffer, deflater.deflate(deflateBuffer));
+        }
+    }
+
+    /**
+     * Deflate the remaining input of the deflater, appending the output to the message.
+     */
+    private void finishDeflate() {
+        deflater.finish();
+        while (!deflater.finished()) {
+            putBytes(deflateBuffer, deflater.deflate(deflateBuffer));
+        }
+    }
+
+    private void putBytes(byte[] bytes, int length) {
+        int offset = 0;
+        while (offset < length) {
+            if (!current.hasRemaining()) {
+                ensureCapacity(1);
+            }
+            int count = Math.min(current.remaining(), length - offset);
+            current.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Encode the event into the current buffer, which must have room for it.
+     *
+     * @param event  event to be encoded.
+     * @param schema schema of the event's stream, which the event matches.
+     */
+    private void encodeEvent(Event event, StreamSchema schema) {
+        int eventSizePosition = current.position();
+        current.putInt(0);
+        current.putLong(event.getTimeStamp());
+        putString(event.getStreamId(), current);
+        putData(event.getMetaData(), schema.getMetaDataTypes(), current);
+        putData(event.getCorrelationData(), schema.getCorrelationDataTypes(), current);
+        putData(event.getPayloadData(), schema.getPayloadDataTypes(), current);
+        if (event.getArbitraryDataMap() != null && event.getArbitraryDataMap().size() != 0) {
+            for (Map.Entry<String, String> aArbitraryData : event.getArbitraryDataMap().entrySet()) {
+                putString(aArbitraryData.getKey(), current);
+                putString(aArbitraryData.getValue(), current);
+            }
+        }
+        current.putInt(eventSizePosition, current.position() - eventSizePosition - 4);
+    }
+
+    /**
+     * Write the encoded message to the socket. If the socket is backed by a channel all the
+     * buffers are written with a gathering write, otherwise they are written one after the
+     * other to the socket's output stream. A socket backed by a non-blocking channel is rejected,
+     * as such a channel is written by the event loop instead.
+     *
+     * @param socket socket connected to the receiver.
+     * @throws IOException if the message cannot be written.
+     * @throws IllegalBlockingModeException if the socket is backed by a non-blocking channel.
+     */
+    public void writeTo(Socket socket) throws IOException {
+        SocketChannel channel = socket.getChannel();
+        if (channel != null && !channel.isBlocking()) {
+            throw new IllegalBlockingModeException();
+        }
+        long remaining = 0;
+        for (int i = 0; i < bufferCount; i++) {
+            buffers[i].flip();
+            remaining += buffers[i].remaining();
+        }
+        if (channel != null) {
+            while (remaining > 0) {
+                remaining -= channel.write(buffers, 0, bufferCount);
+            }
+        } else {
+            OutputStream outputStream = socket.getOutputStream();
+            for (int i = 0; i < bufferCount; i++) {
+                writeBuffer(buffers[i], outputStream);
+            }
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Hand the buffers of the encoded message over to the caller, flipped for writing. The caller returns
+     * them to the pool once they are written, and the encoder holds no buffers afterwards.
+     *
+     * @return buffers of the encoded message.
+     */
+    public ByteBuffer[] detachBuffers() {
+        ByteBuffer[] message = Arrays.copyOf(buffers, bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            message[i].flip();
+            buffers[i] = null;
+        }
+        bufferCount = 0;
+        current = null;
+        return message;
+    }
+
+    /**
+     * Return all the buffers of the encoded message to the pool.
+     */
+    public void release() {
+        for (int i = 0; i < bufferCount; i++) {
+            bufferPool.release(buffers[i]);
+            buffers[i] = null;
+        }
+        bufferCount = 0;
+        current = null;
+    }
+
+    /**
+     * Release the buffers of the encoded message and free the native memory of the deflater. The encoder
+     * must not be used afterwards.
+     */
+    public void close() {
+        release();
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    private void writeBuffer(ByteBuffer buffer, OutputStream outputStream) throws IOException {
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            if (copyBuffer == null) {
+                copyBuffer = new byte[Math.min(buffer.capacity(), bufferPool.getBufferSize())];
+            }
+            while (buffer.hasRemaining()) {
+                int length = Math.min(copyBuffer.length, buffer.remaining());
+                buffer.get(copyBuffer, 0, length);
+                outputStream.write(copyBuffer, 0, length);
+            }
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (current != null && current.remaining() >= required) {
+            return;
+        }
+        if (required > bufferPool.getBufferSize()) {
+            current = bufferPool.allocate(required);
+        } else {
+            current = bufferPool.acquire();
+        }
+        if (bufferCount == buffers.length) {
+            buffers = Arrays.copyOf(buffers, bufferCount * 2);
+        }
+        buffers[bufferCount++] = current;
+    }
+
+    /**
+     * Writes the attributes with the types of the stream schema, which the values are known to have.
+     */
+    private static void putData(Object[] data, AttributeType[] types, ByteBuffer buffer) {
+        if (data != null) {
+            for (int i = 0; i < data.length; i++) {
+                Object aData = data[i];
+                AttributeType type = types[i];
+                if (aData == null || type == null) {
+                    putValue(aData, buffer);
+                    continue;
+                }
+                switch (type) {
+                    case STRING:
+                        putString((String) aData, buffer);
+                        break;
+                    case INT:
+                        buffer.putInt((Integer) aData);
+                        break;
+                    case LONG:
+                        buffer.putLong((Long) aData);
+                        break;
+                    case FLOAT:
+                        buffer.putFloat((Float) aData);
+                        break;
+                    case DOUBLE:
+                        buffer.putDouble((Double) aData);
+                        break;
+                    case BOOL:
+                        buffer.put((byte) (((Boolean) aData) ? 1 : 0));
+                        break;
+                    default:
+                        putValue(aData, buffer);
+                }
+            }
+        }
+    }
+
+    private static void putValue(Object aData, ByteBuffer buffer) {
+        if (aData instanceof String) {
+            putString((String) aData, buffer);
+        } else if (aData instanceof Integer) {
+            buffer.putInt((Integer) aData);
+        } else if (aData instanceof Long) {
+            buffer.putLong((Long) aData);
+        } else if (aData instanceof Float) {
+            buffer.putFloat((Float) aData);
+        } else if (aData instanceof Double) {
+            buffer.putDouble((Double) aData);
+        } else if (aData instanceof Boolean) {
+            buffer.put((byte) (((Boolean) aData) ? 1 : 0));
+        } else {
+            buffer.putInt(0);
+        }
+    }
+
+    /**
+     * Writes the UTF-8 length prefixed representation of the string without creating
+     * an intermediate byte array.
+     */
+    static void putString(String value, ByteBuffer buffer) {
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced the same way String.getBytes does.
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+    }
+
+    /**
+     * Upper bound of the encoded event size including its size prefix, computed with the stream schema
+     * without encoding the strings. Only the strings and the attributes of unknown type are looked at.
+     */
+    static int getMaxEventSize(Event event, StreamSchema schema) {
+        int eventSize = 4 + 8 + 4 + event.getStreamId().length() * MAX_BYTES_PER_CHAR + schema.getFixedBinarySize();
+        eventSize += getMaxVariableDataSize(event.getMetaData(), schema.getMetaDataTypes());
+        eventSize += getMaxVariableDataSize(event.getCorrelationData(), schema.getCorrelationDataTypes());
+        eventSize += getMaxVariableDataSize(event.getPayloadData(), schema.getPayloadDataTypes());
+        if (event.getArbitraryDataMap() != null && event.getArbitraryDataMap().size() != 0) {
+            for (Map.Entry<String, String> aArbitraryData : event.getArbitraryDataMap().entrySet()) {
+                eventSize += 8 + (aArbitraryData.getKey().length() + aArbitraryData.getValue().length()) *
+                        MAX_BYTES_PER_CHAR;
+            }
+        }
+        return eventSize;
+    }
+
+    private static int getMaxVariableDataSize(Object[] data, AttributeType[] types) {
+        int size = 0;
+        if (data != null) {
+            for (int i = 0; i < data.length; i++) {
+                if (types[i] == AttributeType.STRING) {
+                    String value = (String) data[i];
+                    size += 4 + (value == null ? 0 : value.length() * MAX_BYTES_PER_CHAR);
+                } else if (types[i] == null) {
+                    size += getMaxValueSize(data[i]);
+                }
+            }
+        }
+        return size;
+    }
+
+    private static int getMaxValueSize(Object aData) {
+        if (aData instanceof String) {
+            return 4 + ((String) aData).length() * MAX_BYTES_PER_CHAR;
+        } else if (aData instanceof Long || aData instanceof Double) {
+            return 8;
+        } else if (aData instanceof Boolean) {
+            return 1;
+        } else {
+            return 4;
+        }
+    }
+}
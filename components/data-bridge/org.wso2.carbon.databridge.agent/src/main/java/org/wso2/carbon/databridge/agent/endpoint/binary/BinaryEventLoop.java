@@ -0,0 +1,456 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.binary;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes sequenced publish messages to a receiver over a few non-blocking connections, all served by a
+ * single selector thread. Messages are encoded by the publishing threads and queued on a connection, and
+ * the selector thread connects it, writes them in order and matches the receiver's acknowledgements to them
+ * by their sequence number, hence no thread waits for a connection or an acknowledgement. A connection which
+ * fails, is not established within the acknowledgement timeout, or does not acknowledge its oldest message
+ * within it, is closed along with all its messages, and is reopened by the next message sent on it.
+ */
+public class BinaryEventLoop implements Runnable {
+
+    private static final Logger log = LogManager.getLogger(BinaryEventLoop.class);
+
+    /**
+     * Response type (1) + sequence number (8).
+     */
+    private static final int RESPONSE_HEADER_SIZE = 9;
+
+    /**
+     * Error class name length (4) + error message length (4).
+     */
+    private static final int ERROR_HEADER_SIZE = 8;
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private static final long MAX_SELECT_TIMEOUT_MS = 1000;
+
+    private final InetSocketAddress address;
+
+    private final Connection[] connections;
+
+    private final BinaryBufferPool bufferPool;
+
+    private final long ackTimeoutNanos;
+
+    private final Selector selector;
+
+    private final Queue<Connection> registrations = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    /**
+     * Open the selector and start its thread. Connections are opened when the first message is sent on them.
+     *
+     * @param address         address of the receiver.
+     * @param connectionCount number of connections to the receiver.
+     * @param ackTimeoutMs    max time a message may wait for its acknowledgement, or a connection to be
+     *                        established.
+     * @param bufferPool      pool the buffers of the written messages are returned to.
+     * @throws IOException if the selector cannot be opened.
+     */
+    public BinaryEventLoop(InetSocketAddress address, int connectionCount, int ackTimeoutMs, BinaryBufferPool bufferPool)
+            throws IOException {
+        this.address = address;
+        this.bufferPool = bufferPool;
+        this.ackTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(ackTimeoutMs);
+        this.connections = new Connection[Math.max(1, connectionCount)];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new Connection();
+        }
+        this.selector = Selector.open();
+        Thread thread = new DataBridgeThreadFactory("BinaryEventLoop-" + address).newThread(this);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the sequence number of the next message, unique across the connections of the loop.
+     */
+    public long nextSequence() {
+        return sequence.incrementAndGet();
+    }
+
+    /**
+     * Queue an encoded sequenced publish message on the next connection, starting to connect it if it is
+     * not open. The buffers of the message are returned to the pool once it is written or failed.
+     *
+     * @param messageSequence sequence number the message was encoded with.
+     * @param buffers         buffers of the message, flipped for writing.
+     * @return future that completes when the receiver acknowledges the message.
+     * @throws DataEndpointException if the connection cannot be opened.
+     */
+    public CompletableFuture<Void> send(long messageSequence, ByteBuffer[] buffers) throws DataEndpointException {
+        Message message = new Message(messageSequence, buffers);
+        if (closed) {
+            fail(message, new DataEndpointException("Connections to the receiver " + address + " are closed"));
+            return message.acknowledgement;
+        }
+        Connection connection = connections[Math.floorMod(nextConnection.getAndIncrement(), connections.length)];
+        try {
+            connection.ensureOpen();
+        } catch (IOException e) {
+            fail(message, e);
+            throw new DataEndpointException("Error while opening connection to " + address + ". " +
+                    e.getMessage(), e);
+        }
+        connection.queue.add(message);
+        if (connection.isClosed || closed) {
+            // The connection was closed after the message was queued, and may not have failed it.
+            connection.failQueued(new DataEndpointException("Connection to the receiver " + address +
+                    " was closed before the batch was written"));
+        } else {
+            selector.wakeup();
+        }
+        return message.acknowledgement;
+    }
+
+    /**
+     * Close all the connections and stop the selector thread, failing the messages which are not
+     * acknowledged.
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                selector.select(MAX_SELECT_TIMEOUT_MS);
+                Connection registration;
+                while ((registration = registrations.poll()) != null) {
+                    try {
+                        registration.register();
+                    } catch (ClosedChannelException e) {
+                        registration.close(e);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isConnectable()) {
+                            connection.finishConnect();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (Exception e) {
+                        connection.close(e);
+                    }
+                }
+                long now = System.nanoTime();
+                for (Connection connection : connections) {
+                    connection.update(now);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error in the event loop of the receiver " + address + ", closing its connections.", e);
+        } finally {
+            closed = true;
+            for (Connection connection : connections) {
+                connection.close(new DataEndpointException("Connections to the receiver " + address +
+                        " are closed"));
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.warn("Cannot close the selector of the receiver " + address, e);
+            }
+        }
+    }
+
+    private void fail(Message message, Exception cause) {
+        release(message);
+        message.acknowledgement.completeExceptionally(cause);
+    }
+
+    private void release(Message message) {
+        for (ByteBuffer buffer : message.buffers) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Sequenced publish message, and the future of its acknowledgement.
+     */
+    private static final class Message {
+
+        private final long sequence;
+
+        private final ByteBuffer[] buffers;
+
+        private final CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+
+        private long writtenTime;
+
+        private Message(long sequence, ByteBuffer[] buffers) {
+            this.sequence = sequence;
+            this.buffers = buffers;
+        }
+
+        private boolean hasRemaining() {
+            for (ByteBuffer buffer : buffers) {
+                if (buffer.hasRemaining()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Connection to the receiver. Apart from opening it and queueing messages on it, it is only used by the
+     * selector thread.
+     */
+    private final class Connection {
+
+        private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+
+        private final Map<Long, Message> pendingAcks = new LinkedHashMap<>();
+
+        private final Queue<Message> writing = new ArrayDeque<>();
+
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        private SocketChannel channel;
+
+        private SelectionKey key;
+
+        private volatile boolean isClosed = true;
+
+        private boolean isConnected;
+
+        private long connectTime;
+
+        /**
+         * Start connecting the connection if it is not open. The connection is completed by the selector
+         * thread, and the messages queued meanwhile are written once it is established.
+         */
+        private synchronized void ensureOpen() throws IOException {
+            if (!isClosed) {
+                return;
+            } else if (closed) {
+                throw new ClosedChannelException();
+            }
+            SocketChannel socketChannel = SocketChannel.open();
+            try {
+                socketChannel.configureBlocking(false);
+                socketChannel.socket().setTcpNoDelay(true);
+                isConnected = socketChannel.connect(address);
+            } catch (IOException e) {
+                socketChannel.close();
+                throw e;
+            }
+            channel = socketChannel;
+            connectTime = System.nanoTime();
+            readBuffer.clear();
+            isClosed = false;
+            registrations.add(this);
+            selector.wakeup();
+        }
+
+        private void register() throws ClosedChannelException {
+            if (!isClosed) {
+                key = channel.register(selector, isConnected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT,
+                        this);
+            }
+        }
+
+        private void finishConnect() throws IOException {
+            if (channel.finishConnect()) {
+                isConnected = true;
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Move the queued messages to the write queue, register for writes while there is something to
+         * write, and close the connection if its oldest message is not acknowledged in time.
+         */
+        private void update(long now) {
+            if (key == null || isClosed) {
+                return;
+            } else if (!isConnected) {
+                if (now - connectTime > ackTimeoutNanos) {
+                    close(new DataEndpointException("Cannot connect to " + address + " within " +
+                            TimeUnit.NANOSECONDS.toMillis(ackTimeoutNanos) + " ms"));
+                }
+                return;
+            }
+            Message message;
+            while ((message = queue.poll()) != null) {
+                writing.add(message);
+            }
+            if (!writing.isEmpty()) {
+                try {
+                    write();
+                } catch (IOException e) {
+                    close(e);
+                    return;
+                }
+            }
+            if (!pendingAcks.isEmpty()) {
+                Message oldest = pendingAcks.values().iterator().next();
+                if (now - oldest.writtenTime > ackTimeoutNanos) {
+                    close(new DataEndpointException("Events were not acknowledged by " + address + " within " +
+                            TimeUnit.NANOSECONDS.toMillis(ackTimeoutNanos) + " ms"));
+                }
+            }
+        }
+
+        private void write() throws IOException {
+            Message message;
+            while ((message = writing.peek()) != null) {
+                channel.write(message.buffers);
+                if (message.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                writing.poll();
+                release(message);
+                message.writtenTime = System.nanoTime();
+                pendingAcks.put(message.sequence, message);
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void read() throws Exception {
+            if (channel.read(readBuffer) == -1) {
+                throw new EOFException("Connection closed from remote end.");
+            }
+            readBuffer.flip();
+            while (readBuffer.remaining() >= RESPONSE_HEADER_SIZE) {
+                int start = readBuffer.position();
+                int messageType = readBuffer.get(start);
+                long messageSequence = readBuffer.getLong(start + 1);
+                if (messageType == BinaryMessageConstants.SEQUENCED_OK_RESPONSE) {
+                    readBuffer.position(start + RESPONSE_HEADER_SIZE);
+                    Message message = pendingAcks.remove(messageSequence);
+                    if (message != null) {
+                        message.acknowledgement.complete(null);
+                    }
+                } else if (messageType == BinaryMessageConstants.SEQUENCED_ERROR_RESPONSE) {
+                    if (readBuffer.remaining() < RESPONSE_HEADER_SIZE + ERROR_HEADER_SIZE) {
+                        break;
+                    }
+                    int responseSize = RESPONSE_HEADER_SIZE + ERROR_HEADER_SIZE +
+                            readBuffer.getInt(start + RESPONSE_HEADER_SIZE) +
+                            readBuffer.getInt(start + RESPONSE_HEADER_SIZE + 4);
+                    if (readBuffer.remaining() < responseSize) {
+                        if (responseSize > readBuffer.capacity()) {
+                            readBuffer = ByteBuffer.allocate(responseSize).put(readBuffer);
+                            return;
+                        }
+                        break;
+                    }
+                    byte[] error = new byte[responseSize - RESPONSE_HEADER_SIZE];
+                    readBuffer.position(start + RESPONSE_HEADER_SIZE);
+                    readBuffer.get(error);
+                    Message message = pendingAcks.remove(messageSequence);
+                    if (message != null) {
+                        message.acknowledgement.completeExceptionally(
+                                BinaryEventSender.readErrorResponse(new ByteArrayInputStream(error)));
+                    }
+                } else {
+                    throw new IOException("Unexpected response type " + messageType + " in pipelined mode");
+                }
+            }
+            readBuffer.compact();
+        }
+
+        private synchronized void close(Exception cause) {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            if (!closed) {
+                log.error("Error on the connection to " + address + ", failing " +
+                        (pendingAcks.size() + writing.size()) + " pending batches.", cause);
+            }
+            if (key != null) {
+                key.cancel();
+                key = null;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close the connection to " + address, e);
+            }
+            DataEndpointException exception = cause instanceof DataEndpointException ?
+                    (DataEndpointException) cause : new DataEndpointException("Connection to the receiver " +
+                    address + " was lost before the batch was acknowledged", cause);
+            for (Message message : pendingAcks.values()) {
+                message.acknowledgement.completeExceptionally(exception);
+            }
+            pendingAcks.clear();
+            Message message;
+            while ((message = writing.poll()) != null) {
+                fail(message, exception);
+            }
+            failQueued(exception);
+        }
+
+        private void failQueued(Exception cause) {
+            Message message;
+            while ((message = queue.poll()) != null) {
+                fail(message, cause);
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@
 */
 package org.wso2.carbon.databridge.agent.endpoint.binary;
 
+import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
 
@@ -27,12 +28,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
-import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.assignData;
-import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.getSize;
 import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.loadData;
 
 
@@ -40,6 +37,18 @@ import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUt
  * This is a Util class which does the Binary message transformation for publish, login, logout operations.
  */
 public class BinaryEventSender {
+
+    private static final BinaryBufferPool DEFAULT_BUFFER_POOL = new BinaryBufferPool(
+            DataEndpointConstants.DEFAULT_BINARY_BUFFER_SIZE, DataEndpointConstants.DEFAULT_BINARY_BUFFER_POOL_SIZE,
+            false);
+
+    private static final ThreadLocal<BinaryEventEncoder> DEFAULT_ENCODER = new ThreadLocal<BinaryEventEncoder>() {
+        @Override
+        protected BinaryEventEncoder initialValue() {
+            return new BinaryEventEncoder(DEFAULT_BUFFER_POOL);
+        }
+    };
+
     public static void sendBinaryLoginMessage(Socket socket, String userName, String password) throws IOException {
         ByteBuffer buf = ByteBuffer.allocate(13 + userName.length() + password.length());
         buf.put((byte) 0);
@@ -66,86 +75,62 @@ public class BinaryEventSender {
         outputStream.flush();
     }
 
-    public static void sendBinaryPublishMessage(Socket socket, List<Event> events, String sessionId)
-            throws IOException {
-        int messageSize = 8 + sessionId.length();
-        List<byte[]> bytes = new ArrayList<byte[]>();
-
-        for (Event event : events) {
-
-            int eventSize = getEventSize(event);
-            messageSize += eventSize + 4;
-            ByteBuffer eventDataBuffer = ByteBuffer.allocate(4 + eventSize);
-            eventDataBuffer.putInt(eventSize);
-            eventDataBuffer.putLong(event.getTimeStamp());
-            eventDataBuffer.putInt(event.getStreamId().length());
-            eventDataBuffer.put(event.getStreamId().getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
-
-            if (event.getMetaData() != null && event.getMetaData().length != 0) {
-                for (Object aMetaData : event.getMetaData()) {
-                    assignData(aMetaData, eventDataBuffer);
-                }
-            }
-            if (event.getCorrelationData() != null && event.getCorrelationData().length != 0) {
-                for (Object aCorrelationData : event.getCorrelationData()) {
-                    assignData(aCorrelationData, eventDataBuffer);
-                }
-            }
-            if (event.getPayloadData() != null && event.getPayloadData().length != 0) {
-                for (Object aPayloadData : event.getPayloadData()) {
-                    assignData(aPayloadData, eventDataBuffer);
-                }
-            }
-            if (event.getArbitraryDataMap() != null && event.getArbitraryDataMap().size() != 0) {
-                for (Map.Entry<String, String> aArbitraryData : event.getArbitraryDataMap().entrySet()) {
-                    assignData(aArbitraryData.getKey(), eventDataBuffer);
-                    assignData(aArbitraryData.getValue(), eventDataBuffer);
-                }
-            }
-            bytes.add(eventDataBuffer.array());
+    /**
+     * Offer the given compression codecs to the receiver, in order of preference.
+     *
+     * @param socket socket connected to the receiver.
+     * @param codecs codecs supported by the publisher.
+     * @throws IOException if the message cannot be written.
+     */
+    public static void sendBinaryCompressionNegotiationMessage(Socket socket, int[] codecs) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(9 + codecs.length);
+        buf.put((byte) BinaryMessageConstants.COMPRESSION_NEGOTIATION_MESSAGE);
+        buf.putInt(4 + codecs.length);
+        buf.putInt(codecs.length);
+        for (int codec : codecs) {
+            buf.put((byte) codec);
         }
 
-        ByteBuffer buf = ByteBuffer.allocate(sessionId.length() + 13);
-        buf.put((byte) 2);  //1
-        buf.putInt(messageSize); //4
-        buf.putInt(sessionId.length()); //4
-        buf.put(sessionId.getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
-        buf.putInt(events.size()); //4
+        OutputStream outputStream = new BufferedOutputStream(socket.getOutputStream());
+        outputStream.write(buf.array());
+        outputStream.flush();
+    }
 
-        OutputStream outputstream = new BufferedOutputStream(socket.getOutputStream());
-        outputstream.write(buf.array());
-        for (byte[] byteArray : bytes) {
-            outputstream.write(byteArray);
+    /**
+     * Read the response to a compression negotiation message.
+     *
+     * @param socket socket connected to the receiver.
+     * @return the codec chosen by the receiver.
+     * @throws Exception if the response cannot be read, or the receiver responded with an error.
+     */
+    public static int processCompressionNegotiationResponse(Socket socket) throws Exception {
+        InputStream inputStream = socket.getInputStream();
+        int messageType = inputStream.read();
+        if (messageType == 1) {
+            throw readErrorResponse(inputStream);
+        } else if (messageType != BinaryMessageConstants.COMPRESSION_NEGOTIATION_RESPONSE) {
+            throw new IOException("Unexpected response type " + messageType + " for compression negotiation");
         }
-        outputstream.flush();
+        return loadData(inputStream, new byte[1])[0];
     }
 
-    private static int getEventSize(Event event) {
-        int eventSize = 4 + event.getStreamId().length() + 8;
-        Object[] data = event.getMetaData();
-        if (data != null) {
-            for (Object aData : data) {
-                eventSize += getSize(aData);
-            }
-        }
-        data = event.getCorrelationData();
-        if (data != null) {
-            for (Object aData : data) {
-                eventSize += getSize(aData);
-            }
-        }
-        data = event.getPayloadData();
-        if (data != null) {
-            for (Object aData : data) {
-                eventSize += getSize(aData);
-            }
-        }
-        if (event.getArbitraryDataMap() != null && event.getArbitraryDataMap().size() != 0) {
-            for (Map.Entry<String, String> aArbitraryData : event.getArbitraryDataMap().entrySet()) {
-                eventSize += 8 + aArbitraryData.getKey().length() + aArbitraryData.getValue().length();
-            }
+    /**
+     * Send a publish message with an uncompressing encoder of the calling thread, which is reused for the
+     * later messages sent from the thread.
+     */
+    public static void sendBinaryPublishMessage(Socket socket, List<Event> events, String sessionId)
+            throws IOException {
+        sendBinaryPublishMessage(socket, events, sessionId, DEFAULT_ENCODER.get());
+    }
+
+    public static void sendBinaryPublishMessage(Socket socket, List<Event> events, String sessionId,
+                                                BinaryEventEncoder encoder) throws IOException {
+        try {
+            encoder.encodePublishMessage(events, sessionId);
+            encoder.writeTo(socket);
+        } finally {
+            encoder.release();
         }
-        return eventSize;
     }
 
     public static String processResponse(Socket socket) throws Exception {
@@ -160,17 +145,7 @@ public class BinaryEventSender {
                 break;
             case 1:
                 //Error Message
-                bbuf = ByteBuffer.wrap(loadData(bufferedInputStream, new byte[8]));
-                int errorClassNameLength = bbuf.getInt();
-                int errorMsgLength = bbuf.getInt();
-
-                String className = new String(ByteBuffer.wrap(loadData(bufferedInputStream,
-                        new byte[errorClassNameLength])).array());
-                String errorMsg = new String(ByteBuffer.wrap(loadData(bufferedInputStream,
-                        new byte[errorMsgLength])).array());
-
-                throw (Exception) (BinaryDataEndpoint.class.getClassLoader().
-                        loadClass(className).getConstructor(String.class).newInstance(errorMsg));
+                throw readErrorResponse(bufferedInputStream);
             case 2:
                 //Logging OK response
                 bbuf = ByteBuffer.wrap(loadData(bufferedInputStream, new byte[4]));
@@ -180,4 +155,24 @@ public class BinaryEventSender {
         return null;
     }
 
+    /**
+     * Read the body of an error response, and create the exception which was thrown at the receiver.
+     *
+     * @param inputStream input stream positioned right after the response type.
+     * @return the exception reported by the receiver.
+     * @throws Exception if the response cannot be read or the exception cannot be instantiated.
+     */
+    static Exception readErrorResponse(InputStream inputStream) throws Exception {
+        ByteBuffer bbuf = ByteBuffer.wrap(loadData(inputStream, new byte[8]));
+        int errorClassNameLength = bbuf.getInt();
+        int errorMsgLength = bbuf.getInt();
+
+        String className = new String(ByteBuffer.wrap(loadData(inputStream,
+                new byte[errorClassNameLength])).array());
+        String errorMsg = new String(ByteBuffer.wrap(loadData(inputStream,
+                new byte[errorMsgLength])).array());
+
+        return (Exception) (BinaryDataEndpoint.class.getClassLoader().
+                loadClass(className).getConstructor(String.class).newInstance(errorMsg));
+    }
 }
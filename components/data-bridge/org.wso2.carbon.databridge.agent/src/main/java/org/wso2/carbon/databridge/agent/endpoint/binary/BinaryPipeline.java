@@ -0,0 +1,229 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.binary;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.loadData;
+
+/**
+ * Pipelined publishing state of a single receiver connection. Publish messages are written with a
+ * sequence number and the connection is released right after the write, while a reader thread
+ * matches the receiver's acknowledgements to the pending messages. The number of unacknowledged
+ * messages on the connection is bounded by the window size. A connection whose window is not freed in
+ * time, or one of whose acknowledgements is cancelled by a publisher which gave up waiting for it, is
+ * closed and all its pending messages are failed, as the receiver can no longer be relied on to answer.
+ */
+public class BinaryPipeline implements Runnable {
+
+    private static final Logger log = LogManager.getLogger(BinaryPipeline.class);
+
+    private static final ConcurrentHashMap<Socket, BinaryPipeline> PIPELINES = new ConcurrentHashMap<>();
+
+    private static final ThreadFactory READER_THREAD_FACTORY = new DataBridgeThreadFactory("BinaryAckReader");
+
+    private final Socket socket;
+
+    private final Semaphore window;
+
+    private final Map<Long, CompletableFuture<Void>> pendingAcks = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile boolean closed;
+
+    private BinaryPipeline(Socket socket, int windowSize) {
+        this.socket = socket;
+        this.window = new Semaphore(windowSize);
+    }
+
+    /**
+     * Get the pipeline of the connection, and start its acknowledgement reader if the connection has
+     * not been used in pipelined mode before.
+     *
+     * @param socket     connection to the receiver.
+     * @param windowSize max number of unacknowledged messages on the connection.
+     * @return pipeline of the connection.
+     */
+    public static BinaryPipeline getPipeline(Socket socket, int windowSize) {
+        BinaryPipeline pipeline = PIPELINES.get(socket);
+        if (pipeline == null) {
+            pipeline = new BinaryPipeline(socket, windowSize);
+            BinaryPipeline existing = PIPELINES.putIfAbsent(socket, pipeline);
+            if (existing != null) {
+                return existing;
+            }
+            Thread readerThread = READER_THREAD_FACTORY.newThread(pipeline);
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+        return pipeline;
+    }
+
+    /**
+     * Write the events as a sequenced publish message. This blocks only while the window of the
+     * connection is full, and the caller must have exclusive use of the connection for the write.
+     * Cancelling the returned future closes the connection.
+     *
+     * @param events    events of the batch.
+     * @param sessionId the session id of the current login.
+     * @param encoder   encoder of the calling thread.
+     * @param timeoutMs max time to wait for the window, after which the connection is closed.
+     * @return future that completes when the receiver acknowledges the message.
+     * @throws IOException if the window is not freed in time or the message cannot be written.
+     */
+    public CompletableFuture<Void> send(List<Event> events, String sessionId, BinaryEventEncoder encoder,
+                                        long timeoutMs) throws IOException {
+        acquireWindow(timeoutMs);
+        final long messageSequence = sequence.incrementAndGet();
+        CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+        pendingAcks.put(messageSequence, acknowledgement);
+        acknowledgement.whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable throwable) {
+                if (throwable instanceof CancellationException) {
+                    close(new IOException("Message " + messageSequence + " was not acknowledged in time"));
+                }
+            }
+        });
+        if (closed) {
+            fail(messageSequence, new DataEndpointException("Connection to the receiver " +
+                    socket.getRemoteSocketAddress() + " is closed"));
+            return acknowledgement;
+        }
+        try {
+            encoder.encodeSequencedPublishMessage(events, sessionId, messageSequence);
+            encoder.writeTo(socket);
+        } catch (IOException e) {
+            if (pendingAcks.remove(messageSequence) != null) {
+                window.release();
+            }
+            throw e;
+        } finally {
+            encoder.release();
+        }
+        return acknowledgement;
+    }
+
+    private void acquireWindow(long timeoutMs) throws IOException {
+        try {
+            if (!window.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                IOException exception = new IOException("No message was acknowledged by " +
+                        socket.getRemoteSocketAddress() + " within " + timeoutMs + " ms");
+                close(exception);
+                throw exception;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the window of " +
+                    socket.getRemoteSocketAddress());
+        }
+    }
+
+    /**
+     * @return true if the connection was closed, after which every message sent on it fails.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void run() {
+        try {
+            // Timed reads may switch a channel backed socket to non-blocking mode while the publishers are
+            // writing to it, hence the acknowledgement timeout is enforced by the waiting publisher instead.
+            socket.setSoTimeout(0);
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+            byte[] sequenceBytes = new byte[8];
+            while (!closed) {
+                int messageType = inputStream.read();
+                if (messageType == -1) {
+                    throw new EOFException("Connection closed from remote end.");
+                }
+                long messageSequence = ByteBuffer.wrap(loadData(inputStream, sequenceBytes)).getLong();
+                if (messageType == BinaryMessageConstants.SEQUENCED_OK_RESPONSE) {
+                    complete(messageSequence);
+                } else if (messageType == BinaryMessageConstants.SEQUENCED_ERROR_RESPONSE) {
+                    fail(messageSequence, BinaryEventSender.readErrorResponse(inputStream));
+                } else {
+                    throw new IOException("Unexpected response type " + messageType + " in pipelined mode");
+                }
+            }
+        } catch (Exception e) {
+            if (!socket.isClosed()) {
+                log.error("Error while reading acknowledgements from " + socket.getRemoteSocketAddress() +
+                        ", failing " + pendingAcks.size() + " pending batches.", e);
+            }
+            close(e);
+        }
+    }
+
+    private void complete(long messageSequence) {
+        CompletableFuture<Void> acknowledgement = pendingAcks.remove(messageSequence);
+        if (acknowledgement != null) {
+            window.release();
+            acknowledgement.complete(null);
+        }
+    }
+
+    private void fail(long messageSequence, Exception e) {
+        CompletableFuture<Void> acknowledgement = pendingAcks.remove(messageSequence);
+        if (acknowledgement != null) {
+            window.release();
+            acknowledgement.completeExceptionally(e);
+        }
+    }
+
+    private void close(Exception cause) {
+        closed = true;
+        PIPELINES.remove(socket, this);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.warn("Cannot close the socket to " + socket.getRemoteSocketAddress(), e);
+        }
+        DataEndpointException exception = new DataEndpointException("Connection to the receiver " +
+                socket.getRemoteSocketAddress() + " was lost before the batch was acknowledged", cause);
+        for (Long messageSequence : pendingAcks.keySet()) {
+            fail(messageSequence, exception);
+        }
+    }
+}
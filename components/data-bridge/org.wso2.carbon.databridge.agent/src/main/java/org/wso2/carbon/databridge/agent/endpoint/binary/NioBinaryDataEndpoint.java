@@ -0,0 +1,129 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.binary;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
+import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
+import org.wso2.carbon.databridge.agent.exception.DataEndpointAuthenticationException;
+import org.wso2.carbon.databridge.agent.exception.DataEndpointConfigurationException;
+import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+import org.wso2.carbon.databridge.agent.util.DataPublisherUtil;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
+import org.wso2.carbon.databridge.commons.exception.TransportException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Binary transport implementation for the Data Endpoint which publishes the batches of all the publisher
+ * threads over a few non-blocking connections per receiver. Batches are written as sequenced publish
+ * messages by a selector thread, which also matches the acknowledgements, hence neither a publisher thread
+ * nor a pooled socket is held while a batch is in flight. The max pool size bounds the number of batches in
+ * flight. Login and logout still use the pooled blocking sockets of the binary transport.
+ */
+public class NioBinaryDataEndpoint extends BinaryDataEndpoint {
+
+    private static final Logger log = LogManager.getLogger(NioBinaryDataEndpoint.class);
+
+    private static final int UNNEGOTIATED = -1;
+
+    private BinaryEventLoop eventLoop;
+
+    private InetSocketAddress address;
+
+    private int socketTimeout;
+
+    private volatile int compressionCodec = UNNEGOTIATED;
+
+    @Override
+    public void initialize(DataEndpointConfiguration dataEndpointConfiguration)
+            throws DataEndpointException, DataEndpointAuthenticationException, TransportException {
+        AgentConfiguration agentConfiguration = dataEndpointConfiguration.getAgentConfiguration();
+        try {
+            String[] urlElements = DataPublisherUtil.getProtocolHostPort(dataEndpointConfiguration.getReceiverURL());
+            this.address = new InetSocketAddress(urlElements[1], Integer.parseInt(urlElements[2]));
+        } catch (DataEndpointConfigurationException e) {
+            throw new DataEndpointException("Invalid receiver URL " + dataEndpointConfiguration.getReceiverURL(), e);
+        }
+        this.socketTimeout = agentConfiguration.getSocketTimeoutMS();
+        super.initialize(dataEndpointConfiguration);
+        try {
+            this.eventLoop = new BinaryEventLoop(address, agentConfiguration.getNioConnectionCount(),
+                    agentConfiguration.getSocketTimeoutMS(), getBufferPool());
+        } catch (IOException e) {
+            throw new DataEndpointException("Cannot open the event loop for " + address, e);
+        }
+    }
+
+    @Override
+    protected boolean isAsynchronous() {
+        return true;
+    }
+
+    @Override
+    protected CompletableFuture<Void> sendAsync(List<Event> events) throws DataEndpointException {
+        BinaryEventEncoder encoder = getEventEncoder(getCompressionCodec());
+        long sequence = eventLoop.nextSequence();
+        ByteBuffer[] buffers;
+        try {
+            encoder.encodeSequencedPublishMessage(events, getDataEndpointConfiguration().getSessionId(), sequence);
+            recordCompression(encoder);
+            buffers = encoder.detachBuffers();
+        } finally {
+            encoder.release();
+        }
+        return eventLoop.send(sequence, buffers);
+    }
+
+    /**
+     * Get the codec negotiated with the receiver, negotiating it on the first publish. The selector
+     * connections do not negotiate, hence it is negotiated once over a blocking connection to the same
+     * receiver, which is retried on the next publish if the receiver cannot be connected.
+     */
+    private int getCompressionCodec() {
+        int codec = compressionCodec;
+        if (codec == UNNEGOTIATED) {
+            synchronized (this) {
+                codec = compressionCodec;
+                if (codec == UNNEGOTIATED) {
+                    try {
+                        codec = negotiateCompression(address, socketTimeout);
+                        compressionCodec = codec;
+                    } catch (IOException e) {
+                        log.warn("Cannot connect to data receiver " + address + " to negotiate compression, hence " +
+                                "events are sent uncompressed until it is negotiated.", e);
+                        codec = BinaryMessageConstants.COMPRESSION_NONE;
+                    }
+                }
+            }
+        }
+        return codec;
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        eventLoop.close();
+    }
+}
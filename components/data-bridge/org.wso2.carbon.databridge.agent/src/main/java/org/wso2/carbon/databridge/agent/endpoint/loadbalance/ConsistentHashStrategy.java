@@ -0,0 +1,212 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.loadbalance;
+
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Routes the events with the same routing key to the same endpoint, using a consistent hash ring with a
+ * number of virtual nodes per endpoint. An event whose endpoint is not active goes to the next active
+ * endpoint on the ring, hence only the keys of the failed endpoint move, and they move back once it is
+ * active again. The ring is built from the positions of the endpoints in the group, so agents configured
+ * with the same receiver URLs route the same keys to the same receivers.
+ * <p>
+ * The routing key is one of:
+ * <ul>
+ * <li>correlationData, all the correlation attributes, or the stream id of events without any.</li>
+ * <li>streamId, the stream of the event.</li>
+ * <li>metaData[i], correlationData[i] or payloadData[i], the attribute at that index.</li>
+ * </ul>
+ */
+public class ConsistentHashStrategy implements LoadBalancingStrategy {
+
+    public static final String STREAM_ID_KEY = "streamId";
+
+    public static final String META_DATA_KEY = "metaData";
+
+    public static final String CORRELATION_DATA_KEY = "correlationData";
+
+    public static final String PAYLOAD_DATA_KEY = "payloadData";
+
+    private static final int VIRTUAL_NODES_PER_ENDPOINT = 160;
+
+    private final String keyData;
+
+    private final int keyIndex;
+
+    private final RoundRobinStrategy roundRobinStrategy = new RoundRobinStrategy();
+
+    private volatile Ring ring = new Ring(0);
+
+    /**
+     * @param routingKey the attribute the events are routed by.
+     * @throws IllegalArgumentException if the routing key cannot be parsed.
+     */
+    public ConsistentHashStrategy(String routingKey) {
+        String key = routingKey == null || routingKey.trim().isEmpty() ? CORRELATION_DATA_KEY : routingKey.trim();
+        int bracket = key.indexOf('[');
+        if (bracket < 0) {
+            this.keyData = key;
+            this.keyIndex = -1;
+        } else if (key.endsWith("]")) {
+            this.keyData = key.substring(0, bracket);
+            try {
+                this.keyIndex = Integer.parseInt(key.substring(bracket + 1, key.length() - 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid attribute index in routing key '" + routingKey + "'", e);
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid routing key '" + routingKey + "'");
+        }
+        boolean isAttributeKey = keyData.equals(META_DATA_KEY) || keyData.equals(CORRELATION_DATA_KEY) ||
+                keyData.equals(PAYLOAD_DATA_KEY);
+        boolean isValid = keyData.equals(STREAM_ID_KEY) ? bracket < 0 :
+                isAttributeKey && (bracket < 0 || keyIndex >= 0);
+        if (!isValid) {
+            throw new IllegalArgumentException("Invalid routing key '" + routingKey + "', expected " + STREAM_ID_KEY +
+                    ", " + CORRELATION_DATA_KEY + " or an attribute such as " + PAYLOAD_DATA_KEY + "[0]");
+        }
+    }
+
+    /**
+     * Events without a routing key are balanced in round robin order.
+     */
+    @Override
+    public int nextIndex(List<DataEndpoint> dataEndpoints) {
+        return roundRobinStrategy.nextIndex(dataEndpoints);
+    }
+
+    @Override
+    public int nextIndex(List<DataEndpoint> dataEndpoints, Event event) {
+        Ring ring = getRing(dataEndpoints.size());
+        int position = ring.getPosition(hash(event));
+        int owners = ring.owners.length;
+        for (int i = 0; i < owners; i++) {
+            int index = ring.owners[(position + i) % owners];
+            if (dataEndpoints.get(index).getState() == DataEndpoint.State.ACTIVE) {
+                return index;
+            }
+        }
+        return ring.owners[position];
+    }
+
+    /**
+     * Get the endpoint which owns the routing key of the event, whether or not it is active.
+     *
+     * @param dataEndpoints endpoints of the group.
+     * @param event         the event to be routed.
+     * @return index of the endpoint owning the key.
+     */
+    public int getOwnerIndex(List<DataEndpoint> dataEndpoints, Event event) {
+        Ring ring = getRing(dataEndpoints.size());
+        return ring.owners[ring.getPosition(hash(event))];
+    }
+
+    private Ring getRing(int endpointCount) {
+        Ring current = ring;
+        if (current.endpointCount != endpointCount) {
+            // Endpoints are only added while the group is being built, hence racing rebuilds are equal.
+            current = new Ring(endpointCount);
+            ring = current;
+        }
+        return current;
+    }
+
+    private long hash(Event event) {
+        Object key;
+        if (keyData.equals(STREAM_ID_KEY)) {
+            key = event.getStreamId();
+        } else {
+            Object[] data = keyData.equals(META_DATA_KEY) ? event.getMetaData() :
+                    keyData.equals(CORRELATION_DATA_KEY) ? event.getCorrelationData() : event.getPayloadData();
+            if (keyIndex < 0) {
+                key = data == null || data.length == 0 ? event.getStreamId() : data;
+            } else {
+                key = data != null && keyIndex < data.length ? data[keyIndex] : null;
+            }
+        }
+        int hashCode = key instanceof Object[] ? Arrays.hashCode((Object[]) key) : key == null ? 0 : key.hashCode();
+        return mix(hashCode);
+    }
+
+    /**
+     * Spread the hash code over the ring, as hash codes of similar keys, such as consecutive numbers, are
+     * close to each other.
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Hash ring of a fixed number of endpoints, sorted by the positions of the virtual nodes.
+     */
+    private static final class Ring {
+
+        private final int endpointCount;
+
+        private final long[] points;
+
+        private final int[] owners;
+
+        private Ring(int endpointCount) {
+            this.endpointCount = endpointCount;
+            int nodeCount = endpointCount * VIRTUAL_NODES_PER_ENDPOINT;
+            final long[] nodes = new long[nodeCount];
+            Integer[] order = new Integer[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                // Virtual node i % VIRTUAL_NODES_PER_ENDPOINT of endpoint i / VIRTUAL_NODES_PER_ENDPOINT.
+                nodes[i] = mix(((long) (i / VIRTUAL_NODES_PER_ENDPOINT) << 32) | (i % VIRTUAL_NODES_PER_ENDPOINT));
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer first, Integer second) {
+                    return Long.compare(nodes[first], nodes[second]);
+                }
+            });
+            this.points = new long[nodeCount];
+            this.owners = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                points[i] = nodes[order[i]];
+                owners[i] = order[i] / VIRTUAL_NODES_PER_ENDPOINT;
+            }
+        }
+
+        /**
+         * @return position of the first virtual node at or after the hash, wrapping around the ring.
+         */
+        private int getPosition(long hash) {
+            int position = Arrays.binarySearch(points, hash);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            return position == points.length ? 0 : position;
+        }
+    }
+}
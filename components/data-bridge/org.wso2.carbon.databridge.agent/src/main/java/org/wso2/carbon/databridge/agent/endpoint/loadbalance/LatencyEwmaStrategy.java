@@ -0,0 +1,33 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.loadbalance;
+
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
+
+/**
+ * Selects the active endpoint with the lowest expected wait, computed as the exponentially weighted moving
+ * average of its batch publishing latency times the batches in flight on it plus the new one. Endpoints
+ * without a measured latency yet are preferred, so that every endpoint gets sampled.
+ */
+public class LatencyEwmaStrategy extends LeastOutstandingStrategy {
+
+    @Override
+    protected double getCost(DataEndpoint dataEndpoint) {
+        return dataEndpoint.getLatencyEwmaNanos() * (dataEndpoint.getOutstandingBatches() + 1);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.loadbalance;
+
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects the active endpoint with the least batches in flight, so that a slow receiver gets fewer
+ * events instead of capping the throughput of the whole group. Ties are broken in round robin order.
+ */
+public class LeastOutstandingStrategy implements LoadBalancingStrategy {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public int nextIndex(List<DataEndpoint> dataEndpoints) {
+        int size = dataEndpoints.size();
+        int start = Math.floorMod(counter.getAndIncrement(), size);
+        int selected = start;
+        double minCost = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            DataEndpoint dataEndpoint = dataEndpoints.get(index);
+            if (dataEndpoint.getState() == DataEndpoint.State.ACTIVE) {
+                double cost = getCost(dataEndpoint);
+                if (cost < minCost) {
+                    minCost = cost;
+                    selected = index;
+                }
+            }
+        }
+        return selected;
+    }
+
+    protected double getCost(DataEndpoint dataEndpoint) {
+        return dataEndpoint.getOutstandingBatches();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.loadbalance;
+
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.List;
+
+/**
+ * Selects the endpoint of a load balanced endpoint group that the next event is sent to. The group starts
+ * looking for an active endpoint from the selected index, hence implementations only need to prefer active
+ * endpoints. Implementations are called concurrently by all the publishing threads and must not block.
+ */
+public interface LoadBalancingStrategy {
+
+    /**
+     * Select the endpoint for the next event.
+     *
+     * @param dataEndpoints endpoints of the group.
+     * @return index of the selected endpoint.
+     */
+    int nextIndex(List<DataEndpoint> dataEndpoints);
+
+    /**
+     * Select the endpoint for the given event. Strategies which do not route by the content of the events
+     * select the endpoint as for any other event.
+     *
+     * @param dataEndpoints endpoints of the group.
+     * @param event         the event to be sent.
+     * @return index of the selected endpoint.
+     */
+    default int nextIndex(List<DataEndpoint> dataEndpoints, Event event) {
+        return nextIndex(dataEndpoints);
+    }
+}
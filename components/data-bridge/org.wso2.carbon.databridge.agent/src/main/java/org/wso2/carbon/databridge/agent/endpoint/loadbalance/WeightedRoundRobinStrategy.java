@@ -0,0 +1,66 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.loadbalance;
+
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock free weighted round robin. The smooth weighted round robin schedule is computed once, so that the
+ * endpoints are interleaved instead of receiving their share in bursts, and is then walked with a counter.
+ */
+public class WeightedRoundRobinStrategy implements LoadBalancingStrategy {
+
+    private final int[] schedule;
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * @param weights weights of the endpoints in the order they were added to the group, each at least 1.
+     */
+    public WeightedRoundRobinStrategy(int[] weights) {
+        int totalWeight = 0;
+        for (int weight : weights) {
+            if (weight < 1) {
+                throw new IllegalArgumentException("Endpoint weights must be positive, found " + weight);
+            }
+            totalWeight += weight;
+        }
+        this.schedule = new int[totalWeight];
+        int[] currentWeights = new int[weights.length];
+        for (int slot = 0; slot < totalWeight; slot++) {
+            int selected = 0;
+            for (int i = 0; i < weights.length; i++) {
+                currentWeights[i] += weights[i];
+                if (currentWeights[i] > currentWeights[selected]) {
+                    selected = i;
+                }
+            }
+            currentWeights[selected] -= totalWeight;
+            schedule[slot] = selected;
+        }
+    }
+
+    @Override
+    public int nextIndex(List<DataEndpoint> dataEndpoints) {
+        int index = schedule[Math.floorMod(counter.getAndIncrement(), schedule.length)];
+        return index < dataEndpoints.size() ? index : index % dataEndpoints.size();
+    }
+}
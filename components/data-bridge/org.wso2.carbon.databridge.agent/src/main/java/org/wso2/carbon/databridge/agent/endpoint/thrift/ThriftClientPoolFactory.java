@@ -17,18 +17,19 @@
 */
 package org.wso2.carbon.databridge.agent.endpoint.thrift;
 
-import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
 import org.wso2.carbon.databridge.agent.AgentHolder;
 import org.wso2.carbon.databridge.agent.client.AbstractClientPoolFactory;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
 import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAgentConfigurationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
 import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
 import org.wso2.carbon.databridge.commons.thrift.service.general.ThriftEventTransmissionService;
+import org.wso2.carbon.databridge.commons.thrift.utils.ThriftProtocolUtils;
 
 /**
  * This is a Thrift Transport implementation for AbstractClientPoolFactory for Thrift Endpoint.
@@ -39,11 +40,11 @@ public class ThriftClientPoolFactory extends AbstractClientPoolFactory {
     public Object createClient(String protocol, String hostName, int port) throws DataEndpointException,
             DataEndpointAgentConfigurationException {
         if (protocol.equalsIgnoreCase(DataEndpointConfiguration.Protocol.TCP.toString())) {
-            int socketTimeout = AgentHolder.getInstance().
-                    getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE).
-                    getAgentConfiguration().getSocketTimeoutMS();
-            TTransport receiverTransport = new TSocket(hostName, port, socketTimeout);
-            TProtocol tProtocol = new TBinaryProtocol(receiverTransport);
+            AgentConfiguration agentConfiguration = AgentHolder.getInstance().
+                    getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE).getAgentConfiguration();
+            TProtocol tProtocol = createProtocol(new TSocket(hostName, port, agentConfiguration.getSocketTimeoutMS()),
+                    agentConfiguration);
+            TTransport receiverTransport = tProtocol.getTransport();
             ThriftEventTransmissionService.Client client = new ThriftEventTransmissionService.Client(tProtocol);
             try {
                 receiverTransport.open();
@@ -57,6 +58,25 @@ public class ThriftClientPoolFactory extends AbstractClientPoolFactory {
                 + " is supported");
     }
 
+    /**
+     * Create the protocol the receivers are configured with over the socket, framing the socket if needed.
+     *
+     * @param socket             socket connected to the receiver, or to be opened.
+     * @param agentConfiguration configuration of the Thrift agent.
+     * @return protocol whose transport wraps the socket.
+     * @throws DataEndpointAgentConfigurationException if the configured protocol is not supported.
+     */
+    static TProtocol createProtocol(TSocket socket, AgentConfiguration agentConfiguration)
+            throws DataEndpointAgentConfigurationException {
+        try {
+            return ThriftProtocolUtils.getProtocolFactory(agentConfiguration.getThriftProtocol()).getProtocol(
+                    ThriftProtocolUtils.getTransportFactory(agentConfiguration.isThriftFramedTransport()).
+                            getTransport(socket));
+        } catch (IllegalArgumentException e) {
+            throw new DataEndpointAgentConfigurationException(e.getMessage(), e);
+        }
+    }
+
     @Override
     public boolean validateClient(Object client) {
         ThriftEventTransmissionService.Client thriftClient = (ThriftEventTransmissionService.Client) client;
@@ -38,6 +38,11 @@ import java.util.List;
  */
 public class ThriftDataEndpoint extends DataEndpoint {
 
+    /**
+     * Builder of the bundles of this endpoint, which is only used within the synchronized send.
+     */
+    private final ThriftEventBundleBuilder eventBundleBuilder = new ThriftEventBundleBuilder();
+
     @Override
     protected synchronized String login(Object client, String userName, String password)
             throws DataEndpointAuthenticationException {
@@ -63,11 +68,8 @@ public class ThriftDataEndpoint extends DataEndpoint {
     @Override
     protected synchronized void send(Object client, List<Event> events) throws DataEndpointException,
             SessionTimeoutException, UndefinedEventTypeException {
-        ThriftEventBundle thriftEventBundle = null;
-        for (Event event : events) {
-            thriftEventBundle = ThriftEventConverter.toThriftEventBundle(event, thriftEventBundle,
-                    getDataEndpointConfiguration().getSessionId());
-        }
+        ThriftEventBundle thriftEventBundle = eventBundleBuilder.build(events,
+                getDataEndpointConfiguration().getSessionId());
         try {
             if (client instanceof ThriftSecureEventTransmissionService.Client) {
                 ((ThriftSecureEventTransmissionService.Client) client).publish(thriftEventBundle);
@@ -0,0 +1,136 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.endpoint.thrift;
+
+import org.wso2.carbon.databridge.agent.endpoint.StreamSchema;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.thrift.data.ThriftEventBundle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the Thrift event bundles of an endpoint, reusing one bundle and its attribute lists for every
+ * batch. The lists are sized for the batch from the stream schema of its first event before the events
+ * are added, so they do not grow while the bundle is built, and keep their capacity for the next batch.
+ * A bundle is only valid until the next one is built, hence a builder must only be used by one thread
+ * at a time, and each bundle has to be published before building the next.
+ */
+public class ThriftEventBundleBuilder {
+
+    private final ThriftEventBundle eventBundle = new ThriftEventBundle();
+
+    private final ArrayList<Integer> intAttributes = new ArrayList<>();
+
+    private final ArrayList<Long> longAttributes = new ArrayList<>();
+
+    private final ArrayList<Double> doubleAttributes = new ArrayList<>();
+
+    private final ArrayList<Boolean> boolAttributes = new ArrayList<>();
+
+    private final ArrayList<String> stringAttributes = new ArrayList<>();
+
+    private final HashMap<Integer, Map<String, String>> arbitraryDataMaps = new HashMap<>();
+
+    /**
+     * Number of int, long, double, bool and string attributes of an event of the batch.
+     */
+    private final int[] attributeCounts = new int[5];
+
+    /**
+     * Build the bundle of the batch, in the same format as {@link ThriftEventConverter#toThriftEventBundle(
+     * Event, ThriftEventBundle, String)} builds it.
+     *
+     * @param events    events of the batch.
+     * @param sessionId the session id of the current login.
+     * @return the bundle, which is reused by the next call.
+     */
+    public ThriftEventBundle build(List<Event> events, String sessionId) {
+        intAttributes.clear();
+        longAttributes.clear();
+        doubleAttributes.clear();
+        boolAttributes.clear();
+        stringAttributes.clear();
+        arbitraryDataMaps.clear();
+        if (!events.isEmpty()) {
+            ensureCapacity(StreamSchema.getSchema(events.get(0)), events.size());
+        }
+        eventBundle.setSessionId(sessionId);
+        eventBundle.setEventNum(0);
+        eventBundle.setIntAttributeList(intAttributes);
+        eventBundle.setLongAttributeList(longAttributes);
+        eventBundle.setDoubleAttributeList(doubleAttributes);
+        eventBundle.setBoolAttributeList(boolAttributes);
+        eventBundle.setStringAttributeList(stringAttributes);
+        eventBundle.setArbitraryDataMapMap(arbitraryDataMaps);
+        for (Event event : events) {
+            ThriftEventConverter.toThriftEventBundle(event, eventBundle, sessionId);
+        }
+        // Leave out what the events do not have, as the converter does.
+        if (intAttributes.isEmpty()) {
+            eventBundle.setIntAttributeList(null);
+        }
+        if (doubleAttributes.isEmpty()) {
+            eventBundle.setDoubleAttributeList(null);
+        }
+        if (boolAttributes.isEmpty()) {
+            eventBundle.setBoolAttributeList(null);
+        }
+        if (arbitraryDataMaps.isEmpty()) {
+            eventBundle.setArbitraryDataMapMap(null);
+        }
+        return eventBundle;
+    }
+
+    private void ensureCapacity(StreamSchema schema, int eventCount) {
+        int[] counts = attributeCounts;
+        Arrays.fill(counts, 0);
+        // The stream id and the time stamp of each event are added to the string and long lists.
+        counts[1] = 1;
+        counts[4] = 1;
+        countTypes(schema.getMetaDataTypes(), counts);
+        countTypes(schema.getCorrelationDataTypes(), counts);
+        countTypes(schema.getPayloadDataTypes(), counts);
+        intAttributes.ensureCapacity(counts[0] * eventCount);
+        longAttributes.ensureCapacity(counts[1] * eventCount);
+        doubleAttributes.ensureCapacity(counts[2] * eventCount);
+        boolAttributes.ensureCapacity(counts[3] * eventCount);
+        stringAttributes.ensureCapacity(counts[4] * eventCount);
+    }
+
+    private static void countTypes(AttributeType[] types, int[] counts) {
+        for (AttributeType type : types) {
+            if (type == AttributeType.INT) {
+                counts[0]++;
+            } else if (type == AttributeType.LONG) {
+                counts[1]++;
+            } else if (type == AttributeType.FLOAT || type == AttributeType.DOUBLE) {
+                counts[2]++;
+            } else if (type == AttributeType.BOOL) {
+                counts[3]++;
+            } else {
+                // Strings, and nulls which are sent as strings.
+                counts[4]++;
+            }
+        }
+    }
+}
@@ -20,13 +20,14 @@ package org.wso2.carbon.databridge.agent.endpoint.thrift;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.agent.endpoint.StreamSchema;
+import org.wso2.carbon.databridge.commons.AttributeType;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.thrift.data.ThriftEventBundle;
 import org.wso2.carbon.databridge.commons.utils.EventDefinitionConverterUtils;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 
 /**
@@ -45,69 +46,123 @@ public final class ThriftEventConverter {
         ThriftEventBundle thriftEventBundle = eventBundle;
         if (thriftEventBundle == null) {
             thriftEventBundle = new ThriftEventBundle();
-            thriftEventBundle.setStringAttributeList(new LinkedList<String>()); //adding string list
-            thriftEventBundle.setLongAttributeList(new LinkedList<Long>()); //adding long list
+            thriftEventBundle.setStringAttributeList(new ArrayList<String>()); //adding string list
+            thriftEventBundle.setLongAttributeList(new ArrayList<Long>()); //adding long list
             thriftEventBundle.setSessionId(sessionId);
             thriftEventBundle.setEventNum(0);
         }
         thriftEventBundle.addToStringAttributeList(event.getStreamId());
         thriftEventBundle.addToLongAttributeList(event.getTimeStamp());
 
-        thriftEventBundle = assignAttributes(thriftEventBundle, event.getMetaData());
-        thriftEventBundle = assignAttributes(thriftEventBundle, event.getCorrelationData());
-        thriftEventBundle = assignAttributes(thriftEventBundle, event.getPayloadData());
+        StreamSchema schema = StreamSchema.getSchema(event);
+        assignAttributes(thriftEventBundle, event.getMetaData(), schema.getMetaDataTypes());
+        assignAttributes(thriftEventBundle, event.getCorrelationData(), schema.getCorrelationDataTypes());
+        assignAttributes(thriftEventBundle, event.getPayloadData(), schema.getPayloadDataTypes());
         thriftEventBundle = assignMap(thriftEventBundle, event.getArbitraryDataMap());
         thriftEventBundle.setEventNum(thriftEventBundle.getEventNum() + 1);
 
         return thriftEventBundle;
     }
 
-    private static ThriftEventBundle assignAttributes(ThriftEventBundle thriftEventBundle,
-                                                      Object[] attributes) {
-        if (attributes != null) {
-            for (Object object : attributes) {
+    /**
+     * Adds the attribute dispatching on the type of its value.
+     */
+    private static void assignAttribute(ThriftEventBundle thriftEventBundle, Object object) {
+        if (object instanceof Integer) {
+            if (!thriftEventBundle.isSetIntAttributeList()) {
+                thriftEventBundle.setIntAttributeList(new ArrayList<Integer>());
+            }
+            thriftEventBundle.addToIntAttributeList((Integer) object);
+        } else if (object instanceof Float) {
+            if (!thriftEventBundle.isSetDoubleAttributeList()) {
+                thriftEventBundle.setDoubleAttributeList(new ArrayList<Double>());
+            }
+            thriftEventBundle.addToDoubleAttributeList(((Float) object).doubleValue());
+        } else if (object instanceof Long) {
+            if (!thriftEventBundle.isSetLongAttributeList()) {
+                thriftEventBundle.setLongAttributeList(new ArrayList<Long>());
+            }
+            thriftEventBundle.addToLongAttributeList((Long) object);
+        } else if (object instanceof String) {
+            if (!thriftEventBundle.isSetStringAttributeList()) {
+                thriftEventBundle.setStringAttributeList(new ArrayList<String>());
+            }
+            thriftEventBundle.addToStringAttributeList((String) object);
+        } else if (object instanceof Boolean) {
+            if (!thriftEventBundle.isSetBoolAttributeList()) {
+                thriftEventBundle.setBoolAttributeList(new ArrayList<Boolean>());
+            }
+            thriftEventBundle.addToBoolAttributeList((Boolean) object);
+        } else if (object instanceof Double) {
+            if (!thriftEventBundle.isSetDoubleAttributeList()) {
+                thriftEventBundle.setDoubleAttributeList(new ArrayList<Double>());
+            }
+            thriftEventBundle.addToDoubleAttributeList((Double) object);
+        } else if (object == null) {
+            assignNull(thriftEventBundle);
+        } else {
+            log.error("Undefined attribute type : " + object);
+        }
+    }
+
+    private static void assignNull(ThriftEventBundle thriftEventBundle) {
+        if (!thriftEventBundle.isSetStringAttributeList()) {
+            thriftEventBundle.setStringAttributeList(new ArrayList<String>());
+        }
+        thriftEventBundle.addToStringAttributeList(EventDefinitionConverterUtils.NULL_STRING);
+    }
 
-                if (object instanceof Integer) {
-                    if (!thriftEventBundle.isSetIntAttributeList()) {
-                        thriftEventBundle.setIntAttributeList(new ArrayList<Integer>());
-                    }
-                    thriftEventBundle.addToIntAttributeList((Integer) object);
-                } else if (object instanceof Float) {
-                    if (!thriftEventBundle.isSetDoubleAttributeList()) {
-                        thriftEventBundle.setDoubleAttributeList(new ArrayList<Double>());
-                    }
-                    thriftEventBundle.addToDoubleAttributeList(((Float) object).doubleValue());
-                } else if (object instanceof Long) {
-                    if (!thriftEventBundle.isSetLongAttributeList()) {
-                        thriftEventBundle.setLongAttributeList(new ArrayList<Long>());
-                    }
-                    thriftEventBundle.addToLongAttributeList((Long) object);
-                } else if (object instanceof String) {
-                    if (!thriftEventBundle.isSetStringAttributeList()) {
-                        thriftEventBundle.setStringAttributeList(new ArrayList<String>());
-                    }
-                    thriftEventBundle.addToStringAttributeList((String) object);
-                } else if (object instanceof Boolean) {
-                    if (!thriftEventBundle.isSetBoolAttributeList()) {
-                        thriftEventBundle.setBoolAttributeList(new ArrayList<Boolean>());
-                    }
-                    thriftEventBundle.addToBoolAttributeList((Boolean) object);
-                } else if (object instanceof Double) {
-                    if (!thriftEventBundle.isSetDoubleAttributeList()) {
-                        thriftEventBundle.setDoubleAttributeList(new ArrayList<Double>());
-                    }
-                    thriftEventBundle.addToDoubleAttributeList((Double) object);
-                } else if (object == null) {
-                    if (!thriftEventBundle.isSetStringAttributeList()) {
-                        thriftEventBundle.setStringAttributeList(new ArrayList<String>());
-                    }
-                    thriftEventBundle.addToStringAttributeList(EventDefinitionConverterUtils.NULL_STRING);
-                } else {
-                    log.error("Undefined attribute type : " + object);
+    /**
+     * Adds the attributes with the types of the stream schema, which the values are known to have.
+     */
+    private static void assignAttributes(ThriftEventBundle thriftEventBundle, Object[] attributes,
+                                         AttributeType[] types) {
+        if (attributes != null) {
+            for (int i = 0; i < attributes.length; i++) {
+                Object object = attributes[i];
+                if (object == null) {
+                    assignNull(thriftEventBundle);
+                    continue;
+                } else if (types[i] == null) {
+                    assignAttribute(thriftEventBundle, object);
+                    continue;
+                }
+                switch (types[i]) {
+                    case INT:
+                        if (!thriftEventBundle.isSetIntAttributeList()) {
+                            thriftEventBundle.setIntAttributeList(new ArrayList<Integer>());
+                        }
+                        thriftEventBundle.addToIntAttributeList((Integer) object);
+                        break;
+                    case FLOAT:
+                        if (!thriftEventBundle.isSetDoubleAttributeList()) {
+                            thriftEventBundle.setDoubleAttributeList(new ArrayList<Double>());
+                        }
+                        thriftEventBundle.addToDoubleAttributeList(((Float) object).doubleValue());
+                        break;
+                    case LONG:
+                        thriftEventBundle.addToLongAttributeList((Long) object);
+                        break;
+                    case STRING:
+                        thriftEventBundle.addToStringAttributeList((String) object);
+                        break;
+                    case BOOL:
+                        if (!thriftEventBundle.isSetBoolAttributeList()) {
+                            thriftEventBundle.setBoolAttributeList(new ArrayList<Boolean>());
+                        }
+                        thriftEventBundle.addToBoolAttributeList((Boolean) object);
+                        break;
+                    case DOUBLE:
+                        if (!thriftEventBundle.isSetDoubleAttributeList()) {
+                            thriftEventBundle.setDoubleAttributeList(new ArrayList<Double>());
+                        }
+                        thriftEventBundle.addToDoubleAttributeList((Double) object);
+                        break;
+                    default:
+                        assignAttribute(thriftEventBundle, object);
                 }
             }
         }
-        return thriftEventBundle;
     }
 
     private static ThriftEventBundle assignMap(ThriftEventBundle thriftEventBundle,
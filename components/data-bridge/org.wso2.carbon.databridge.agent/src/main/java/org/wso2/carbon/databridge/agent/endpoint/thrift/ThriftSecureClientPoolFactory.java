@@ -17,7 +17,6 @@
 */
 package org.wso2.carbon.databridge.agent.endpoint.thrift;
 
-import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.transport.TSSLTransportFactory;
 import org.apache.thrift.transport.TSocket;
@@ -25,6 +24,7 @@ import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
 import org.wso2.carbon.databridge.agent.AgentHolder;
 import org.wso2.carbon.databridge.agent.client.AbstractSecureClientPoolFactory;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
 import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAgentConfigurationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointSecurityException;
@@ -52,15 +52,11 @@ public class ThriftSecureClientPoolFactory extends AbstractSecureClientPoolFacto
     public Object createClient(String protocol, String hostName, int port) throws
             DataEndpointSecurityException, DataEndpointAgentConfigurationException {
         if (protocol.equalsIgnoreCase(DataEndpointConfiguration.Protocol.SSL.toString())) {
-            int timeout = AgentHolder.getInstance().
-                    getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE).
-                    getAgentConfiguration().getSocketTimeoutMS();
-            String sslProtocols = AgentHolder.getInstance().
-                    getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE).
-                    getAgentConfiguration().getSslEnabledProtocols();
-            String ciphers = AgentHolder.getInstance().
-                    getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE).
-                    getAgentConfiguration().getCiphers();
+            AgentConfiguration agentConfiguration = AgentHolder.getInstance().
+                    getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE).getAgentConfiguration();
+            int timeout = agentConfiguration.getSocketTimeoutMS();
+            String sslProtocols = agentConfiguration.getSslEnabledProtocols();
+            String ciphers = agentConfiguration.getCiphers();
             try {
                 TTransport receiverTransport = TSSLTransportFactory.
                         getClientSocket(hostName, port, timeout, params);
@@ -77,7 +73,7 @@ public class ThriftSecureClientPoolFactory extends AbstractSecureClientPoolFacto
                     sslSocket.setEnabledCipherSuites(ciphersArray);
                 }
 
-                TProtocol tProtocol = new TBinaryProtocol(receiverTransport);
+                TProtocol tProtocol = ThriftClientPoolFactory.createProtocol(tSocket, agentConfiguration);
                 return new ThriftSecureEventTransmissionService.Client(tProtocol);
             } catch (TTransportException e) {
                 throw new DataEndpointSecurityException("Error while trying to connect to " +
@@ -0,0 +1,59 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of an endpoint group. The gauges are read from the group when the metrics are queried.
+ */
+public abstract class DataEndpointGroupMetrics implements DataEndpointGroupMetricsMBean {
+
+    private final LongAdder resentEvents = new LongAdder();
+
+    private final LongAdder droppedEvents = new LongAdder();
+
+    private final LongAdder deadLetteredEvents = new LongAdder();
+
+    public void onEventsResent(int count) {
+        resentEvents.add(count);
+    }
+
+    public void onEventDropped() {
+        droppedEvents.increment();
+    }
+
+    public void onEventsDeadLettered(int count) {
+        deadLetteredEvents.add(count);
+    }
+
+    @Override
+    public long getResentEvents() {
+        return resentEvents.sum();
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    @Override
+    public long getDeadLetteredEvents() {
+        return deadLetteredEvents.sum();
+    }
+}
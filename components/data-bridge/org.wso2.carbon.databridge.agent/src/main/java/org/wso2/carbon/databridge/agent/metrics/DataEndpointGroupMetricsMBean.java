@@ -0,0 +1,59 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.metrics;
+
+/**
+ * Management interface of the metrics of an endpoint group.
+ */
+public interface DataEndpointGroupMetricsMBean {
+
+    /**
+     * @return number of slots of the ring buffer of the event queue, or 0 when publishing synchronously.
+     */
+    long getQueueCapacity();
+
+    /**
+     * @return number of events in the ring buffer of the event queue which are not consumed yet.
+     */
+    long getQueueOccupancy();
+
+    /**
+     * @return number of events in the overflow journal of the event queue.
+     */
+    long getJournaledEvents();
+
+    /**
+     * @return number of endpoints of the group which are accepting events.
+     */
+    int getActiveEndpoints();
+
+    /**
+     * @return number of events of failed batches which were resent to the other endpoints or requeued.
+     */
+    long getResentEvents();
+
+    /**
+     * @return number of events of failed batches which could not be resent as the event queue was full.
+     */
+    long getDroppedEvents();
+
+    /**
+     * @return number of events of failed batches which were given up on after the max resend attempts.
+     */
+    long getDeadLetteredEvents();
+}
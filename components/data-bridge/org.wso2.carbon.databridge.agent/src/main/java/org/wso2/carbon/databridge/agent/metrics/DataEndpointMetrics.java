@@ -0,0 +1,93 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of an endpoint. The gauges are read from the endpoint when the metrics are queried.
+ */
+public abstract class DataEndpointMetrics implements DataEndpointMetricsMBean {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LongAdder sentEvents = new LongAdder();
+
+    private final LongAdder failedBatches = new LongAdder();
+
+    private final Histogram batchEvents = new Histogram();
+
+    private final Histogram sendLatency = new Histogram();
+
+    public void onBatchSent(int events, long latencyNanos) {
+        sentEvents.add(events);
+        batchEvents.record(events);
+        sendLatency.record(latencyNanos);
+    }
+
+    public void onBatchFailed() {
+        failedBatches.increment();
+    }
+
+
+    @Override
+    public long getSentEvents() {
+        return sentEvents.sum();
+    }
+
+    @Override
+    public long getSentBatches() {
+        return batchEvents.getCount();
+    }
+
+    @Override
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    @Override
+    public double getBatchEventsMean() {
+        return batchEvents.getMean();
+    }
+
+    @Override
+    public long getBatchEventsMax() {
+        return batchEvents.getMax();
+    }
+
+    @Override
+    public double getSendLatencyMean() {
+        return sendLatency.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSendLatency50thPercentile() {
+        return sendLatency.getPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSendLatency99thPercentile() {
+        return sendLatency.getPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSendLatencyMax() {
+        return sendLatency.getMax() / NANOS_PER_MILLI;
+    }
+}
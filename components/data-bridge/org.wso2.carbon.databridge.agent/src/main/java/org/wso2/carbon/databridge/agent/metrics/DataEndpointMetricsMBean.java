@@ -0,0 +1,64 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.metrics;
+
+/**
+ * Management interface of the metrics of an endpoint. Latencies are the time from the submission of a
+ * batch to its acknowledgement, in milliseconds.
+ */
+public interface DataEndpointMetricsMBean {
+
+    String getState();
+
+    /**
+     * @return number of events a batch is submitted with.
+     */
+    int getBatchSize();
+
+    /**
+     * @return number of batches which are being published or waiting for a publisher.
+     */
+    int getOutstandingBatches();
+
+    long getSentEvents();
+
+    long getSentBatches();
+
+    /**
+     * @return number of batches which failed and were handed back to the endpoint group.
+     */
+    long getFailedBatches();
+
+    double getBatchEventsMean();
+
+    long getBatchEventsMax();
+
+    double getSendLatencyMean();
+
+    double getSendLatency50thPercentile();
+
+    double getSendLatency99thPercentile();
+
+    double getSendLatencyMax();
+
+    /**
+     * @return exponentially weighted moving average of the send latency, which the latency based load
+     * balancing uses.
+     */
+    double getSendLatencyEwma();
+}
@@ -0,0 +1,86 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Registers the metrics of the data publishers, endpoint groups and endpoints in the platform MBean
+ * server, under the {@value #DOMAIN} domain. A metric which cannot be registered is only logged, as
+ * publishing does not depend on it.
+ */
+public final class MetricsRegistry {
+
+    private static final Logger log = LogManager.getLogger(MetricsRegistry.class);
+
+    public static final String DOMAIN = "org.wso2.carbon.databridge.agent";
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Register the metrics with the given management interface.
+     *
+     * @param properties key properties of the object name, such as "type=DataPublisher,name=1".
+     * @param metrics    the metrics to be registered.
+     * @param type       management interface of the metrics.
+     * @return the name the metrics were registered with, or null if they could not be registered.
+     */
+    public static <T> ObjectName register(String properties, T metrics, Class<T> type) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":" + properties);
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(new StandardMBean(metrics, type), objectName);
+            return objectName;
+        } catch (JMException e) {
+            log.warn("Cannot register the metrics " + properties + " in the MBean server.", e);
+            return null;
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            // Already unregistered.
+        } catch (JMException e) {
+            log.warn("Cannot unregister the metrics " + objectName + " from the MBean server.", e);
+        }
+    }
+
+    /**
+     * @return the value quoted if it has characters which are not allowed in an object name property value.
+     */
+    public static String quote(String value) {
+        return value.matches("[\\w.\\-]*") ? value : ObjectName.quote(value);
+    }
+}
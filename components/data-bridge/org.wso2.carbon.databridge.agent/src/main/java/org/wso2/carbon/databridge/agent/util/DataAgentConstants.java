@@ -51,6 +51,37 @@ public class DataAgentConstants {
     public static final String SSL_ENABLED_PROTOCOLS = "sslEnabledProtocols";
     public static final String CIPHERS = "ciphers";
     public static final String FAILED_EVENT_LOG_INTERVAL = "failedEventLogInterval";
+    public static final String BINARY_BUFFER_SIZE = "binaryBufferSize";
+    public static final String BINARY_BUFFER_POOL_SIZE = "binaryBufferPoolSize";
+    public static final String USE_DIRECT_BUFFERS = "useDirectBuffers";
+    public static final String PIPELINE_WINDOW_SIZE = "pipelineWindowSize";
+    public static final String OVERFLOW_JOURNAL_DIRECTORY = "overflowJournalDirectory";
+    public static final String OVERFLOW_JOURNAL_SEGMENT_SIZE = "overflowJournalSegmentSize";
+    public static final String OVERFLOW_JOURNAL_MAX_SEGMENTS = "overflowJournalMaxSegments";
+    public static final String QUEUE_WAIT_STRATEGY = "queueWaitStrategy";
+    public static final String QUEUE_CONSUMER_COUNT = "queueConsumerCount";
+    public static final String LOAD_BALANCING_STRATEGY = "loadBalancingStrategy";
+    public static final String ENDPOINT_WEIGHTS = "endpointWeights";
+    public static final String LINGER_MS = "lingerMs";
+    public static final String MAX_BATCH_BYTES = "maxBatchBytes";
+    public static final String BINARY_COMPRESSION = "binaryCompression";
+    public static final String BINARY_COMPRESSION_THRESHOLD = "binaryCompressionThreshold";
+    public static final String NIO_CONNECTION_COUNT = "nioConnectionCount";
+    public static final String ADAPTIVE_BATCH_SIZE = "adaptiveBatchSize";
+    public static final String TARGET_ACK_LATENCY_MS = "targetAckLatencyMs";
+    public static final String MIN_BATCH_SIZE = "minBatchSize";
+    public static final String MAX_BATCH_SIZE = "maxBatchSize";
+    public static final String JMX_METRICS_ENABLED = "jmxMetricsEnabled";
+    public static final String THRIFT_PROTOCOL = "thriftProtocol";
+    public static final String THRIFT_FRAMED_TRANSPORT = "thriftFramedTransport";
+    public static final String ROUTING_KEY = "routingKey";
+    public static final String VIRTUAL_THREADS = "virtualThreads";
+    public static final String HEARTBEAT_INTERVAL_MS = "heartbeatIntervalMs";
+    public static final String SYNC_BATCHING = "syncBatching";
+    public static final String MAX_RESEND_ATTEMPTS = "maxResendAttempts";
+    public static final String STREAM_RATE_LIMITS = "streamRateLimits";
+    public static final String STREAM_SAMPLING_RATES = "streamSamplingRates";
+    public static final String SAMPLING_STRATEGY = "samplingStrategy";
 
 
 
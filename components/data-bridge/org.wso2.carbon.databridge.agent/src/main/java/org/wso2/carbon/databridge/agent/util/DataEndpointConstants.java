@@ -31,6 +31,8 @@ public class DataEndpointConstants {
     public static final String DATA_AGENT_CONF_FILE_PATH = File.separator
             + "data-bridge" + File.separator + DATA_AGENT_CONF_FILE_NAME;
     public static final int DEFAULT_DATA_AGENT_BATCH_SIZE = 100;
+    public static final int DEFAULT_BINARY_BUFFER_SIZE = 65536;
+    public static final int DEFAULT_BINARY_BUFFER_POOL_SIZE = 16;
     public static final String LB_URL_GROUP_SEPARATOR = ",";
     public static final String FAILOVER_URL_GROUP_SEPARATOR = "|";
     public static final String FAILOVER_URL_GROUP_SEPARATOR_REGEX = "\\|";
@@ -43,6 +45,22 @@ public class DataEndpointConstants {
     public static final String SYNC_STRATEGY = "sync";
     public static final String ASYNC_STRATEGY = "async";
 
+    public static final String BLOCKING_WAIT_STRATEGY = "blocking";
+    public static final String SLEEPING_WAIT_STRATEGY = "sleeping";
+    public static final String YIELDING_WAIT_STRATEGY = "yielding";
+    public static final String BUSY_SPIN_WAIT_STRATEGY = "busySpin";
+
+    public static final String ROUND_ROBIN_LB_STRATEGY = "roundRobin";
+    public static final String WEIGHTED_ROUND_ROBIN_LB_STRATEGY = "weightedRoundRobin";
+    public static final String LEAST_OUTSTANDING_LB_STRATEGY = "leastOutstanding";
+    public static final String LATENCY_EWMA_LB_STRATEGY = "latencyEwma";
+    public static final String CONSISTENT_HASH_LB_STRATEGY = "consistentHash";
+    public static final double LATENCY_EWMA_ALPHA = 0.2;
+
+    public static final String PROBABILISTIC_SAMPLING_STRATEGY = "probabilistic";
+    public static final String DETERMINISTIC_SAMPLING_STRATEGY = "deterministic";
+    public static final String ANY_STREAM = "*";
+
     public static final String DATA_AGENT_CONFIG_NAMESPACE = "data.agent.config";
     public static final String TRANSPORTS_NAMESPACE = "transports";
     public static final String DATABRIDGE_CONFIG_NAMESPACE = "databridge";
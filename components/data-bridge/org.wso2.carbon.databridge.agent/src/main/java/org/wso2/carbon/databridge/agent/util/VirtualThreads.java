@@ -0,0 +1,96 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeThreadFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Creates the thread factories of the agent, which make virtual threads when they are enabled and the JVM
+ * supports them. The agent is built for Java 8, hence the virtual thread builder of Java 21 is looked up
+ * reflectively, and platform threads are used on older JVMs.
+ */
+public final class VirtualThreads {
+
+    private static final Logger log = LogManager.getLogger(VirtualThreads.class);
+
+    private static final Method OF_VIRTUAL;
+
+    private static final Method NAME;
+
+    private static final Method FACTORY;
+
+    private static final AtomicBoolean IS_UNSUPPORTED_LOGGED = new AtomicBoolean();
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            // Virtual threads are not supported by this JVM.
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Create a thread factory named like the other thread pools of the data bridge.
+     *
+     * @param name    name of the thread pool.
+     * @param virtual whether virtual threads are to be made, if the JVM supports them.
+     * @return factory of virtual threads, or of platform threads if they are not enabled or supported.
+     */
+    public static ThreadFactory newThreadFactory(String name, boolean virtual) {
+        if (virtual) {
+            if (isSupported()) {
+                try {
+                    Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), "DataBridge-" + name + "-virtual-", 1L);
+                    return (ThreadFactory) FACTORY.invoke(builder);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    log.warn("Cannot create virtual threads for " + name + ", using platform threads.", e);
+                }
+            } else if (IS_UNSUPPORTED_LOGGED.compareAndSet(false, true)) {
+                log.warn("Virtual threads are not supported by Java " + System.getProperty("java.version") +
+                        ", using platform threads.");
+            }
+        }
+        return new DataBridgeThreadFactory(name);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.endpoint.AdaptiveBatchSize;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies the additive increase and multiplicative decrease of the adaptive batch size.
+ */
+public class AdaptiveBatchSizeTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    public void testGrowsWhileUnderTargetLatency() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize(100, 10, 125, 100);
+        batchSize.onAcknowledged(100, FAST);
+        Assert.assertEquals(batchSize.get(), 110);
+        batchSize.onAcknowledged(50, FAST);
+        Assert.assertEquals(batchSize.get(), 110, "A partial batch should not grow the batch size");
+        batchSize.onAcknowledged(110, FAST);
+        batchSize.onAcknowledged(120, FAST);
+        Assert.assertEquals(batchSize.get(), 125);
+    }
+
+    @Test
+    public void testHalvesOncePerTargetLatency() throws InterruptedException {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize(100, 30, 1000, 100);
+        batchSize.onAcknowledged(100, SLOW);
+        Assert.assertEquals(batchSize.get(), 50);
+        batchSize.onAcknowledged(100, SLOW);
+        batchSize.decrease();
+        Assert.assertEquals(batchSize.get(), 50, "Batches in flight should shrink the batch size only once");
+        Thread.sleep(150);
+        batchSize.decrease();
+        Assert.assertEquals(batchSize.get(), 30);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.client.AbstractClientPoolFactory;
+import org.wso2.carbon.databridge.agent.client.EndpointClientPool;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies the reuse, pre-warming, validation on failure and idle eviction of the endpoint client pool.
+ */
+public class EndpointClientPoolTest {
+
+    private static final String PUBLISHER_KEY = "tcp://localhost:7611";
+
+    @Test
+    public void testReturnedClientIsReused() throws Exception {
+        CountingClientPoolFactory factory = new CountingClientPoolFactory();
+        EndpointClientPool pool = new EndpointClientPool(factory, PUBLISHER_KEY, 0, 10, 5000);
+        Object client = pool.borrowClient();
+        pool.returnClient(client);
+        Assert.assertSame(pool.borrowClient(), client, "The returned client should be borrowed again");
+        Assert.assertEquals(factory.created.get(), 1);
+    }
+
+    @Test
+    public void testPrewarmAndMaxIdle() throws Exception {
+        CountingClientPoolFactory factory = new CountingClientPoolFactory();
+        EndpointClientPool pool = new EndpointClientPool(factory, PUBLISHER_KEY, 2, 3, 5000);
+        pool.prewarm();
+        Assert.assertEquals(pool.getIdleCount(), 2);
+        Object[] clients = new Object[4];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = pool.borrowClient();
+        }
+        for (Object client : clients) {
+            pool.returnClient(client);
+        }
+        Assert.assertEquals(pool.getIdleCount(), 3);
+        Assert.assertEquals(factory.terminated.size(), 1, "Clients above the max idle should be terminated");
+    }
+
+    @Test
+    public void testFailedClientIsValidated() throws Exception {
+        CountingClientPoolFactory factory = new CountingClientPoolFactory();
+        EndpointClientPool pool = new EndpointClientPool(factory, PUBLISHER_KEY, 0, 10, 5000);
+        Object client = pool.borrowClient();
+        factory.invalid.add(client);
+        pool.returnFailedClient(client);
+        Assert.assertEquals(pool.getIdleCount(), 0);
+        Assert.assertTrue(factory.terminated.contains(client), "An invalid client should be terminated");
+    }
+
+    @Test
+    public void testEvictionKeepsMinIdle() throws Exception {
+        CountingClientPoolFactory factory = new CountingClientPoolFactory();
+        EndpointClientPool pool = new EndpointClientPool(factory, PUBLISHER_KEY, 1, 10, 1000);
+        Object[] clients = new Object[3];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = pool.borrowClient();
+        }
+        for (Object client : clients) {
+            pool.returnClient(client);
+        }
+        pool.evictIdleClients(System.nanoTime());
+        Assert.assertEquals(pool.getIdleCount(), 3, "Clients should not be evicted before the min idle time");
+        pool.evictIdleClients(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+        Assert.assertEquals(pool.getIdleCount(), 1);
+        Assert.assertSame(pool.borrowClient(), clients[2], "The most recently returned client should be kept");
+        pool.close();
+        Assert.assertEquals(factory.terminated.size(), 2);
+    }
+
+    private static class CountingClientPoolFactory extends AbstractClientPoolFactory {
+
+        private final AtomicInteger created = new AtomicInteger();
+
+        private final Set<Object> invalid = new HashSet<>();
+
+        private final Set<Object> terminated = new HashSet<>();
+
+        @Override
+        public Object createClient(String protocol, String hostName, int port) {
+            created.incrementAndGet();
+            return new Object();
+        }
+
+        @Override
+        public boolean validateClient(Object client) {
+            return !invalid.contains(client);
+        }
+
+        @Override
+        public void terminateClient(Object client) {
+            terminated.add(client);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.endpoint.EventOverflowJournal;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Verifies ordering, bounds and segment recycling of the event queue overflow journal.
+ */
+public class EventOverflowJournalTest {
+
+    @Test
+    public void testReplayInOrderAcrossSegments() throws IOException {
+        File baseDirectory = Files.createTempDirectory("journal-test").toFile();
+        EventOverflowJournal journal = new EventOverflowJournal(baseDirectory, 4096, 4);
+        try {
+            int appended = 0;
+            while (journal.append(createEvent(appended))) {
+                appended++;
+            }
+            Assert.assertTrue(appended > 4, "Events should span multiple segments");
+            Assert.assertEquals(journal.size(), appended);
+            for (int i = 0; i < appended; i++) {
+                assertEvent(journal.poll(), i);
+            }
+            Assert.assertNull(journal.poll());
+            Assert.assertTrue(journal.isEmpty());
+        } finally {
+            journal.close();
+        }
+        Assert.assertEquals(baseDirectory.list().length, 0, "Journal files should be deleted on close");
+        Assert.assertTrue(baseDirectory.delete());
+    }
+
+    @Test
+    public void testSegmentsAreRecycled() throws IOException {
+        File baseDirectory = Files.createTempDirectory("journal-test").toFile();
+        EventOverflowJournal journal = new EventOverflowJournal(baseDirectory, 4096, 2);
+        try {
+            int next = 0;
+            int polled = 0;
+            for (int round = 0; round < 10; round++) {
+                while (journal.append(createEvent(next))) {
+                    next++;
+                }
+                while (journal.size() > 5) {
+                    assertEvent(journal.poll(), polled++);
+                }
+            }
+            Event event;
+            while ((event = journal.poll()) != null) {
+                assertEvent(event, polled++);
+            }
+            Assert.assertEquals(polled, next);
+            Assert.assertTrue(next > 100);
+        } finally {
+            journal.close();
+        }
+        Assert.assertTrue(baseDirectory.delete());
+    }
+
+    @Test
+    public void testEventsWithUnsupportedAttributesAreRejected() throws IOException {
+        File baseDirectory = Files.createTempDirectory("journal-test").toFile();
+        EventOverflowJournal journal = new EventOverflowJournal(baseDirectory, 4096, 2);
+        try {
+            Assert.assertTrue(journal.append(createEvent(0)));
+            Event event = new Event("org.wso2.esb.MediatorStatistics:1.0.0", 1001L, null, null,
+                    new Object[]{"WSO2", new StringBuilder("unsupported")}, null);
+            Assert.assertFalse(journal.append(event));
+            Assert.assertTrue(journal.append(createEvent(1)));
+            Assert.assertEquals(journal.size(), 2);
+            assertEvent(journal.poll(), 0);
+            assertEvent(journal.poll(), 1);
+            Assert.assertNull(journal.poll());
+        } finally {
+            journal.close();
+        }
+        Assert.assertTrue(baseDirectory.delete());
+    }
+
+    private Event createEvent(int i) {
+        Map<String, String> arbitraryData = new HashMap<>();
+        arbitraryData.put("key", "value" + i);
+        return new Event("org.wso2.esb.MediatorStatistics:1.0.0", 1000L + i, new Object[]{"127.0.0.1"},
+                null, new Object[]{"WSO2\u00e9" + i, 12.5d * i, i, 1.5f, (long) i, i % 2 == 0, null},
+                i % 3 == 0 ? null : arbitraryData);
+    }
+
+    private void assertEvent(Event event, int i) {
+        Assert.assertNotNull(event);
+        Assert.assertEquals(event.getStreamId(), "org.wso2.esb.MediatorStatistics:1.0.0");
+        Assert.assertEquals(event.getTimeStamp(), 1000L + i);
+        Assert.assertEquals(event.getMetaData(), new Object[]{"127.0.0.1"});
+        Assert.assertNull(event.getCorrelationData());
+        Assert.assertEquals(event.getPayloadData(),
+                new Object[]{"WSO2\u00e9" + i, 12.5d * i, i, 1.5f, (long) i, i % 2 == 0, null});
+        if (i % 3 == 0) {
+            Assert.assertNull(event.getArbitraryDataMap());
+        } else {
+            Assert.assertEquals(event.getArbitraryDataMap().get("key"), "value" + i);
+        }
+    }
+}
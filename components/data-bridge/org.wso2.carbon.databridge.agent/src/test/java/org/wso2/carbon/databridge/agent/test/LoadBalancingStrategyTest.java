@@ -0,0 +1,142 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
+import org.wso2.carbon.databridge.agent.endpoint.loadbalance.ConsistentHashStrategy;
+import org.wso2.carbon.databridge.agent.endpoint.loadbalance.RoundRobinStrategy;
+import org.wso2.carbon.databridge.agent.endpoint.loadbalance.WeightedRoundRobinStrategy;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Verifies the endpoint selection of the load balancing strategies.
+ */
+public class LoadBalancingStrategyTest {
+
+    private final List<DataEndpoint> dataEndpoints = Collections.nCopies(3, null);
+
+    @Test
+    public void testRoundRobin() {
+        RoundRobinStrategy strategy = new RoundRobinStrategy();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(strategy.nextIndex(dataEndpoints), i % 3);
+        }
+    }
+
+    @Test
+    public void testWeightedRoundRobinIsSmooth() {
+        WeightedRoundRobinStrategy strategy = new WeightedRoundRobinStrategy(new int[]{5, 1, 1});
+        int[] selected = new int[7];
+        int[] counts = new int[3];
+        for (int i = 0; i < 7; i++) {
+            selected[i] = strategy.nextIndex(dataEndpoints);
+            counts[selected[i]]++;
+        }
+        Assert.assertEquals(counts, new int[]{5, 1, 1});
+        Assert.assertEquals(selected, new int[]{0, 0, 1, 0, 2, 0, 0});
+        Assert.assertEquals(strategy.nextIndex(dataEndpoints), 0);
+    }
+
+    @Test
+    public void testConsistentHashRemapsOnlyTheKeysOfFailedEndpoint() {
+        List<DataEndpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            endpoints.add(new StateDataEndpoint());
+        }
+        ConsistentHashStrategy strategy = new ConsistentHashStrategy("payloadData[0]");
+        int keyCount = 1000;
+        int[] owners = new int[keyCount];
+        int[] counts = new int[endpoints.size()];
+        for (int key = 0; key < keyCount; key++) {
+            owners[key] = strategy.nextIndex(endpoints, createEvent(key));
+            Assert.assertEquals(strategy.nextIndex(endpoints, createEvent(key)), owners[key]);
+            Assert.assertEquals(strategy.getOwnerIndex(endpoints, createEvent(key)), owners[key]);
+            counts[owners[key]]++;
+        }
+        for (int count : counts) {
+            Assert.assertTrue(count > keyCount / endpoints.size() / 2, "Keys are not spread evenly : " + count);
+        }
+
+        ((StateDataEndpoint) endpoints.get(1)).state = DataEndpoint.State.UNAVAILABLE;
+        for (int key = 0; key < keyCount; key++) {
+            int index = strategy.nextIndex(endpoints, createEvent(key));
+            if (owners[key] == 1) {
+                Assert.assertNotEquals(index, 1);
+            } else {
+                Assert.assertEquals(index, owners[key]);
+            }
+            Assert.assertEquals(strategy.getOwnerIndex(endpoints, createEvent(key)), owners[key]);
+        }
+
+        ((StateDataEndpoint) endpoints.get(1)).state = DataEndpoint.State.ACTIVE;
+        for (int key = 0; key < keyCount; key++) {
+            Assert.assertEquals(strategy.nextIndex(endpoints, createEvent(key)), owners[key]);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testConsistentHashRejectsInvalidRoutingKey() {
+        new ConsistentHashStrategy("payloadData[first]");
+    }
+
+    private static Event createEvent(int key) {
+        return new Event("test:1.0.0", 0, null, null, new Object[]{"key-" + key, key});
+    }
+
+    /**
+     * Endpoint whose state is set by the test.
+     */
+    private static class StateDataEndpoint extends DataEndpoint {
+
+        private volatile State state = State.ACTIVE;
+
+        @Override
+        public State getState() {
+            return state;
+        }
+
+        @Override
+        protected String login(Object client, String userName, String password) {
+            return null;
+        }
+
+        @Override
+        protected void logout(Object client, String sessionId) {
+        }
+
+        @Override
+        protected void send(Object client, List<Event> events) {
+        }
+
+        @Override
+        public String getClientPoolFactoryClass() {
+            return null;
+        }
+
+        @Override
+        public String getSecureClientPoolFactoryClass() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.metrics.DataPublisherMetrics;
+import org.wso2.carbon.databridge.agent.metrics.DataPublisherMetricsMBean;
+import org.wso2.carbon.databridge.agent.metrics.Histogram;
+import org.wso2.carbon.databridge.agent.metrics.MetricsRegistry;
+
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+
+/**
+ * Verifies the histogram percentiles and the registration of the metrics in the MBean server.
+ */
+public class MetricsTest {
+
+    @Test
+    public void testHistogramPercentiles() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(histogram.getPercentile(99), 0);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(histogram.getCount(), 100);
+        Assert.assertEquals(histogram.getMean(), 50.5, 0.001);
+        Assert.assertEquals(histogram.getMax(), 100);
+        Assert.assertEquals(histogram.getPercentile(50), 63);
+        Assert.assertEquals(histogram.getPercentile(10), 15);
+        Assert.assertEquals(histogram.getPercentile(99), 100);
+    }
+
+    @Test
+    public void testMetricsAreRegistered() throws Exception {
+        DataPublisherMetrics metrics = new DataPublisherMetrics();
+        metrics.onEventPublished();
+        metrics.onEventPublished();
+        metrics.onEventDropped();
+        ObjectName objectName = MetricsRegistry.register("type=DataPublisher,name=MetricsTest", metrics,
+                DataPublisherMetricsMBean.class);
+        Assert.assertNotNull(objectName);
+        try {
+            Assert.assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(objectName,
+                    "PublishedEvents"), 2L);
+            Assert.assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(objectName,
+                    "DroppedEvents"), 1L);
+        } finally {
+            MetricsRegistry.unregister(objectName);
+        }
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+    }
+}
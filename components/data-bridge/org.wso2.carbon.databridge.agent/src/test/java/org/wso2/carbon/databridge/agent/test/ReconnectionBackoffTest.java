@@ -0,0 +1,69 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.endpoint.ReconnectionBackoff;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies the exponential growth, jitter and reset of the reconnection backoff.
+ */
+public class ReconnectionBackoffTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testDoublesUpToMaxDelay() {
+        ReconnectionBackoff backoff = new ReconnectionBackoff(1000, 5000);
+        long now = 0;
+        Assert.assertTrue(backoff.isAttemptDue(now), "The first attempt should not be delayed");
+        backoff.onAttempt(now);
+        Assert.assertEquals(backoff.getDelayNanos(), SECOND);
+        backoff.onAttempt(now);
+        Assert.assertEquals(backoff.getDelayNanos(), 2 * SECOND);
+        backoff.onAttempt(now);
+        Assert.assertEquals(backoff.getDelayNanos(), 4 * SECOND);
+        backoff.onAttempt(now);
+        Assert.assertEquals(backoff.getDelayNanos(), 5 * SECOND);
+    }
+
+    @Test
+    public void testAttemptIsDueWithinJitteredDelay() {
+        ReconnectionBackoff backoff = new ReconnectionBackoff(1000, 30000);
+        long now = 0;
+        backoff.onAttempt(now);
+        backoff.onAttempt(now);
+        Assert.assertFalse(backoff.isAttemptDue(now + SECOND - 1), "Attempts should wait half of the delay");
+        Assert.assertTrue(backoff.isAttemptDue(now + 2 * SECOND), "Attempts should not wait longer than the delay");
+    }
+
+    @Test
+    public void testResetStartsOver() {
+        ReconnectionBackoff backoff = new ReconnectionBackoff(1000, 30000);
+        backoff.onAttempt(0);
+        backoff.onAttempt(0);
+        backoff.onAttempt(0);
+        backoff.reset();
+        Assert.assertTrue(backoff.isAttemptDue(0));
+        backoff.onAttempt(0);
+        Assert.assertEquals(backoff.getDelayNanos(), SECOND);
+    }
+}
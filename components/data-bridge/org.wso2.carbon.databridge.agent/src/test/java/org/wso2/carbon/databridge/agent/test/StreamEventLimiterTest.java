@@ -0,0 +1,82 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.StreamEventLimiter;
+import org.wso2.carbon.databridge.agent.metrics.DataPublisherMetrics;
+
+/**
+ * Verifies the per stream rate limits and sampling of the stream event limiter.
+ */
+public class StreamEventLimiterTest {
+
+    private static final String STREAM = "org.wso2.test.stream:1.0.0";
+
+    private static final String OTHER_STREAM = "org.wso2.other.stream:1.0.0";
+
+    @Test
+    public void testRateLimitAllowsBurst() {
+        DataPublisherMetrics metrics = new DataPublisherMetrics();
+        StreamEventLimiter limiter = new StreamEventLimiter(STREAM + "=1/5", "", "", 10000, metrics);
+        int admitted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (limiter.admit(STREAM)) {
+                admitted++;
+            }
+        }
+        Assert.assertEquals(admitted, 5, "Only the burst should be admitted at once");
+        Assert.assertEquals(limiter.getRateLimitedEvents(STREAM), 15);
+        Assert.assertEquals(metrics.getRateLimitedEvents(), 15);
+        Assert.assertTrue(limiter.admit(OTHER_STREAM), "Streams without a limit should not be limited");
+    }
+
+    @Test
+    public void testAnyStreamLimitIsPerStream() {
+        DataPublisherMetrics metrics = new DataPublisherMetrics();
+        StreamEventLimiter limiter = new StreamEventLimiter("*=1/2", "", "", 10000, metrics);
+        Assert.assertTrue(limiter.admit(STREAM));
+        Assert.assertTrue(limiter.admit(STREAM));
+        Assert.assertFalse(limiter.admit(STREAM), "The stream should be over its limit");
+        Assert.assertTrue(limiter.admit(OTHER_STREAM), "Each stream should have its own limit");
+    }
+
+    @Test
+    public void testDeterministicSampling() {
+        DataPublisherMetrics metrics = new DataPublisherMetrics();
+        StreamEventLimiter limiter = new StreamEventLimiter("", STREAM + "=0.25", "deterministic", 10000, metrics);
+        int admitted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (limiter.admit(STREAM)) {
+                admitted++;
+            }
+        }
+        Assert.assertEquals(admitted, 25);
+        Assert.assertEquals(limiter.getSampledOutEvents(STREAM), 75);
+        Assert.assertEquals(metrics.getSampledOutEvents(), 75);
+    }
+
+    @Test
+    public void testInvalidSettingsAreIgnored() {
+        StreamEventLimiter limiter = new StreamEventLimiter(STREAM + "=fast", STREAM + "=2", "", 10000,
+                new DataPublisherMetrics());
+        Assert.assertFalse(limiter.isEnabled(), "Invalid settings should not limit the stream");
+        Assert.assertTrue(limiter.admit(STREAM));
+    }
+}
@@ -0,0 +1,236 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test.binary;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.endpoint.StreamSchema;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryBufferPool;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventEncoder;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageCompressionUtil;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.assignData;
+import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.getSize;
+import static org.wso2.carbon.databridge.commons.binary.BinaryMessageConverterUtil.loadData;
+
+/**
+ * Verifies that the pooled binary event encoder produces the same publish message as the per event encoding.
+ */
+public class BinaryEventEncoderTest {
+
+    private static final String SESSION_ID = "3c2a6f4e-8a5d-4c1e-9b8f-0e4f5b6c7d8e";
+
+    @Test
+    public void testStreamWriteMatchesLegacyFormat() throws IOException {
+        List<Event> events = createEvents(50);
+        BinaryEventEncoder encoder = new BinaryEventEncoder(new BinaryBufferPool(128, 4, false));
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             Socket client = new Socket("localhost", serverSocket.getLocalPort());
+             Socket server = serverSocket.accept()) {
+            BinaryEventSender.sendBinaryPublishMessage(client, events, SESSION_ID, encoder);
+            byte[] expected = encodeLegacy(events, SESSION_ID);
+            Assert.assertEquals(loadData(server.getInputStream(), new byte[expected.length]), expected);
+        }
+    }
+
+    @Test
+    public void testGatheringWriteMatchesLegacyFormat() throws IOException {
+        List<Event> events = createEvents(50);
+        BinaryEventEncoder encoder = new BinaryEventEncoder(new BinaryBufferPool(128, 4, true));
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost",
+                     serverSocket.getLocalPort()));
+             Socket server = serverSocket.accept()) {
+            for (int i = 0; i < 2; i++) {
+                BinaryEventSender.sendBinaryPublishMessage(client.socket(), events, SESSION_ID, encoder);
+                byte[] expected = encodeLegacy(events, SESSION_ID);
+                InputStream inputStream = server.getInputStream();
+                Assert.assertEquals(loadData(inputStream, new byte[expected.length]), expected);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalBlockingModeException.class)
+    public void testNonBlockingChannelIsRejected() throws IOException {
+        BinaryEventEncoder encoder = new BinaryEventEncoder(new BinaryBufferPool(128, 4, true));
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost",
+                     serverSocket.getLocalPort()));
+             Socket server = serverSocket.accept()) {
+            client.configureBlocking(false);
+            BinaryEventSender.sendBinaryPublishMessage(client.socket(), createEvents(1), SESSION_ID, encoder);
+        }
+    }
+
+    @Test
+    public void testDefaultEncoderMatchesLegacyFormat() throws IOException {
+        List<Event> events = createEvents(50);
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             Socket client = new Socket("localhost", serverSocket.getLocalPort());
+             Socket server = serverSocket.accept()) {
+            for (int i = 0; i < 2; i++) {
+                BinaryEventSender.sendBinaryPublishMessage(client, events, SESSION_ID);
+                byte[] expected = encodeLegacy(events, SESSION_ID);
+                Assert.assertEquals(loadData(server.getInputStream(), new byte[expected.length]), expected);
+            }
+        }
+    }
+
+    @Test
+    public void testChangingAttributeTypesMatchLegacyFormat() throws IOException {
+        List<Event> events = new ArrayList<>();
+        Map<String, String> arbitraryData = new HashMap<>();
+        arbitraryData.put("key", "value");
+        Object[][] payloads = new Object[][]{{"WSO2", 1, 2L}, {null, 3, 4L}, {"WSO2", "5", 6.0d}, {"WSO2", 7, 8L}};
+        for (int i = 0; i < payloads.length; i++) {
+            events.add(new Event("org.wso2.esb.ChangingTypes:1.0.0", 1000L + i, new Object[]{true},
+                    new Object[]{1.5f}, payloads[i], arbitraryData));
+        }
+        BinaryEventEncoder encoder = new BinaryEventEncoder(new BinaryBufferPool(128, 4, false));
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             Socket client = new Socket("localhost", serverSocket.getLocalPort());
+             Socket server = serverSocket.accept()) {
+            for (int i = 0; i < 2; i++) {
+                BinaryEventSender.sendBinaryPublishMessage(client, events, SESSION_ID, encoder);
+                byte[] expected = encodeLegacy(events, SESSION_ID);
+                Assert.assertEquals(loadData(server.getInputStream(), new byte[expected.length]), expected);
+            }
+        }
+        StreamSchema schema = StreamSchema.getSchema(events.get(0));
+        for (Event event : events) {
+            Assert.assertSame(StreamSchema.getSchema(event), schema);
+        }
+    }
+
+    @Test
+    public void testCompressedMessageCarriesPublishMessage() throws IOException {
+        List<Event> events = createEvents(50);
+        BinaryEventEncoder encoder = new BinaryEventEncoder(new BinaryBufferPool(128, 4, true));
+        encoder.setCompression(BinaryMessageConstants.COMPRESSION_DEFLATE, 1024);
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             Socket client = new Socket("localhost", serverSocket.getLocalPort());
+             Socket server = serverSocket.accept()) {
+            BinaryEventSender.sendBinaryPublishMessage(client, events, SESSION_ID, encoder);
+            byte[] expected = encodeLegacy(events, SESSION_ID);
+            InputStream inputStream = server.getInputStream();
+            ByteBuffer header = ByteBuffer.wrap(loadData(inputStream, new byte[10]));
+            Assert.assertEquals(header.get(), (byte) BinaryMessageConstants.COMPRESSED_MESSAGE);
+            int codec = header.get();
+            Assert.assertEquals(header.getInt(), expected.length);
+            byte[] compressed = loadData(inputStream, new byte[header.getInt()]);
+            Assert.assertEquals(encoder.getMessageSize(), expected.length);
+            Assert.assertEquals(encoder.getCompressedSize(), compressed.length);
+            Assert.assertTrue(compressed.length < expected.length);
+            Assert.assertEquals(BinaryMessageCompressionUtil.decompress(codec, compressed, expected.length,
+                    expected.length), expected);
+
+            List<Event> smallBatch = events.subList(0, 1);
+            BinaryEventSender.sendBinaryPublishMessage(client, smallBatch, SESSION_ID, encoder);
+            expected = encodeLegacy(smallBatch, SESSION_ID);
+            Assert.assertEquals(loadData(inputStream, new byte[expected.length]), expected);
+            Assert.assertEquals(encoder.getCompressedSize(), 0);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testNegativeUncompressedSizeIsRejected() throws IOException {
+        BinaryMessageCompressionUtil.decompress(BinaryMessageConstants.COMPRESSION_DEFLATE, new byte[16], -1, 1024);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testUncompressedSizeAboveMaxIsRejected() throws IOException {
+        BinaryMessageCompressionUtil.decompress(BinaryMessageConstants.COMPRESSION_DEFLATE, new byte[16],
+                Integer.MAX_VALUE, 1024);
+    }
+
+    private List<Event> createEvents(int count) {
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, String> arbitraryData = new HashMap<>();
+            arbitraryData.put("key" + i, "value" + i);
+            StringBuilder symbol = new StringBuilder("WSO2");
+            for (int j = 0; j < i * 3; j++) {
+                symbol.append('x');
+            }
+            events.add(new Event("org.wso2.esb.MediatorStatistics:1.0.0", 1000L + i,
+                    new Object[]{"127.0.0.1"}, new Object[]{(long) i, true},
+                    new Object[]{symbol.toString(), 12.5d * i, i, 1.5f, null}, arbitraryData));
+        }
+        return events;
+    }
+
+    private byte[] encodeLegacy(List<Event> events, String sessionId) throws IOException {
+        List<byte[]> eventBytes = new ArrayList<>();
+        int messageSize = 8 + sessionId.length();
+        for (Event event : events) {
+            int eventSize = 4 + event.getStreamId().length() + 8;
+            for (Object[] data : new Object[][]{event.getMetaData(), event.getCorrelationData(),
+                    event.getPayloadData()}) {
+                for (Object aData : data) {
+                    eventSize += getSize(aData);
+                }
+            }
+            for (Map.Entry<String, String> entry : event.getArbitraryDataMap().entrySet()) {
+                eventSize += 8 + entry.getKey().length() + entry.getValue().length();
+            }
+            messageSize += eventSize + 4;
+            ByteBuffer buffer = ByteBuffer.allocate(4 + eventSize);
+            buffer.putInt(eventSize);
+            buffer.putLong(event.getTimeStamp());
+            buffer.putInt(event.getStreamId().length());
+            buffer.put(event.getStreamId().getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
+            for (Object[] data : new Object[][]{event.getMetaData(), event.getCorrelationData(),
+                    event.getPayloadData()}) {
+                for (Object aData : data) {
+                    assignData(aData, buffer);
+                }
+            }
+            for (Map.Entry<String, String> entry : event.getArbitraryDataMap().entrySet()) {
+                assignData(entry.getKey(), buffer);
+                assignData(entry.getValue(), buffer);
+            }
+            eventBytes.add(buffer.array());
+        }
+        ByteBuffer message = ByteBuffer.allocate(messageSize + 5);
+        message.put((byte) 2);
+        message.putInt(messageSize);
+        message.putInt(sessionId.length());
+        message.put(sessionId.getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
+        message.putInt(events.size());
+        for (byte[] bytes : eventBytes) {
+            message.put(bytes);
+        }
+        return message.array();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test.binary;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryBufferPool;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventEncoder;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventLoop;
+import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies that the selector based binary publisher connects without blocking the publishing threads,
+ * matches acknowledgements to their messages across its connections, and fails the messages of a
+ * connection which cannot be established or does not acknowledge them in time.
+ */
+public class BinaryEventLoopTest {
+
+    private static final String SESSION_ID = "3c2a6f4e-8a5d-4c1e-9b8f-0e4f5b6c7d8e";
+
+    private static final int TIMEOUT_MS = 5000;
+
+    private ServerSocket serverSocket;
+
+    private BinaryBufferPool bufferPool;
+
+    private BinaryEventEncoder encoder;
+
+    private BinaryEventLoop eventLoop;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(0);
+        bufferPool = new BinaryBufferPool(128, 4, false);
+        encoder = new BinaryEventEncoder(bufferPool);
+    }
+
+    @AfterMethod
+    public void stop() throws IOException {
+        if (eventLoop != null) {
+            eventLoop.close();
+            eventLoop = null;
+        }
+        serverSocket.close();
+    }
+
+    @Test
+    public void testAcknowledgementsAcrossConnections() throws Exception {
+        eventLoop = new BinaryEventLoop(getAddress(), 2, TIMEOUT_MS, bufferPool);
+        CompletableFuture<Void> first = send();
+        Socket firstConnection = serverSocket.accept();
+        CompletableFuture<Void> second = send();
+        Socket secondConnection = serverSocket.accept();
+        try {
+            long firstSequence = readSequence(firstConnection);
+            long secondSequence = readSequence(secondConnection);
+            Assert.assertNotEquals(firstSequence, secondSequence);
+            acknowledge(secondConnection, secondSequence);
+            second.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            Assert.assertFalse(first.isDone(), "The first message should wait for its own acknowledgement");
+            acknowledge(firstConnection, firstSequence);
+            first.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            firstConnection.close();
+            secondConnection.close();
+        }
+    }
+
+    @Test
+    public void testUnacknowledgedMessageTimesOut() throws Exception {
+        eventLoop = new BinaryEventLoop(getAddress(), 1, 200, bufferPool);
+        CompletableFuture<Void> pending = send();
+        Socket connection = serverSocket.accept();
+        try {
+            readSequence(connection);
+            assertFailed(pending);
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testRefusedConnectionFailsMessages() throws Exception {
+        InetSocketAddress address = getAddress();
+        serverSocket.close();
+        eventLoop = new BinaryEventLoop(address, 1, TIMEOUT_MS, bufferPool);
+        // The connection is established by the selector thread, hence the send does not fail by itself.
+        CompletableFuture<Void> pending = send();
+        assertFailed(pending);
+    }
+
+    private CompletableFuture<Void> send() throws DataEndpointException {
+        long sequence = eventLoop.nextSequence();
+        ByteBuffer[] buffers;
+        try {
+            encoder.encodeSequencedPublishMessage(Collections.singletonList(new Event(
+                    "org.wso2.esb.MediatorStatistics:1.0.0", 1000L, new Object[]{"127.0.0.1"}, null,
+                    new Object[]{"WSO2", 10.5})), SESSION_ID, sequence);
+            buffers = encoder.detachBuffers();
+        } finally {
+            encoder.release();
+        }
+        return eventLoop.send(sequence, buffers);
+    }
+
+    private InetSocketAddress getAddress() {
+        return new InetSocketAddress("localhost", serverSocket.getLocalPort());
+    }
+
+    private void assertFailed(CompletableFuture<Void> acknowledgement) throws Exception {
+        try {
+            acknowledgement.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            Assert.fail("The pending message should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof DataEndpointException);
+        }
+    }
+
+    private long readSequence(Socket connection) throws IOException {
+        DataInputStream input = new DataInputStream(connection.getInputStream());
+        Assert.assertEquals(input.read(), BinaryMessageConstants.SEQUENCED_PUBLISH_MESSAGE);
+        long sequence = input.readLong();
+        int size = input.readInt();
+        input.readFully(new byte[size]);
+        return sequence;
+    }
+
+    private void acknowledge(Socket connection, long sequence) throws IOException {
+        DataOutputStream output = new DataOutputStream(connection.getOutputStream());
+        output.write(BinaryMessageConstants.SEQUENCED_OK_RESPONSE);
+        output.writeLong(sequence);
+        output.flush();
+    }
+}
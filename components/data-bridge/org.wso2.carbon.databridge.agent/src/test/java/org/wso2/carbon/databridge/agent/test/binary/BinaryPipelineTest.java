@@ -0,0 +1,177 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test.binary;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryBufferPool;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventEncoder;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryPipeline;
+import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies that the pipelined binary publisher matches acknowledgements to their messages in any order,
+ * and gives up on a connection which does not acknowledge its messages in time.
+ */
+public class BinaryPipelineTest {
+
+    private static final String SESSION_ID = "3c2a6f4e-8a5d-4c1e-9b8f-0e4f5b6c7d8e";
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private ServerSocket serverSocket;
+
+    private Socket client;
+
+    private Socket server;
+
+    private DataInputStream serverInput;
+
+    private DataOutputStream serverOutput;
+
+    private BinaryEventEncoder encoder;
+
+    @BeforeMethod
+    public void connect() throws IOException {
+        serverSocket = new ServerSocket(0);
+        client = new Socket("localhost", serverSocket.getLocalPort());
+        server = serverSocket.accept();
+        serverInput = new DataInputStream(server.getInputStream());
+        serverOutput = new DataOutputStream(server.getOutputStream());
+        encoder = new BinaryEventEncoder(new BinaryBufferPool(128, 4, false));
+    }
+
+    @AfterMethod
+    public void disconnect() throws IOException {
+        client.close();
+        server.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void testAcknowledgementsInAnyOrder() throws Exception {
+        BinaryPipeline pipeline = BinaryPipeline.getPipeline(client, 2);
+        CompletableFuture<Void> first = pipeline.send(createEvents(), SESSION_ID, encoder, TIMEOUT_MS);
+        CompletableFuture<Void> second = pipeline.send(createEvents(), SESSION_ID, encoder, TIMEOUT_MS);
+        long firstSequence = readSequence();
+        long secondSequence = readSequence();
+        acknowledge(secondSequence);
+        second.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        Assert.assertFalse(first.isDone(), "The first message should wait for its own acknowledgement");
+        acknowledge(firstSequence);
+        first.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        // The acknowledged messages should have freed the window.
+        CompletableFuture<Void> third = pipeline.send(createEvents(), SESSION_ID, encoder, TIMEOUT_MS);
+        CompletableFuture<Void> fourth = pipeline.send(createEvents(), SESSION_ID, encoder, TIMEOUT_MS);
+        acknowledge(readSequence());
+        acknowledge(readSequence());
+        third.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        fourth.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testEmptyMessageBetweenInFlightMessages() throws Exception {
+        BinaryPipeline pipeline = BinaryPipeline.getPipeline(client, 4);
+        CompletableFuture<Void> first = pipeline.send(createEvents(), SESSION_ID, encoder, TIMEOUT_MS);
+        CompletableFuture<Void> heartbeat = pipeline.send(Collections.<Event>emptyList(), SESSION_ID, encoder,
+                TIMEOUT_MS);
+        CompletableFuture<Void> second = pipeline.send(createEvents(), SESSION_ID, encoder, TIMEOUT_MS);
+        long firstSequence = readSequence();
+        long heartbeatSequence = readSequence();
+        long secondSequence = readSequence();
+        acknowledge(heartbeatSequence);
+        heartbeat.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        acknowledge(secondSequence);
+        acknowledge(firstSequence);
+        first.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        second.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        Assert.assertFalse(pipeline.isClosed());
+    }
+
+    @Test
+    public void testFullWindowTimesOut() throws Exception {
+        BinaryPipeline pipeline = BinaryPipeline.getPipeline(client, 1);
+        CompletableFuture<Void> pending = pipeline.send(createEvents(), SESSION_ID, encoder, TIMEOUT_MS);
+        readSequence();
+        try {
+            pipeline.send(createEvents(), SESSION_ID, encoder, 200);
+            Assert.fail("The send should time out while the window is full");
+        } catch (IOException expected) {
+            // The receiver did not acknowledge the pending message.
+        }
+        assertFailed(pending);
+        Assert.assertTrue(pipeline.isClosed(), "The pipeline should be closed after the timeout");
+        Assert.assertTrue(client.isClosed(), "The connection should be closed after the timeout");
+    }
+
+    @Test
+    public void testCancelledAcknowledgementClosesPipeline() throws Exception {
+        BinaryPipeline pipeline = BinaryPipeline.getPipeline(client, 2);
+        CompletableFuture<Void> first = pipeline.send(createEvents(), SESSION_ID, encoder, TIMEOUT_MS);
+        CompletableFuture<Void> second = pipeline.send(createEvents(), SESSION_ID, encoder, TIMEOUT_MS);
+        first.cancel(true);
+        assertFailed(second);
+        Assert.assertTrue(pipeline.isClosed());
+        Assert.assertNotSame(BinaryPipeline.getPipeline(client, 2), pipeline,
+                "A closed pipeline should not be handed out again");
+    }
+
+    private void assertFailed(CompletableFuture<Void> acknowledgement) throws Exception {
+        try {
+            acknowledgement.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            Assert.fail("The pending message should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof DataEndpointException);
+        }
+    }
+
+    private long readSequence() throws IOException {
+        Assert.assertEquals(serverInput.read(), BinaryMessageConstants.SEQUENCED_PUBLISH_MESSAGE);
+        long sequence = serverInput.readLong();
+        int size = serverInput.readInt();
+        serverInput.readFully(new byte[size]);
+        return sequence;
+    }
+
+    private void acknowledge(long sequence) throws IOException {
+        serverOutput.write(BinaryMessageConstants.SEQUENCED_OK_RESPONSE);
+        serverOutput.writeLong(sequence);
+        serverOutput.flush();
+    }
+
+    private List<Event> createEvents() {
+        return Collections.singletonList(new Event("org.wso2.esb.MediatorStatistics:1.0.0", 1000L,
+                new Object[]{"127.0.0.1"}, null, new Object[]{"WSO2", 10.5}));
+    }
+}
@@ -38,6 +38,7 @@ import org.wso2.carbon.databridge.receiver.binary.internal.BinaryDataReceiver;
 import java.io.IOException;
 import java.net.SocketException;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -49,6 +50,7 @@ public class BinaryTestServer {
     BinaryDataReceiver binaryDataReceiver;
     InMemoryStreamDefinitionStore streamDefinitionStore;
     AtomicInteger numberOfEventsReceived;
+    List<Event> receivedEvents = new CopyOnWriteArrayList<>();
     RestarterThread restarterThread;
 
     public BinaryTestServer() {
@@ -125,6 +127,7 @@ public class BinaryTestServer {
             @Override
             public void receive(List<Event> eventList, Credentials credentials) {
                 numberOfEventsReceived.addAndGet(eventList.size());
+                receivedEvents.addAll(eventList);
                 log.info("Received events : " + numberOfEventsReceived);
             }
 
@@ -144,8 +147,13 @@ public class BinaryTestServer {
         }
     }
 
+    public List<Event> getReceivedEvents() {
+        return receivedEvents;
+    }
+
     public void resetReceivedEvents() {
         numberOfEventsReceived.set(0);
+        receivedEvents.clear();
     }
 
     public void stop() {
@@ -0,0 +1,241 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test.binary;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.AgentHolder;
+import org.wso2.carbon.databridge.agent.DataPublisher;
+import org.wso2.carbon.databridge.agent.EventWriter;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
+import org.wso2.carbon.databridge.agent.endpoint.loadbalance.ConsistentHashStrategy;
+import org.wso2.carbon.databridge.agent.test.DataPublisherTestUtil;
+import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeCommonsUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Verifies that the events written attribute by attribute with an event writer are received as the same
+ * events published with {@link DataPublisher#publish(Event)}, including when several event queue consumers
+ * route them by key.
+ */
+public class EventWriterBinaryTest {
+    private static final String STREAM_NAME = "org.wso2.esb.MediatorStatistics";
+    private static final String VERSION = "1.0.0";
+    private static final String STREAM_ID = DataBridgeCommonsUtils.generateStreamId(STREAM_NAME, VERSION);
+    private static final int PORT = 9643;
+    private static final int SECURE_PORT = 9743;
+    private static final long MAX_WAIT_MS = 30000;
+    private String agentConfigFileName = "data.agent.config.yaml";
+
+    private static final String STREAM_DEFN = "{" +
+            "  'name':'" + STREAM_NAME + "'," +
+            "  'version':'" + VERSION + "'," +
+            "  'nickName': 'Stock Quote Information'," +
+            "  'description': 'Some Desc'," +
+            "  'tags':['foo', 'bar']," +
+            "  'metaData':[" +
+            "          {'name':'ipAdd','type':'STRING'}" +
+            "  ]," +
+            "  'correlationData':[" +
+            "          {'name':'correlationId','type':'LONG'}" +
+            "  ]," +
+            "  'payloadData':[" +
+            "          {'name':'symbol','type':'STRING'}," +
+            "          {'name':'price','type':'DOUBLE'}," +
+            "          {'name':'volume','type':'INT'}," +
+            "          {'name':'ratio','type':'FLOAT'}," +
+            "          {'name':'active','type':'BOOL'}" +
+            "  ]" +
+            "}";
+
+    private BinaryTestServer testServer;
+
+    private DataPublisher dataPublisher;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        DataPublisherTestUtil.setKeyStoreParams();
+        DataPublisherTestUtil.setTrustStoreParams();
+        AgentHolder.setConfigPath(DataPublisherTestUtil.getDataAgentConfigPath(agentConfigFileName));
+        testServer = new BinaryTestServer();
+        testServer.start(PORT, SECURE_PORT);
+        testServer.addStreamDefinition(STREAM_DEFN);
+        dataPublisher = new DataPublisher("Binary", "tcp://" + DataPublisherTestUtil.LOCAL_HOST + ":" + PORT,
+                "ssl://" + DataPublisherTestUtil.LOCAL_HOST + ":" + SECURE_PORT, "admin", "admin");
+    }
+
+    @AfterMethod
+    public void reset() {
+        testServer.resetReceivedEvents();
+    }
+
+    @AfterClass
+    public void stopServer() throws Exception {
+        dataPublisher.shutdown();
+        testServer.stop();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testSectionsOutOfOrderAreRejected() {
+        dataPublisher.stream(STREAM_ID).beginEvent()
+                .payloadData().putString("WSO2")
+                .metaData();
+    }
+
+    @Test
+    public void testUncommittedEventIsDiscarded() throws Exception {
+        dataPublisher.stream(STREAM_ID).beginEvent(1000L)
+                .metaData().putString("10.0.0.1")
+                .correlationData().putLong(1L)
+                .payloadData().putString("IBM");
+        write(dataPublisher.stream(STREAM_ID), 0).commit();
+        List<Event> receivedEvents = awaitEvents(1);
+        Assert.assertEquals(receivedEvents.size(), 1);
+        assertEvent(receivedEvents.get(0), 0);
+    }
+
+    @Test
+    public void testWrittenEventsMatchPublishedEvents() throws Exception {
+        int numberOfEvents = 100;
+        long publishedEvents = dataPublisher.getMetrics().getPublishedEvents();
+        for (int i = 0; i < numberOfEvents; i++) {
+            dataPublisher.publish(createEvent(i));
+        }
+        List<Event> expectedEvents = awaitEvents(numberOfEvents);
+        Assert.assertEquals(expectedEvents.size(), numberOfEvents);
+        testServer.resetReceivedEvents();
+
+        for (int i = 0; i < numberOfEvents; i++) {
+            write(dataPublisher.stream(STREAM_ID), i).commit();
+        }
+        List<Event> writtenEvents = awaitEvents(numberOfEvents);
+        Assert.assertEquals(writtenEvents, expectedEvents);
+        for (int i = 0; i < numberOfEvents; i++) {
+            assertEvent(writtenEvents.get(i), i);
+        }
+        Assert.assertEquals(dataPublisher.getMetrics().getPublishedEvents(), publishedEvents + 2 * numberOfEvents);
+    }
+
+    @Test
+    public void testWrittenEventsAreRoutedByKeyAcrossConsumers() throws Exception {
+        AgentConfiguration agentConfiguration = AgentHolder.getInstance().getDataEndpointAgent("Binary")
+                .getAgentConfiguration();
+        int queueConsumerCount = agentConfiguration.getQueueConsumerCount();
+        String loadBalancingStrategy = agentConfiguration.getLoadBalancingStrategy();
+        String routingKey = agentConfiguration.getRoutingKey();
+        agentConfiguration.setQueueConsumerCount(2);
+        agentConfiguration.setLoadBalancingStrategy(DataEndpointConstants.CONSISTENT_HASH_LB_STRATEGY);
+        agentConfiguration.setRoutingKey(ConsistentHashStrategy.CORRELATION_DATA_KEY);
+        DataPublisher keyRoutedPublisher;
+        try {
+            // Both receiver URLs point to the same test server, hence each consumer sends to its own endpoint.
+            keyRoutedPublisher = new DataPublisher("Binary",
+                    "{tcp://" + DataPublisherTestUtil.LOCAL_HOST + ":" + PORT + ",tcp://127.0.0.1:" + PORT + "}",
+                    "{ssl://" + DataPublisherTestUtil.LOCAL_HOST + ":" + SECURE_PORT + ",ssl://" +
+                            DataPublisherTestUtil.LOCAL_HOST + ":" + SECURE_PORT + "}", "admin", "admin");
+        } finally {
+            agentConfiguration.setQueueConsumerCount(queueConsumerCount);
+            agentConfiguration.setLoadBalancingStrategy(loadBalancingStrategy);
+            agentConfiguration.setRoutingKey(routingKey);
+        }
+        int numberOfEvents = 1000;
+        try {
+            for (int i = 0; i < numberOfEvents; i++) {
+                write(keyRoutedPublisher.stream(STREAM_ID), i).commit();
+            }
+            List<Event> writtenEvents = awaitEvents(numberOfEvents);
+            Assert.assertEquals(writtenEvents.size(), numberOfEvents);
+            for (int i = 0; i < numberOfEvents; i++) {
+                assertEvent(writtenEvents.get(i), i);
+            }
+        } finally {
+            keyRoutedPublisher.shutdown();
+        }
+    }
+
+    @Test
+    public void testEventsWrittenAfterShutdownAreDropped() throws Exception {
+        DataPublisher shutDownPublisher = new DataPublisher("Binary",
+                "tcp://" + DataPublisherTestUtil.LOCAL_HOST + ":" + PORT,
+                "ssl://" + DataPublisherTestUtil.LOCAL_HOST + ":" + SECURE_PORT, "admin", "admin");
+        shutDownPublisher.shutdown();
+        Assert.assertFalse(write(shutDownPublisher.stream(STREAM_ID), 0).tryCommit());
+        write(shutDownPublisher.stream(STREAM_ID), 1).commit();
+        Assert.assertEquals(shutDownPublisher.getMetrics().getPublishedEvents(), 0);
+        Assert.assertEquals(shutDownPublisher.getMetrics().getDroppedEvents(), 2);
+    }
+
+    private EventWriter write(EventWriter eventWriter, int i) {
+        eventWriter.beginEvent(1000L + i)
+                .metaData().putString("127.0.0.1")
+                .correlationData().putLong(i)
+                .payloadData().putString("WSO2").putDouble(12.5d * i).putInt(i).putFloat(1.5f).putBoolean(i % 2 == 0);
+        if (i % 3 != 0) {
+            eventWriter.putArbitraryData("key", "value" + i);
+        }
+        return eventWriter;
+    }
+
+    private Event createEvent(int i) {
+        Map<String, String> arbitraryData = null;
+        if (i % 3 != 0) {
+            arbitraryData = new HashMap<>();
+            arbitraryData.put("key", "value" + i);
+        }
+        return new Event(STREAM_ID, 1000L + i, new Object[]{"127.0.0.1"}, new Object[]{(long) i},
+                new Object[]{"WSO2", 12.5d * i, i, 1.5f, i % 2 == 0}, arbitraryData);
+    }
+
+    private void assertEvent(Event event, int i) {
+        Event expected = createEvent(i);
+        Assert.assertEquals(event.getStreamId(), expected.getStreamId());
+        Assert.assertEquals(event.getTimeStamp(), expected.getTimeStamp());
+        Assert.assertEquals(event.getMetaData(), expected.getMetaData());
+        Assert.assertEquals(event.getCorrelationData(), expected.getCorrelationData());
+        Assert.assertEquals(event.getPayloadData(), expected.getPayloadData());
+    }
+
+    private List<Event> awaitEvents(int count) throws InterruptedException {
+        long stopTime = System.currentTimeMillis() + MAX_WAIT_MS;
+        while (testServer.getNumberOfEventsReceived() < count && System.currentTimeMillis() < stopTime) {
+            Thread.sleep(100);
+        }
+        // Wait a little longer to receive any unexpected event.
+        Thread.sleep(500);
+        // Batches may be received out of order, while the time stamps of the events are in order.
+        List<Event> receivedEvents = new ArrayList<>(testServer.getReceivedEvents());
+        Collections.sort(receivedEvents, new Comparator<Event>() {
+            @Override
+            public int compare(Event first, Event second) {
+                return Long.compare(first.getTimeStamp(), second.getTimeStamp());
+            }
+        });
+        return receivedEvents;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test.binary;
+
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryDataEndpoint;
+import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.exception.SessionTimeoutException;
+import org.wso2.carbon.databridge.commons.exception.UndefinedEventTypeException;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary data endpoint which fails every batch sent to the receiver URLs registered by the test, while it
+ * still logs in and answers heartbeats, so that its batches have to be resent.
+ */
+public class FailingBinaryDataEndpoint extends BinaryDataEndpoint {
+
+    private static final Set<String> FAILING_RECEIVER_URLS = ConcurrentHashMap.newKeySet();
+
+    public static void setFailing(String receiverURL, boolean isFailing) {
+        if (isFailing) {
+            FAILING_RECEIVER_URLS.add(receiverURL);
+        } else {
+            FAILING_RECEIVER_URLS.remove(receiverURL);
+        }
+    }
+
+    @Override
+    protected void send(Object client, List<Event> events) throws DataEndpointException,
+            SessionTimeoutException, UndefinedEventTypeException {
+        if (!events.isEmpty() && FAILING_RECEIVER_URLS.contains(getDataEndpointConfiguration().getReceiverURL())) {
+            throw new DataEndpointException("Failing " + events.size() + " events sent to " +
+                    getDataEndpointConfiguration().getReceiverURL());
+        }
+        super.send(client, events);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test.binary;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.agent.AgentHolder;
+import org.wso2.carbon.databridge.agent.DataPublisher;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
+import org.wso2.carbon.databridge.agent.endpoint.DeadLetterCallback;
+import org.wso2.carbon.databridge.agent.test.DataPublisherTestUtil;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeCommonsUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies that the batches which fail on an endpoint are resent to the other endpoints of the group, and
+ * are given to the dead letter callback once they have failed on more endpoints than the max resend
+ * attempts allow, including when their events were requeued in between.
+ */
+public class ResendBinaryTest {
+    private static final String STREAM_NAME = "org.wso2.esb.MediatorStatistics";
+    private static final String VERSION = "1.0.0";
+    private static final String AGENT_TYPE = "FailingBinary";
+    private static final int PORT = 9631;
+    private static final int SECURE_PORT = 9731;
+    private static final long MAX_WAIT_MS = 30000;
+    private String agentConfigFileName = "data.agent.config.yaml";
+
+    private static final String STREAM_DEFN = "{" +
+            "  'name':'" + STREAM_NAME + "'," +
+            "  'version':'" + VERSION + "'," +
+            "  'nickName': 'Stock Quote Information'," +
+            "  'description': 'Some Desc'," +
+            "  'tags':['foo', 'bar']," +
+            "  'metaData':[" +
+            "          {'name':'ipAdd','type':'STRING'}" +
+            "  ]," +
+            "  'payloadData':[" +
+            "          {'name':'symbol','type':'STRING'}," +
+            "          {'name':'price','type':'DOUBLE'}," +
+            "          {'name':'volume','type':'INT'}," +
+            "          {'name':'max','type':'DOUBLE'}," +
+            "          {'name':'min','type':'Double'}" +
+            "  ]" +
+            "}";
+
+    private BinaryTestServer testServer;
+
+    // Both receiver URLs point to the same test server, only the endpoints of the first one fail.
+    private final String failingReceiverURL = "tcp://" + DataPublisherTestUtil.LOCAL_HOST + ":" + PORT;
+
+    private final String receiverURL = "tcp://127.0.0.1:" + PORT;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        DataPublisherTestUtil.setKeyStoreParams();
+        DataPublisherTestUtil.setTrustStoreParams();
+        AgentHolder.setConfigPath(DataPublisherTestUtil.getDataAgentConfigPath(agentConfigFileName));
+        testServer = new BinaryTestServer();
+        testServer.start(PORT, SECURE_PORT);
+        testServer.addStreamDefinition(STREAM_DEFN);
+    }
+
+    @AfterMethod
+    public void reset() throws Exception {
+        FailingBinaryDataEndpoint.setFailing(failingReceiverURL, false);
+        FailingBinaryDataEndpoint.setFailing(receiverURL, false);
+        getAgentConfiguration().setMaxResendAttempts(0);
+        testServer.resetReceivedEvents();
+    }
+
+    @AfterClass
+    public void stopServer() throws Exception {
+        testServer.stop();
+        AgentHolder.getInstance().getDataEndpointAgent(AGENT_TYPE).shutDown();
+    }
+
+    @Test
+    public void testFailedBatchesAreResent() throws Exception {
+        FailingBinaryDataEndpoint.setFailing(failingReceiverURL, true);
+        CountingDeadLetterCallback deadLetterCallback = new CountingDeadLetterCallback();
+        DataPublisher dataPublisher = createDataPublisher();
+        dataPublisher.setDeadLetterCallback(deadLetterCallback);
+        int numberOfEventsSent = 1000;
+        publish(dataPublisher, numberOfEventsSent);
+        long stopTime = System.currentTimeMillis() + MAX_WAIT_MS;
+        while (testServer.getNumberOfEventsReceived() < numberOfEventsSent && System.currentTimeMillis() < stopTime) {
+            Thread.sleep(100);
+        }
+        dataPublisher.shutdown();
+        Assert.assertEquals(testServer.getNumberOfEventsReceived(), numberOfEventsSent);
+        Assert.assertEquals(deadLetterCallback.deadLetteredEvents.get(), 0);
+    }
+
+    @Test
+    public void testBatchesFailingEverywhereAreDeadLettered() throws Exception {
+        FailingBinaryDataEndpoint.setFailing(failingReceiverURL, true);
+        FailingBinaryDataEndpoint.setFailing(receiverURL, true);
+        getAgentConfiguration().setMaxResendAttempts(1);
+        CountingDeadLetterCallback deadLetterCallback = new CountingDeadLetterCallback();
+        DataPublisher dataPublisher = createDataPublisher();
+        dataPublisher.setDeadLetterCallback(deadLetterCallback);
+        int numberOfEventsSent = 1000;
+        publish(dataPublisher, numberOfEventsSent);
+        long stopTime = System.currentTimeMillis() + MAX_WAIT_MS;
+        while (deadLetterCallback.deadLetteredEvents.get() < numberOfEventsSent &&
+                System.currentTimeMillis() < stopTime) {
+            Thread.sleep(100);
+        }
+        dataPublisher.shutdown();
+        Assert.assertEquals(deadLetterCallback.deadLetteredEvents.get(), numberOfEventsSent);
+        Assert.assertNotNull(deadLetterCallback.lastReason);
+        Assert.assertEquals(testServer.getNumberOfEventsReceived(), 0);
+    }
+
+    private DataPublisher createDataPublisher() throws Exception {
+        String authHost = "ssl://" + DataPublisherTestUtil.LOCAL_HOST + ":" + SECURE_PORT;
+        return new DataPublisher(AGENT_TYPE, "{" + failingReceiverURL + "," + receiverURL + "}",
+                "{" + authHost + "," + authHost + "}", "admin", "admin");
+    }
+
+    private AgentConfiguration getAgentConfiguration() throws Exception {
+        return AgentHolder.getInstance().getDataEndpointAgent(AGENT_TYPE).getAgentConfiguration();
+    }
+
+    private void publish(DataPublisher dataPublisher, int numberOfEvents) {
+        for (int i = 0; i < numberOfEvents; i++) {
+            Event event = new Event();
+            event.setStreamId(DataBridgeCommonsUtils.generateStreamId(STREAM_NAME, VERSION));
+            event.setMetaData(new Object[]{"127.0.0.1"});
+            event.setPayloadData(new Object[]{"WSO2", 123.4, i, 12.4, 1.3});
+            dataPublisher.publish(event);
+        }
+    }
+
+    /**
+     * Dead letter callback counting the events it is given.
+     */
+    private static class CountingDeadLetterCallback implements DeadLetterCallback {
+
+        private final AtomicInteger deadLetteredEvents = new AtomicInteger();
+
+        private volatile String lastReason;
+
+        @Override
+        public void onDeadLetter(List<Event> events, String reason) {
+            lastReason = reason;
+            deadLetteredEvents.addAndGet(events.size());
+        }
+    }
+}
@@ -23,10 +23,12 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 import org.wso2.carbon.databridge.agent.AgentHolder;
 import org.wso2.carbon.databridge.agent.DataPublisher;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAgentConfigurationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAuthenticationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointConfigurationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
+import org.wso2.carbon.databridge.agent.metrics.MetricsRegistry;
 import org.wso2.carbon.databridge.agent.test.DataPublisherTestUtil;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.exception.MalformedStreamDefinitionException;
@@ -35,7 +37,12 @@ import org.wso2.carbon.databridge.commons.utils.DataBridgeCommonsUtils;
 import org.wso2.carbon.databridge.core.exception.DataBridgeException;
 import org.wso2.carbon.databridge.core.exception.StreamDefinitionStoreException;
 
+import java.lang.management.ManagementFactory;
 import java.net.SocketException;
+import java.util.Set;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * OneEndPointDPSyncThriftTest.
@@ -43,6 +50,7 @@ import java.net.SocketException;
 public class OneEndPointDPSyncThriftTest {
     private static final String STREAM_NAME = "org.wso2.esb.MediatorStatistics";
     private static final String VERSION = "1.0.0";
+    private static final long MAX_WAIT_MS = 30000;
     private ThriftTestServer thriftTestServer;
     private String agentConfigFileName = "sync.data.agent.config.yaml";
 
@@ -87,6 +95,85 @@ public class OneEndPointDPSyncThriftTest {
 
     }
 
+    @Test
+    public void testSyncBatching() throws DataEndpointAuthenticationException,
+            DataEndpointAgentConfigurationException, TransportException, DataEndpointException,
+            DataEndpointConfigurationException, MalformedStreamDefinitionException, DataBridgeException,
+            StreamDefinitionStoreException, InterruptedException, JMException {
+        startServer(7664);
+        AgentHolder.setConfigPath(DataPublisherTestUtil.getDataAgentConfigPath(agentConfigFileName));
+        AgentConfiguration agentConfiguration = AgentHolder.getInstance().getDataEndpointAgent("Thrift")
+                .getAgentConfiguration();
+        int corePoolSize = agentConfiguration.getCorePoolSize();
+        int maxPoolSize = agentConfiguration.getMaxPoolSize();
+        agentConfiguration.setSyncBatching(true);
+        // Batches form only while all the dispatch permits are in use, hence a single permit is shared by all
+        // the publisher threads.
+        agentConfiguration.setCorePoolSize(1);
+        agentConfiguration.setMaxPoolSize(1);
+        agentConfiguration.setJmxMetricsEnabled(true);
+        try {
+            String hostName = DataPublisherTestUtil.LOCAL_HOST;
+            final DataPublisher dataPublisher = new DataPublisher("Thrift", "tcp://" + hostName + ":7664",
+                    "ssl://" + hostName + ":7764", "admin", "admin");
+            final Event event = new Event();
+            event.setStreamId(DataBridgeCommonsUtils.generateStreamId(STREAM_NAME, VERSION));
+            event.setMetaData(new Object[]{"127.0.0.1"});
+            event.setCorrelationData(null);
+            event.setPayloadData(new Object[]{"WSO2", 123.4, 2, 12.4, 1.3});
+
+            int numberOfThreads = 8;
+            final int numberOfEventsPerThread = 500;
+            Thread[] publishers = new Thread[numberOfThreads];
+            for (int i = 0; i < numberOfThreads; i++) {
+                publishers[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < numberOfEventsPerThread; j++) {
+                            dataPublisher.publish(event);
+                        }
+                    }
+                });
+                publishers[i].start();
+            }
+            for (Thread publisher : publishers) {
+                publisher.join();
+            }
+            int numberOfEvents = numberOfThreads * numberOfEventsPerThread;
+            ObjectName endpointMetrics = getEndpointMetricsName(7664);
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(mBeanServer.getAttribute(endpointMetrics, "SentEvents"), (long) numberOfEvents);
+            Assert.assertTrue((Long) mBeanServer.getAttribute(endpointMetrics, "SentBatches") < numberOfEvents);
+            Assert.assertTrue((Long) mBeanServer.getAttribute(endpointMetrics, "BatchEventsMax") > 1);
+            // The receiver dispatches the events it has acknowledged asynchronously.
+            long stopTime = System.currentTimeMillis() + MAX_WAIT_MS;
+            while (thriftTestServer.getNumberOfEventsReceived() < numberOfEvents
+                    && System.currentTimeMillis() < stopTime) {
+                Thread.sleep(100);
+            }
+            Assert.assertEquals(thriftTestServer.getNumberOfEventsReceived(), numberOfEvents);
+            dataPublisher.shutdown();
+        } finally {
+            agentConfiguration.setSyncBatching(false);
+            agentConfiguration.setCorePoolSize(corePoolSize);
+            agentConfiguration.setMaxPoolSize(maxPoolSize);
+            agentConfiguration.setJmxMetricsEnabled(false);
+        }
+        thriftTestServer.resetReceivedEvents();
+        thriftTestServer.stop();
+    }
+
+    private static ObjectName getEndpointMetricsName(int port) throws JMException {
+        Set<ObjectName> names = ManagementFactory.getPlatformMBeanServer().queryNames(
+                new ObjectName(MetricsRegistry.DOMAIN + ":type=DataEndpoint,*"), null);
+        for (ObjectName name : names) {
+            if (name.getKeyProperty("name").contains(":" + port)) {
+                return name;
+            }
+        }
+        throw new AssertionError("Metrics of the endpoint on port " + port + " are not registered");
+    }
+
     @Test
     public void testOneDataEndpoint() throws DataEndpointAuthenticationException,
             DataEndpointAgentConfigurationException, TransportException, DataEndpointException,
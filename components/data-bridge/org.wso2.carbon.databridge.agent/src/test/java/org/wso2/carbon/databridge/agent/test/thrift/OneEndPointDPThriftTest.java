@@ -23,6 +23,7 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 import org.wso2.carbon.databridge.agent.AgentHolder;
 import org.wso2.carbon.databridge.agent.DataPublisher;
+import org.wso2.carbon.databridge.agent.EventSubscriber;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAgentConfigurationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAuthenticationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointConfigurationException;
@@ -36,6 +37,15 @@ import org.wso2.carbon.databridge.core.exception.DataBridgeException;
 import org.wso2.carbon.databridge.core.exception.StreamDefinitionStoreException;
 
 import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * OneEndPointDPThriftTest.
@@ -43,6 +53,7 @@ import java.net.SocketException;
 public class OneEndPointDPThriftTest {
     private static final String STREAM_NAME = "org.wso2.esb.MediatorStatistics";
     private static final String VERSION = "1.0.0";
+    private static final long MAX_WAIT_MS = 30000;
     private ThriftTestServer thriftTestServer;
     private String agentConfigFileName = "data.agent.config.yaml";
 
@@ -150,6 +161,94 @@ public class OneEndPointDPThriftTest {
         thriftTestServer.stop();
     }
 
+    @Test
+    public void testPublishAsync() throws DataEndpointAuthenticationException,
+            DataEndpointAgentConfigurationException, TransportException, DataEndpointException,
+            DataEndpointConfigurationException, MalformedStreamDefinitionException, DataBridgeException,
+            StreamDefinitionStoreException, InterruptedException, ExecutionException, TimeoutException {
+        startServer(7631);
+        AgentHolder.setConfigPath(DataPublisherTestUtil.getDataAgentConfigPath(agentConfigFileName));
+        String hostName = DataPublisherTestUtil.LOCAL_HOST;
+        DataPublisher dataPublisher = new DataPublisher("Thrift", "tcp://" + hostName + ":7631",
+                "ssl://" + hostName + ":7731", "admin", "admin");
+        Event event = new Event();
+        event.setStreamId(DataBridgeCommonsUtils.generateStreamId(STREAM_NAME, VERSION));
+        event.setMetaData(new Object[]{"127.0.0.1"});
+        event.setCorrelationData(null);
+        event.setPayloadData(new Object[]{"WSO2", 123.4, 2, 12.4, 1.3});
+
+        int numberOfEventsSent = 1000;
+        List<CompletableFuture<Void>> acknowledgements = new ArrayList<>(numberOfEventsSent);
+        for (int i = 0; i < numberOfEventsSent; i++) {
+            acknowledgements.add(dataPublisher.publishAsync(event));
+        }
+        CompletableFuture.allOf(acknowledgements.toArray(new CompletableFuture[numberOfEventsSent]))
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(thriftTestServer.getNumberOfEventsReceived(), numberOfEventsSent,
+                "All the events should have been received once they are acknowledged");
+        dataPublisher.shutdown();
+
+        CompletableFuture<Void> acknowledgement = dataPublisher.publishAsync(event);
+        Assert.assertTrue(acknowledgement.isCompletedExceptionally(),
+                "An event published after the shutdown should fail");
+        thriftTestServer.resetReceivedEvents();
+        thriftTestServer.stop();
+    }
+
+    @Test
+    public void testEventSubscriber() throws DataEndpointAuthenticationException,
+            DataEndpointAgentConfigurationException, TransportException, DataEndpointException,
+            DataEndpointConfigurationException, MalformedStreamDefinitionException, DataBridgeException,
+            StreamDefinitionStoreException, InterruptedException {
+        startServer(7633);
+        AgentHolder.setConfigPath(DataPublisherTestUtil.getDataAgentConfigPath(agentConfigFileName));
+        String hostName = DataPublisherTestUtil.LOCAL_HOST;
+        DataPublisher dataPublisher = new DataPublisher("Thrift", "tcp://" + hostName + ":7633",
+                "ssl://" + hostName + ":7733", "admin", "admin");
+        final Event event = new Event();
+        event.setStreamId(DataBridgeCommonsUtils.generateStreamId(STREAM_NAME, VERSION));
+        event.setMetaData(new Object[]{"127.0.0.1"});
+        event.setCorrelationData(null);
+        event.setPayloadData(new Object[]{"WSO2", 123.4, 2, 12.4, 1.3});
+
+        final int numberOfEventsSent = 10000;
+        final int maxDemand = 64;
+        final EventSubscriber subscriber = dataPublisher.createSubscriber(maxDemand);
+        final AtomicInteger emitted = new AtomicInteger();
+        final AtomicLong maxOutstandingDemand = new AtomicLong();
+        final CountDownLatch completed = new CountDownLatch(1);
+        subscriber.onSubscribe(new EventSubscriber.Subscription() {
+            @Override
+            public void request(long n) {
+                maxOutstandingDemand.accumulateAndGet(subscriber.getOutstandingDemand(), Math::max);
+                for (long i = 0; i < n && emitted.get() < numberOfEventsSent; i++) {
+                    emitted.incrementAndGet();
+                    subscriber.onNext(event);
+                }
+                if (emitted.get() == numberOfEventsSent && completed.getCount() > 0) {
+                    subscriber.onComplete();
+                    completed.countDown();
+                }
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+
+        Assert.assertTrue(completed.await(MAX_WAIT_MS, TimeUnit.MILLISECONDS), "Upstream should be completed");
+        long stopTime = System.currentTimeMillis() + MAX_WAIT_MS;
+        while (thriftTestServer.getNumberOfEventsReceived() < numberOfEventsSent
+                && System.currentTimeMillis() < stopTime) {
+            Thread.sleep(100);
+        }
+        dataPublisher.shutdown();
+        Assert.assertEquals(thriftTestServer.getNumberOfEventsReceived(), numberOfEventsSent);
+        Assert.assertTrue(maxOutstandingDemand.get() <= maxDemand, "Demand should not exceed the max demand");
+        thriftTestServer.resetReceivedEvents();
+        thriftTestServer.stop();
+    }
+
     @Test
     public void testInvalidAuthenticationURLs() throws DataEndpointAuthenticationException,
             DataEndpointAgentConfigurationException, TransportException, DataEndpointException,
@@ -0,0 +1,84 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Events of the shapes the benchmarks are parameterized with.
+ * <ul>
+ * <li>small: two numeric payload attributes.</li>
+ * <li>mixed: a meta string, a correlation long and a payload of each attribute type.</li>
+ * <li>wide: four meta strings, 32 payload attributes of all types and two arbitrary data entries.</li>
+ * </ul>
+ */
+public final class BenchmarkEvents {
+
+    public static final String SMALL = "small";
+
+    public static final String MIXED = "mixed";
+
+    public static final String WIDE = "wide";
+
+    private static final String STREAM_ID = "org.wso2.benchmark.stream:1.0.0";
+
+    private BenchmarkEvents() {
+    }
+
+    public static List<Event> createEvents(String shape, int count) {
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(createEvent(shape, i));
+        }
+        return events;
+    }
+
+    public static Event createEvent(String shape, int index) {
+        long timeStamp = 1500000000000L + index;
+        if (SMALL.equals(shape)) {
+            return new Event(STREAM_ID, timeStamp, null, null, new Object[]{index, (long) index});
+        } else if (MIXED.equals(shape)) {
+            return new Event(STREAM_ID, timeStamp, new Object[]{"host-" + (index % 16)}, new Object[]{(long) index},
+                    new Object[]{index, (long) index, index * 0.5f, index * 0.25, index % 2 == 0,
+                            "payload-" + index});
+        } else if (WIDE.equals(shape)) {
+            Object[] metaData = new Object[4];
+            for (int i = 0; i < metaData.length; i++) {
+                metaData[i] = "meta-" + i + "-" + index;
+            }
+            Object[] payloadData = new Object[32];
+            for (int i = 0; i < payloadData.length; i += 4) {
+                payloadData[i] = index + i;
+                payloadData[i + 1] = (long) index * i;
+                payloadData[i + 2] = index * 0.25 + i;
+                payloadData[i + 3] = "attribute-" + i + "-" + index;
+            }
+            Map<String, String> arbitraryData = new HashMap<>();
+            arbitraryData.put("source", "benchmark");
+            arbitraryData.put("index", String.valueOf(index));
+            return new Event(STREAM_ID, timeStamp, metaData, null, payloadData, arbitraryData);
+        }
+        throw new IllegalArgumentException("Unknown event shape " + shape + ", expected one of " + SMALL + ", " +
+                MIXED + " or " + WIDE);
+    }
+}
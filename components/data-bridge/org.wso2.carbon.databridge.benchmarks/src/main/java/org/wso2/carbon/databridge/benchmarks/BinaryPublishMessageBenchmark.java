@@ -0,0 +1,103 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryBufferPool;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventEncoder;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and writing a binary publish message of a batch to a socket which discards what is written, hence
+ * measuring the serialization cost without the network.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinaryPublishMessageBenchmark {
+
+    private static final String SESSION_ID = "c5a5ea0a-1b1c-4f7e-9a3a-4c2b9e0d8f11";
+
+    @Param({BenchmarkEvents.SMALL, BenchmarkEvents.MIXED, BenchmarkEvents.WIDE})
+    public String eventShape;
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    @Param({"true", "false"})
+    public boolean directBuffers;
+
+    private List<Event> events;
+
+    private Socket socket;
+
+    private BinaryEventEncoder encoder;
+
+    @Setup
+    public void setup() {
+        events = BenchmarkEvents.createEvents(eventShape, batchSize);
+        socket = new NullSocket();
+        encoder = new BinaryEventEncoder(new BinaryBufferPool(65536, 16, directBuffers));
+    }
+
+    @Benchmark
+    public void sendBinaryPublishMessage() throws IOException {
+        BinaryEventSender.sendBinaryPublishMessage(socket, events, SESSION_ID, encoder);
+    }
+
+    /**
+     * Unconnected socket whose output stream discards what is written.
+     */
+    private static final class NullSocket extends Socket {
+
+        private final OutputStream outputStream = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        @Override
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.databridge.agent.DataEndpointAgent;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
+import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpointGroup;
+import org.wso2.carbon.databridge.agent.exception.EventQueueFullException;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing into the event queue of a load balanced endpoint group from several producer threads, with
+ * endpoints which discard the batches. An event which finds the queue full is not retried, and is reported
+ * in the queueFull counter along with the score. Run with -t to change the number of producer threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class EventQueueBenchmark {
+
+    private static final long ENDPOINT_ACTIVATION_TIMEOUT_MS = 10000;
+
+    @Param({BenchmarkEvents.SMALL, BenchmarkEvents.WIDE})
+    public String eventShape;
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    @Param({"1", "2"})
+    public int endpointCount;
+
+    @Param({"blocking", "yielding"})
+    public String queueWaitStrategy;
+
+    private DataEndpointAgent dataEndpointAgent;
+
+    private DataEndpointGroup dataEndpointGroup;
+
+    private Event event;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        AgentConfiguration agentConfiguration = new AgentConfiguration("Null", NullDataEndpoint.class.getName());
+        agentConfiguration.setBatchSize(batchSize);
+        agentConfiguration.setQueueWaitStrategy(queueWaitStrategy);
+        agentConfiguration.setQueueConsumerCount(endpointCount);
+        // The endpoints have no receiver to be checked by the reconnection task.
+        agentConfiguration.setReconnectionInterval((int) TimeUnit.HOURS.toSeconds(1));
+        dataEndpointAgent = new DataEndpointAgent(agentConfiguration);
+        dataEndpointGroup = new DataEndpointGroup(DataEndpointGroup.HAType.LOADBALANCE, dataEndpointAgent,
+                endpointCount);
+        List<DataEndpoint> dataEndpoints = new ArrayList<>();
+        for (int i = 0; i < endpointCount; i++) {
+            DataEndpoint dataEndpoint = dataEndpointAgent.getNewDataEndpoint();
+            dataEndpoint.initialize(new DataEndpointConfiguration("tcp://localhost:" + (7611 + i),
+                    "ssl://localhost:" + (7711 + i), "admin", "admin", dataEndpointAgent.getTransportPool(),
+                    dataEndpointAgent.getSecuredTransportPool(), agentConfiguration));
+            dataEndpointGroup.addDataEndpoint(dataEndpoint);
+            dataEndpoints.add(dataEndpoint);
+        }
+        awaitActivation(dataEndpoints);
+        event = BenchmarkEvents.createEvent(eventShape, 0);
+    }
+
+    private static void awaitActivation(List<DataEndpoint> dataEndpoints) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + ENDPOINT_ACTIVATION_TIMEOUT_MS;
+        for (DataEndpoint dataEndpoint : dataEndpoints) {
+            while (dataEndpoint.getState() != DataEndpoint.State.ACTIVE) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Endpoint " + dataEndpoint + " was not activated");
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        dataEndpointGroup.shutdown();
+        dataEndpointAgent.shutDown();
+    }
+
+    @Benchmark
+    public void tryPublish(QueueFullCounter counter) {
+        try {
+            dataEndpointGroup.tryPublish(event);
+        } catch (EventQueueFullException e) {
+            counter.queueFull++;
+        }
+    }
+
+    /**
+     * Events of a producer thread which were rejected as the queue was full.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class QueueFullCounter {
+
+        public long queueFull;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            queueFull = 0;
+        }
+    }
+}
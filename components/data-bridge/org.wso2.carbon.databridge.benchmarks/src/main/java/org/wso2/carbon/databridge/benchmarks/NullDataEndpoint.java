@@ -0,0 +1,101 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.wso2.carbon.databridge.agent.client.AbstractClientPoolFactory;
+import org.wso2.carbon.databridge.agent.client.AbstractSecureClientPoolFactory;
+import org.wso2.carbon.databridge.agent.endpoint.DataEndpoint;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.List;
+
+/**
+ * Endpoint which discards the batches, so that the event queue and batching of the agent can be measured
+ * without a receiver.
+ */
+public class NullDataEndpoint extends DataEndpoint {
+
+    private static final String SESSION_ID = "null-session";
+
+    @Override
+    protected String login(Object client, String userName, String password) {
+        return SESSION_ID;
+    }
+
+    @Override
+    protected void logout(Object client, String sessionId) {
+    }
+
+    @Override
+    protected void send(Object client, List<Event> events) {
+    }
+
+    @Override
+    public String getClientPoolFactoryClass() {
+        return NullClientPoolFactory.class.getName();
+    }
+
+    @Override
+    public String getSecureClientPoolFactoryClass() {
+        return NullSecureClientPoolFactory.class.getName();
+    }
+
+    /**
+     * Pool factory of clients which are not connected to anything.
+     */
+    public static class NullClientPoolFactory extends AbstractClientPoolFactory {
+
+        @Override
+        public Object createClient(String protocol, String hostName, int port) {
+            return new Object();
+        }
+
+        @Override
+        public boolean validateClient(Object client) {
+            return true;
+        }
+
+        @Override
+        public void terminateClient(Object client) {
+        }
+    }
+
+    /**
+     * Secure pool factory of clients which are not connected to anything.
+     */
+    public static class NullSecureClientPoolFactory extends AbstractSecureClientPoolFactory {
+
+        public NullSecureClientPoolFactory(String trustStore, String trustStorePassword) {
+            super(trustStore, trustStorePassword);
+        }
+
+        @Override
+        public Object createClient(String protocol, String hostName, int port) {
+            return new Object();
+        }
+
+        @Override
+        public boolean validateClient(Object client) {
+            return true;
+        }
+
+        @Override
+        public void terminateClient(Object client) {
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.databridge.agent.endpoint.thrift.ThriftEventBundleBuilder;
+import org.wso2.carbon.databridge.agent.endpoint.thrift.ThriftEventConverter;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.thrift.data.ThriftEventBundle;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a batch into the Thrift event bundle the Thrift endpoint publishes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ThriftEventBundleBenchmark {
+
+    private static final String SESSION_ID = "c5a5ea0a-1b1c-4f7e-9a3a-4c2b9e0d8f11";
+
+    @Param({BenchmarkEvents.SMALL, BenchmarkEvents.MIXED, BenchmarkEvents.WIDE})
+    public String eventShape;
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    private List<Event> events;
+
+    private ThriftEventBundleBuilder eventBundleBuilder;
+
+    @Setup
+    public void setup() {
+        events = BenchmarkEvents.createEvents(eventShape, batchSize);
+        eventBundleBuilder = new ThriftEventBundleBuilder();
+    }
+
+    @Benchmark
+    public ThriftEventBundle toThriftEventBundle() {
+        ThriftEventBundle eventBundle = null;
+        for (Event event : events) {
+            eventBundle = ThriftEventConverter.toThriftEventBundle(event, eventBundle, SESSION_ID);
+        }
+        return eventBundle;
+    }
+
+    @Benchmark
+    public ThriftEventBundle buildReusedEventBundle() {
+        return eventBundleBuilder.build(events, SESSION_ID);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.commons.binary;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Util class for the compression codecs of binary messages.
+ */
+public class BinaryMessageCompressionUtil {
+
+    private static final String DEFLATE = "deflate";
+
+    private BinaryMessageCompressionUtil() {
+    }
+
+    /**
+     * @param name name of the codec, as configured.
+     * @return the codec of the given name, or -1 if the codec is not supported.
+     */
+    public static int getCodec(String name) {
+        if (DEFLATE.equalsIgnoreCase(name.trim())) {
+            return BinaryMessageConstants.COMPRESSION_DEFLATE;
+        }
+        return -1;
+    }
+
+    public static boolean isSupported(int codec) {
+        return codec == BinaryMessageConstants.COMPRESSION_DEFLATE;
+    }
+
+    /**
+     * Decompress the body of a compressed message.
+     *
+     * @param codec            codec the message was compressed with.
+     * @param data             compressed message.
+     * @param uncompressedSize size of the message before compression, as sent by the peer.
+     * @param maxSize          max size of an uncompressed message, which bounds the memory allocated for it.
+     * @return the uncompressed message.
+     * @throws IOException if the codec is not supported, the size is out of bounds or the data is corrupted.
+     */
+    public static byte[] decompress(int codec, byte[] data, int uncompressedSize, int maxSize) throws IOException {
+        if (codec != BinaryMessageConstants.COMPRESSION_DEFLATE) {
+            throw new IOException("Compression codec " + codec + " is not supported");
+        } else if (uncompressedSize < 0 || uncompressedSize > maxSize) {
+            throw new IOException("Uncompressed message size " + uncompressedSize + " is not within 0 and " +
+                    maxSize + " bytes");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] message = new byte[uncompressedSize];
+            int length = 0;
+            while (length < uncompressedSize && !inflater.finished()) {
+                int inflated = inflater.inflate(message, length, uncompressedSize - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != uncompressedSize) {
+                throw new IOException("Compressed message has " + length + " bytes instead of " +
+                        uncompressedSize);
+            }
+            return message;
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed message is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -23,4 +23,27 @@ package org.wso2.carbon.databridge.commons.binary;
 public class BinaryMessageConstants {
     public static final String DEFAULT_CHARSET = "UTF-8";
 
+    /**
+     * Publish message carrying a sequence number, which is acknowledged asynchronously so that several
+     * messages can be in flight on the same connection.
+     */
+    public static final int SEQUENCED_PUBLISH_MESSAGE = 3;
+    public static final int SEQUENCED_OK_RESPONSE = 3;
+    public static final int SEQUENCED_ERROR_RESPONSE = 4;
+
+    /**
+     * Message offering compression codecs in order of preference, answered with the codec chosen by the
+     * receiver, which is {@link #COMPRESSION_NONE} if it supports none of them.
+     */
+    public static final int COMPRESSION_NEGOTIATION_MESSAGE = 5;
+    public static final int COMPRESSION_NEGOTIATION_RESPONSE = 5;
+
+    /**
+     * Message carrying another message compressed with a negotiated codec.
+     */
+    public static final int COMPRESSED_MESSAGE = 6;
+
+    public static final int COMPRESSION_NONE = 0;
+    public static final int COMPRESSION_DEFLATE = 1;
+
 }
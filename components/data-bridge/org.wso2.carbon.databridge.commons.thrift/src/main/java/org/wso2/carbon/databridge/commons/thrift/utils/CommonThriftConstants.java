@@ -24,4 +24,6 @@ public class CommonThriftConstants {
 
     public static final int SECURE_EVENT_RECEIVER_PORT_OFFSET = 100;
     public static final int DEFAULT_RECEIVER_PORT = 7611;
+    public static final String BINARY_PROTOCOL = "binary";
+    public static final String COMPACT_PROTOCOL = "compact";
 }
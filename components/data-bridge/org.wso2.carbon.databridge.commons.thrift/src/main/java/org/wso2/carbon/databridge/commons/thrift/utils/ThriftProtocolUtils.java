@@ -0,0 +1,60 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.commons.thrift.utils;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TTransportFactory;
+
+/**
+ * Protocol and transport factories shared by the Thrift agent and receiver, which have to be configured
+ * with the same protocol and framing to talk to each other. The compact protocol encodes the int and long
+ * attribute lists as variable length integers, and framing is needed by the non blocking Thrift servers.
+ */
+public final class ThriftProtocolUtils {
+
+    private ThriftProtocolUtils() {
+    }
+
+    /**
+     * @param protocol name of the protocol, binary or compact, where null stands for binary.
+     * @return factory of the protocol.
+     * @throws IllegalArgumentException if the protocol is not supported.
+     */
+    public static TProtocolFactory getProtocolFactory(String protocol) {
+        if (protocol == null || protocol.trim().isEmpty() ||
+                CommonThriftConstants.BINARY_PROTOCOL.equalsIgnoreCase(protocol.trim())) {
+            return new TBinaryProtocol.Factory();
+        } else if (CommonThriftConstants.COMPACT_PROTOCOL.equalsIgnoreCase(protocol.trim())) {
+            return new TCompactProtocol.Factory();
+        }
+        throw new IllegalArgumentException("Unsupported Thrift protocol : " + protocol + ", only " +
+                CommonThriftConstants.BINARY_PROTOCOL + " and " + CommonThriftConstants.COMPACT_PROTOCOL +
+                " are supported");
+    }
+
+    /**
+     * @param framed whether messages are sent in frames prefixed by their length.
+     * @return factory wrapping the socket transports.
+     */
+    public static TTransportFactory getTransportFactory(boolean framed) {
+        return framed ? new TFramedTransport.Factory() : new TTransportFactory();
+    }
+}
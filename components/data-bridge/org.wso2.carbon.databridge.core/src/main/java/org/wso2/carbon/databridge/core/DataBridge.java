@@ -265,6 +265,10 @@ public class DataBridge implements DataBridgeSubscriberService, DataBridgeReceiv
             }
             throw new SessionTimeoutException(sessionId + " expired");
         }
+        if (eventConverter.getNumberOfEvents(eventBundle) == 0) {
+            // Heartbeat of a publisher, which only checks the session.
+            return;
+        }
         try {
             authenticatorHandler.initContext(agentSession);
             eventDispatcher.publish(eventBundle, agentSession, eventConverter);
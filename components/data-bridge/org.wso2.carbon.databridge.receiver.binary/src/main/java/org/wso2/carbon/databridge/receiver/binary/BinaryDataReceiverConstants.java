@@ -39,6 +39,8 @@ public class BinaryDataReceiverConstants {
     public static final String SSL_RECEIVER_PROTOCOLS_CONFIG_NAME = "sslEnabledProtocols";
     public static final String SSL_RECEIVER_CIPHERS_CONFIG_NAME = "ciphers";
     public static final String CHANNEL_ENCRYPTION_PROTOCOL = "channelEncryptionProtocol";
+    public static final String MAX_MESSAGE_SIZE_CONFIG_NAME = "maxMessageSize";
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
     public static final String META_DATA_FIELD = "Meta Data";
     public static final String PAYLOAD_DATA_FIELD = "Payload Data";
     public static final String CORRELATION_DATA_FIELD = "Correlation Data";
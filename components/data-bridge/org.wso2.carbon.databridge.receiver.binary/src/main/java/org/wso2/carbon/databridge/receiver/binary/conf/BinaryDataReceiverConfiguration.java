@@ -33,6 +33,7 @@ public class BinaryDataReceiverConfiguration {
     private String sslProtocols;
     private String ciphers;
     private String channelEncryptionProtocol;
+    private int maxMessageSize;
 
     public BinaryDataReceiverConfiguration(int sslPort, int tcpPort) {
         this.sslPort = sslPort;
@@ -40,6 +41,7 @@ public class BinaryDataReceiverConfiguration {
         this.sizeOfSSLThreadPool = BinaryDataReceiverConstants.DEFAULT_SSL_RECEIVER_THREAD_POOL_SIZE;
         this.sizeOfTCPThreadPool = BinaryDataReceiverConstants.DEFAULT_TCP_RECEIVER_THREAD_POOL_SIZE;
         this.channelEncryptionProtocol = BinaryDataReceiverConstants.DEFAULT_CHANNEL_ENCRYPTION_PROTOCOL;
+        this.maxMessageSize = BinaryDataReceiverConstants.DEFAULT_MAX_MESSAGE_SIZE;
     }
 
     public BinaryDataReceiverConfiguration(DataBridgeConfiguration dataBridgeConfiguration) {
@@ -60,6 +62,8 @@ public class BinaryDataReceiverConfiguration {
                 BinaryDataReceiverConstants.SSL_RECEIVER_CIPHERS_CONFIG_NAME);
         String channelEncryptionProtocol = dataReceiverConfiguration.getProperties().get(
                 BinaryDataReceiverConstants.CHANNEL_ENCRYPTION_PROTOCOL);
+        String maxMessageSize = dataReceiverConfiguration.getProperties().get(
+                BinaryDataReceiverConstants.MAX_MESSAGE_SIZE_CONFIG_NAME);
 
 
         if (sslPortConfiguration != null && !sslPortConfiguration.trim().isEmpty()) {
@@ -100,6 +104,12 @@ public class BinaryDataReceiverConfiguration {
             this.channelEncryptionProtocol = "TLSv1.2";
         }
 
+        if (maxMessageSize != null && !maxMessageSize.trim().isEmpty()) {
+            this.maxMessageSize = Integer.parseInt(maxMessageSize.trim());
+        } else {
+            this.maxMessageSize = BinaryDataReceiverConstants.DEFAULT_MAX_MESSAGE_SIZE;
+        }
+
     }
 
     private static int getPortOffset() {
@@ -133,4 +143,11 @@ public class BinaryDataReceiverConfiguration {
     public String getChannelEncryptionProtocol() {
         return channelEncryptionProtocol;
     }
+
+    /**
+     * @return max size of a message, compressed or not, that the receiver reads from a publisher.
+     */
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
 }
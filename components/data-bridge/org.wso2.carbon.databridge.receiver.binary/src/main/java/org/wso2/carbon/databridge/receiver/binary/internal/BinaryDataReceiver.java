@@ -21,6 +21,7 @@ package org.wso2.carbon.databridge.receiver.binary.internal;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.wso2.carbon.databridge.commons.ServerEventListener;
+import org.wso2.carbon.databridge.commons.binary.BinaryMessageCompressionUtil;
 import org.wso2.carbon.databridge.commons.binary.BinaryMessageConstants;
 import org.wso2.carbon.databridge.core.DataBridgeReceiverService;
 import org.wso2.carbon.databridge.core.exception.DataBridgeException;
@@ -29,6 +30,7 @@ import org.wso2.carbon.databridge.receiver.binary.conf.BinaryDataReceiverConfigu
 import org.wso2.carbon.utils.Utils;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -287,13 +289,105 @@ public class BinaryDataReceiver implements ServerEventListener {
                     }
                 }
                 break;
+            case BinaryMessageConstants.COMPRESSION_NEGOTIATION_MESSAGE:
+                int codecCount = byteBuffer.getInt();
+                int chosenCodec = BinaryMessageConstants.COMPRESSION_NONE;
+                for (int i = 0; i < codecCount; i++) {
+                    int codec = byteBuffer.get();
+                    if (BinaryMessageCompressionUtil.isSupported(codec)) {
+                        chosenCodec = codec;
+                        break;
+                    }
+                }
+                try {
+                    outputStream.write((byte) BinaryMessageConstants.COMPRESSION_NEGOTIATION_RESPONSE);
+                    outputStream.write((byte) chosenCodec);
+                    outputStream.flush();
+                } catch (IOException e) {
+                    log.error("Error while sending response for compression negotiation message: " +
+                            e.getMessage(), e);
+                }
+                break;
             default:
                 log.error("Message Type " + messageType + " is not supported!");
         }
         return null;
     }
 
+    /**
+     * Read the message of the given type from the input stream and process it. A compressed message is
+     * decompressed and processed as the message it carries. The sizes sent by the publisher are checked
+     * against the max message size before anything is allocated for the message.
+     */
+    private void readMessage(int messageType, InputStream inputStream, OutputStream outputStream)
+            throws IOException {
+        if (messageType == BinaryMessageConstants.SEQUENCED_PUBLISH_MESSAGE) {
+            long sequence = ByteBuffer.wrap(loadData(inputStream, new byte[8])).getLong();
+            int messageSize = checkMessageSize(ByteBuffer.wrap(loadData(inputStream, new byte[4])).getInt());
+            byte[] message = loadData(inputStream, new byte[messageSize]);
+            processSequencedPublishMessage(sequence, message, outputStream);
+        } else if (messageType == BinaryMessageConstants.COMPRESSED_MESSAGE) {
+            ByteBuffer header = ByteBuffer.wrap(loadData(inputStream, new byte[9]));
+            int codec = header.get();
+            int uncompressedSize = header.getInt();
+            int compressedSize = checkMessageSize(header.getInt());
+            byte[] message = BinaryMessageCompressionUtil.decompress(codec,
+                    loadData(inputStream, new byte[compressedSize]), uncompressedSize,
+                    binaryDataReceiverConfiguration.getMaxMessageSize());
+            InputStream messageStream = new ByteArrayInputStream(message);
+            int compressedMessageType = messageStream.read();
+            if (compressedMessageType == BinaryMessageConstants.COMPRESSED_MESSAGE) {
+                throw new IOException("Compressed message cannot carry another compressed message");
+            }
+            readMessage(compressedMessageType, messageStream, outputStream);
+        } else {
+            int messageSize = checkMessageSize(ByteBuffer.wrap(loadData(inputStream, new byte[4])).getInt());
+            byte[] message = loadData(inputStream, new byte[messageSize]);
+            processMessage(messageType, message, outputStream);
+        }
+    }
+
+    private int checkMessageSize(int messageSize) throws IOException {
+        if (messageSize < 0 || messageSize > binaryDataReceiverConfiguration.getMaxMessageSize()) {
+            throw new IOException("Message size " + messageSize + " is not within 0 and the max message size " +
+                    binaryDataReceiverConfiguration.getMaxMessageSize() + " bytes");
+        }
+        return messageSize;
+    }
+
+    /**
+     * Process a publish message which carries a sequence number. The response echoes the sequence number so
+     * that the publisher can match it with the message, while other messages are in flight on the connection.
+     */
+    private void processSequencedPublishMessage(long sequence, byte[] message, OutputStream outputStream) {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(message);
+        int sessionIdLength = byteBuffer.getInt();
+        String sessionId = new String(message, 4, sessionIdLength);
+        ByteBuffer sequenceBuffer = ByteBuffer.allocate(8);
+        sequenceBuffer.putLong(sequence);
+        try {
+            dataBridgeReceiverService.publish(message, sessionId, BinaryEventConverter.getConverter());
+
+            outputStream.write((byte) BinaryMessageConstants.SEQUENCED_OK_RESPONSE);
+            outputStream.write(sequenceBuffer.array());
+            outputStream.flush();
+        } catch (Exception e) {
+            try {
+                outputStream.write((byte) BinaryMessageConstants.SEQUENCED_ERROR_RESPONSE);
+                outputStream.write(sequenceBuffer.array());
+                writeError(e, outputStream);
+            } catch (IOException e1) {
+                log.error("Error while sending response for sequenced publish message: " + e1.getMessage(), e1);
+            }
+        }
+    }
+
     private void sendError(Exception e, OutputStream outputStream) throws IOException {
+        outputStream.write((byte) 1); //Error
+        writeError(e, outputStream);
+    }
+
+    private void writeError(Exception e, OutputStream outputStream) throws IOException {
 
         int errorClassNameLength = e.getClass().getCanonicalName().length();
         int errorMsgLength = e.getMessage().length();
@@ -302,7 +396,6 @@ public class BinaryDataReceiver implements ServerEventListener {
         bbuf.putInt(errorClassNameLength);
         bbuf.putInt(errorMsgLength);
 
-        outputStream.write((byte) 1); //Error
         outputStream.write(bbuf.array());
         outputStream.write(e.getClass().getCanonicalName().getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
         outputStream.write(e.getMessage().getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
@@ -386,9 +479,7 @@ public class BinaryDataReceiver implements ServerEventListener {
                 OutputStream outputStream = new BufferedOutputStream((socket.getOutputStream()));
                 int messageType = inputstream.read();
                 while (messageType != -1) {
-                    int messageSize = ByteBuffer.wrap(loadData(inputstream, new byte[4])).getInt();
-                    byte[] message = loadData(inputstream, new byte[messageSize]);
-                    processMessage(messageType, message, outputStream);
+                    readMessage(messageType, inputstream, outputStream);
                     messageType = inputstream.read();
                 }
             } catch (IOException ex) {
@@ -20,6 +20,7 @@ package org.wso2.carbon.databridge.receiver.thrift;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.thrift.protocol.TProtocolFactory;
 import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TThreadPoolServer;
 import org.apache.thrift.transport.TSSLTransportFactory;
@@ -29,6 +30,7 @@ import org.wso2.carbon.databridge.commons.exception.TransportException;
 import org.wso2.carbon.databridge.commons.thrift.service.general.ThriftEventTransmissionService;
 import org.wso2.carbon.databridge.commons.thrift.service.secure.ThriftSecureEventTransmissionService;
 import org.wso2.carbon.databridge.commons.thrift.utils.CommonThriftConstants;
+import org.wso2.carbon.databridge.commons.thrift.utils.ThriftProtocolUtils;
 import org.wso2.carbon.databridge.core.DataBridgeReceiverService;
 import org.wso2.carbon.databridge.core.exception.DataBridgeException;
 import org.wso2.carbon.databridge.core.internal.utils.DataBridgeConstants;
@@ -152,6 +154,13 @@ public class ThriftDataReceiver {
                                                 String keyStore, String keyStorePassword,
                                                 DataBridgeReceiverService dataBridgeReceiverService)
             throws TransportException, UnknownHostException {
+        TProtocolFactory protocolFactory;
+        try {
+            protocolFactory = ThriftProtocolUtils.getProtocolFactory(
+                    thriftDataReceiverConfiguration.getThriftProtocol());
+        } catch (IllegalArgumentException e) {
+            throw new TransportException(e.getMessage(), e);
+        }
         TSSLTransportFactory.TSSLTransportParameters params =
                 new TSSLTransportFactory.TSSLTransportParameters();
         params.setKeyStore(keyStore, keyStorePassword);
@@ -181,7 +190,10 @@ public class ThriftDataReceiver {
                 new ThriftSecureEventTransmissionService.Processor<ThriftSecureEventTransmissionServiceImpl>(
                         new ThriftSecureEventTransmissionServiceImpl(dataBridgeReceiverService));
         TThreadPoolServer.Args args = new TThreadPoolServer.Args(serverTransport).processor(processor)
-                .maxWorkerThreads(thriftDataReceiverConfiguration.getSslMaxWorkerThreads());
+                .maxWorkerThreads(thriftDataReceiverConfiguration.getSslMaxWorkerThreads())
+                .protocolFactory(protocolFactory)
+                .transportFactory(ThriftProtocolUtils.getTransportFactory(
+                        thriftDataReceiverConfiguration.isThriftFramedTransport()));
         if (thriftDataReceiverConfiguration.getSslMinWorkerThreads() != ThriftDataReceiverConstants.UNDEFINED) {
             args.minWorkerThreads = thriftDataReceiverConfiguration.getSslMinWorkerThreads();
         }
@@ -200,6 +212,13 @@ public class ThriftDataReceiver {
     protected void startEventTransmission(String hostName, int port,
                                           DataBridgeReceiverService dataBridgeReceiverService)
             throws DataBridgeException {
+        TProtocolFactory protocolFactory;
+        try {
+            protocolFactory = ThriftProtocolUtils.getProtocolFactory(
+                    thriftDataReceiverConfiguration.getThriftProtocol());
+        } catch (IllegalArgumentException e) {
+            throw new DataBridgeException(e.getMessage(), e);
+        }
         try {
             TServerSocket serverTransport = new TServerSocket(
                     new InetSocketAddress(hostName, port));
@@ -207,7 +226,10 @@ public class ThriftDataReceiver {
                     new ThriftEventTransmissionService.Processor<ThriftEventTransmissionServiceImpl>(
                             new ThriftEventTransmissionServiceImpl(dataBridgeReceiverService));
             TThreadPoolServer.Args args = new TThreadPoolServer.Args(serverTransport).processor(processor)
-                    .maxWorkerThreads(thriftDataReceiverConfiguration.getTcpMaxWorkerThreads());
+                    .maxWorkerThreads(thriftDataReceiverConfiguration.getTcpMaxWorkerThreads())
+                    .protocolFactory(protocolFactory)
+                    .transportFactory(ThriftProtocolUtils.getTransportFactory(
+                            thriftDataReceiverConfiguration.isThriftFramedTransport()));
             if (thriftDataReceiverConfiguration.getTcpMinWorkerThreads() != ThriftDataReceiverConstants.UNDEFINED) {
                 args.minWorkerThreads = thriftDataReceiverConfiguration.getTcpMinWorkerThreads();
             }
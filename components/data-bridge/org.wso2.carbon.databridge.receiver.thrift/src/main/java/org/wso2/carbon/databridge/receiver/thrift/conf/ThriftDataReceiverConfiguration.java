@@ -41,6 +41,8 @@ public class ThriftDataReceiverConfiguration {
     private int sslMinWorkerThreads = ThriftDataReceiverConstants.UNDEFINED;
     private int sslRequestTimeout = ThriftDataReceiverConstants.UNDEFINED;
     private int sslStopTimeoutVal = ThriftDataReceiverConstants.UNDEFINED;
+    private String thriftProtocol = CommonThriftConstants.BINARY_PROTOCOL;
+    private boolean thriftFramedTransport = false;
 
     public ThriftDataReceiverConfiguration(int defaultSslPort, int defaultPort) {
         secureDataReceiverPort = defaultSslPort;
@@ -135,6 +137,18 @@ public class ThriftDataReceiverConfiguration {
         if (sslStopTimeoutVal != null && !sslStopTimeoutVal.trim().isEmpty()) {
             this.sslStopTimeoutVal = Integer.parseInt(sslStopTimeoutVal.trim());
         }
+
+        String thriftProtocol = dataReceiverConfiguration.getProperties().get(
+                ThriftDataReceiverConstants.THRIFT_PROTOCOL);
+        if (thriftProtocol != null && !thriftProtocol.trim().isEmpty()) {
+            this.thriftProtocol = thriftProtocol.trim();
+        }
+
+        String thriftFramedTransport = dataReceiverConfiguration.getProperties().get(
+                ThriftDataReceiverConstants.THRIFT_FRAMED_TRANSPORT);
+        if (thriftFramedTransport != null && !thriftFramedTransport.trim().isEmpty()) {
+            this.thriftFramedTransport = Boolean.parseBoolean(thriftFramedTransport.trim());
+        }
     }
 
     public ThriftDataReceiverConfiguration(int defaultSslPort, int defaultPort,
@@ -247,4 +261,20 @@ public class ThriftDataReceiverConfiguration {
     public void setSslStopTimeoutVal(int sslStopTimeoutVal) {
         this.sslStopTimeoutVal = sslStopTimeoutVal;
     }
+
+    public String getThriftProtocol() {
+        return thriftProtocol;
+    }
+
+    public void setThriftProtocol(String thriftProtocol) {
+        this.thriftProtocol = thriftProtocol;
+    }
+
+    public boolean isThriftFramedTransport() {
+        return thriftFramedTransport;
+    }
+
+    public void setThriftFramedTransport(boolean thriftFramedTransport) {
+        this.thriftFramedTransport = thriftFramedTransport;
+    }
 }
@@ -46,6 +46,9 @@ public final class ThriftDataReceiverConstants {
     public static final String THRIFT_SSL_REQUEST_TIMEOUT = "sslRequestTimeout";
     public static final String THRIFT_SSL_STOP_TIMEOUT_VAL = "sslStopTimeoutVal";
 
+    public static final String THRIFT_PROTOCOL = "thriftProtocol";
+    public static final String THRIFT_FRAMED_TRANSPORT = "thriftFramedTransport";
+
     public static final int THRIFT_TCP_DEFAULT_MAX_WORKER_THREADS = 20;
     public static final int THRIFT_SSL_DEFAULT_MAX_WORKER_THREADS = 20;
 
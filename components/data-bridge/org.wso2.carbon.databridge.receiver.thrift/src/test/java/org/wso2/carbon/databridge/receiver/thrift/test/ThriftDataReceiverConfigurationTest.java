@@ -51,6 +51,8 @@ public class ThriftDataReceiverConfigurationTest {
         Assert.assertEquals(5, config.getSslMinWorkerThreads());
         Assert.assertEquals(10, config.getSslRequestTimeout());
         Assert.assertEquals(50, config.getSslStopTimeoutVal());
+        Assert.assertEquals("binary", config.getThriftProtocol());
+        Assert.assertFalse(config.isThriftFramedTransport());
     }
 
     @Test
@@ -72,6 +74,8 @@ public class ThriftDataReceiverConfigurationTest {
         config.setSslMinWorkerThreads(6);
         config.setSslRequestTimeout(11);
         config.setSslStopTimeoutVal(51);
+        config.setThriftProtocol("compact");
+        config.setThriftFramedTransport(true);
 
         Assert.assertEquals(7712, config.getSecureDataReceiverPort());
         Assert.assertEquals(7612, config.getDataReceiverPort());
@@ -86,6 +90,8 @@ public class ThriftDataReceiverConfigurationTest {
         Assert.assertEquals(6, config.getSslMinWorkerThreads());
         Assert.assertEquals(11, config.getSslRequestTimeout());
         Assert.assertEquals(51, config.getSslStopTimeoutVal());
+        Assert.assertEquals("compact", config.getThriftProtocol());
+        Assert.assertTrue(config.isThriftFramedTransport());
     }
 
     @Test